@@ -0,0 +1,68 @@
+/*H*****************************************************************************
+ * Filename: BatchScalingBenchmark.java
+ * Description: Measures how batch evaluation scales with the number of
+ * 		worker threads.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs the same batch of independent expressions and the same columnar
+ * scoring job with one worker and then with twice as many workers each
+ * round, up to the number of available processors, and prints the speedup
+ * over a single worker.
+ */
+public class BatchScalingBenchmark {
+
+	private static final int EXPRESSIONS = 100_000;
+
+	private static final int ROWS = 1 << 22;
+
+	public static void main(String[] args) {
+		final Random random = new Random(42);
+		final List<String> expressions = new ArrayList<>(EXPRESSIONS);
+		for (int i = 0; i < EXPRESSIONS; i++) {
+			expressions.add(random.nextInt(1000) + "*" 
+					+ random.nextInt(1000) + "+" 
+					+ random.nextInt(1000) + "/7-3^2");
+		}
+		final CompiledExpression expression = 
+				CompiledExpression.compile("a * b + c / 7 - a ^ 2");
+		final double[][] columns = new double[3][ROWS];
+		for (double[] column : columns) {
+			for (int i = 0; i < ROWS; i++) {
+				column[i] = random.nextDouble();
+			}
+		}
+		final double[] results = new double[ROWS];
+
+		final int processors = Runtime.getRuntime().availableProcessors();
+		double singleExpressions = 0;
+		double singleRows = 0;
+		for (int workers = 1; workers <= processors; workers <<= 1) {
+			try (BatchEvaluator batch = new BatchEvaluator(workers)) {
+				final double expressionNanos = Harness.run(workers 
+					+ " workers, expressions", EXPRESSIONS,
+					() -> batch.evaluateAll(expressions)[0]);
+				final double rowNanos = Harness.run(workers 
+					+ " workers, rows", ROWS, () -> {
+						batch.evaluate(expression, columns, 
+								results);
+						return results[0];
+					});
+				if (workers == 1) {
+					singleExpressions = expressionNanos;
+					singleRows = rowNanos;
+				}
+				System.out.printf("%d workers speedup: expressions "
+					+ "%.2fx, rows %.2fx%n", workers, 
+					singleExpressions / expressionNanos,
+					singleRows / rowNanos);
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*H*****************************************************************************
+ * Filename: BulkEvaluationBenchmark.java
+ * Description: Compares per row and chunked evaluation of one formula over
+ * 		columnar input.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Vector API evaluator and an arithmetic heavy formula.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Random;
+
+/**
+ * Measures the per row cost of scoring a formula over a dataset by looping
+ * over rows, by scalar and vectorized chunked bulk evaluation, and by the 
+ * same arithmetic written by hand as a lower bound. A longer formula of 
+ * only +, -, * and / is run through both bulk evaluators as well.
+ */
+public class BulkEvaluationBenchmark {
+
+	private static final String FORMULA = "price * qty - discount / 2 + 1.5";
+
+	private static final String ARITHMETIC_FORMULA = 
+		"price * qty - discount / 2 + 1.5 * price - qty / 4 * discount "
+		+ "+ price * price / 100 - 3";
+
+	private static final int ROWS = 1 << 16;
+
+	public static void main(String[] args) {
+		final CompiledExpression expression = 
+				CompiledExpression.compile(FORMULA);
+		final double[][] columns = new double[3][ROWS];
+		final Random random = new Random(42);
+		for (double[] column : columns) {
+			for (int i = 0; i < ROWS; i++) {
+				column[i] = random.nextDouble() * 100;
+			}
+		}
+		final double[] results = new double[ROWS];
+		final double[] row = new double[3];
+		final BulkEvaluator bulkEvaluator = new BulkEvaluator();
+		final BulkEvaluator vectorEvaluator = BulkEvaluator.create();
+		if (!(vectorEvaluator instanceof VectorBulkEvaluator)) {
+			System.err.println("Vector API unavailable, both bulk "
+					+ "evaluators are scalar");
+		}
+		final CompiledExpression arithmetic = 
+				CompiledExpression.compile(ARITHMETIC_FORMULA);
+
+		Harness.run("per row CompiledExpression.evaluate", ROWS, () -> {
+			for (int i = 0; i < ROWS; i++) {
+				row[0] = columns[0][i];
+				row[1] = columns[1][i];
+				row[2] = columns[2][i];
+				results[i] = expression.evaluate(row);
+			}
+			return results[ROWS - 1];
+		});
+		Harness.run("BulkEvaluator.evaluate", ROWS, () -> {
+			bulkEvaluator.evaluate(expression, columns, results, 0, ROWS);
+			return results[ROWS - 1];
+		});
+		Harness.run("VectorBulkEvaluator.evaluate", ROWS, () -> {
+			vectorEvaluator.evaluate(expression, columns, results, 0, 
+					ROWS);
+			return results[ROWS - 1];
+		});
+		Harness.run("hand written loop", ROWS, () -> {
+			final double[] price = columns[0];
+			final double[] qty = columns[1];
+			final double[] discount = columns[2];
+			for (int i = 0; i < ROWS; i++) {
+				results[i] = price[i] * qty[i] - discount[i] / 2 + 1.5;
+			}
+			return results[ROWS - 1];
+		});
+		Harness.run("arithmetic BulkEvaluator.evaluate", ROWS, () -> {
+			bulkEvaluator.evaluate(arithmetic, columns, results, 0, ROWS);
+			return results[ROWS - 1];
+		});
+		Harness.run("arithmetic VectorBulkEvaluator.evaluate", ROWS, () -> {
+			vectorEvaluator.evaluate(arithmetic, columns, results, 0, 
+					ROWS);
+			return results[ROWS - 1];
+		});
+	}
+}
@@ -0,0 +1,237 @@
+/*H*****************************************************************************
+ * Filename: CodecBenchmark.java
+ * Description: Compares loading formulas from their binary encoding with
+ * 		compiling them from text.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Malformed counts and lengths.
+ * 	     2026-10-18 Index too large for an instruction.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Stores {@link #FORMULAS} small formulas with variables one after another
+ * in a single buffer, the way a formula store would, and measures per
+ * formula the cost of compiling each from its text, decoding each from the
+ * buffer, and evaluating each once either way or straight from the buffer.
+ *
+ * <p>Before timing anything, every formula and its optimized form are
+ * round tripped through the encoding and checked to give bit for bit the
+ * same results as the compiled expression, both decoded and evaluated in
+ * place, and truncated, corrupted or malformed encodings are checked to be
+ * rejected.
+ */
+public class CodecBenchmark {
+
+	private static final int FORMULAS = 10_000;
+
+	private static final String[] VARIABLES = {"price", "quantity", "rate"};
+
+	private static final char[] OPERATORS = {'+', '-', '*', '/', '^'};
+
+	/**
+	 * A varint of ten bytes, which decodes to a negative long.
+	 */
+	private static final byte[] NEGATIVE = {-1, -1, -1, -1, -1, -1, -1,
+		-1, -1, 1};
+
+	/**
+	 * A varint of Integer.MAX_VALUE.
+	 */
+	private static final byte[] HUGE = {-1, -1, -1, -1, 7};
+
+	public static void main(String[] args) {
+		final Random random = new Random(FORMULAS);
+		final String[] texts = new String[FORMULAS];
+		final CompiledExpression[] compiled =
+				new CompiledExpression[FORMULAS];
+		int textBytes = 0;
+		int encodedBytes = 0;
+		for (int i = 0; i < FORMULAS; i++) {
+			texts[i] = formula(random);
+			compiled[i] = CompiledExpression.compile(texts[i]);
+			textBytes += texts[i].length();
+			encodedBytes += ExpressionCodec.encodedLength(compiled[i]);
+		}
+		final ByteBuffer store = ByteBuffer.allocateDirect(encodedBytes);
+		for (final CompiledExpression expression : compiled) {
+			ExpressionCodec.encode(expression, store);
+		}
+		final double[] values = {19.99, 3, 0.07};
+		final double[] stack = new double[64];
+		verify(compiled, store, values, stack);
+		System.out.printf("%d formulas: %.1f bytes of text, %.1f bytes "
+				+ "encoded per formula%n", FORMULAS,
+				(double) textBytes / FORMULAS,
+				(double) encodedBytes / FORMULAS);
+
+		Harness.run("compile from text", FORMULAS, () -> {
+			double sum = 0;
+			for (final String text : texts) {
+				sum += CompiledExpression.compile(text)
+					.getInstructionCount();
+			}
+			return sum;
+		});
+		Harness.run("decode from buffer", FORMULAS, () -> {
+			final ByteBuffer input = store.duplicate().clear();
+			double sum = 0;
+			while (input.hasRemaining()) {
+				sum += ExpressionCodec.decode(input)
+					.getInstructionCount();
+			}
+			return sum;
+		});
+		Harness.run("compile from text + evaluate", FORMULAS, () -> {
+			double sum = 0;
+			for (final String text : texts) {
+				sum += CompiledExpression.compile(text)
+					.evaluate(values, stack);
+			}
+			return sum;
+		});
+		Harness.run("decode + evaluate", FORMULAS, () -> {
+			final ByteBuffer input = store.duplicate().clear();
+			double sum = 0;
+			while (input.hasRemaining()) {
+				sum += ExpressionCodec.decode(input)
+					.evaluate(values, stack);
+			}
+			return sum;
+		});
+		Harness.run("evaluate in buffer", FORMULAS, () -> {
+			double sum = 0;
+			for (int offset = 0; offset < store.capacity();
+					offset += ExpressionCodec.length(store, offset)) {
+				sum += ExpressionCodec.evaluate(store, offset, values,
+						stack);
+			}
+			return sum;
+		});
+	}
+
+	/**
+	 * Checks that every formula survives a round trip through the
+	 * encoding, plain and optimized, and that bad encodings are rejected.
+	 */
+	private static void verify(final CompiledExpression[] compiled,
+			final ByteBuffer store, final double[] values,
+			final double[] stack) {
+		int offset = 0;
+		for (final CompiledExpression expression : compiled) {
+			final double expected = expression.evaluate(values, stack);
+			check(expected, ExpressionCodec.evaluate(store, offset, values,
+					stack), expression);
+			check(expected, ExpressionCodec.decode(
+				store.duplicate().position(offset)).evaluate(values,
+					stack), expression);
+			final CompiledExpression optimized = expression.optimize();
+			final byte[] bytes = optimized.encode();
+			final CompiledExpression decoded = CompiledExpression.decode(
+					ByteBuffer.wrap(bytes));
+			check(optimized.evaluate(values, stack),
+				decoded.evaluate(values, stack), expression);
+			check(optimized.evaluate(values, stack),
+				ExpressionCodec.evaluate(ByteBuffer.wrap(bytes), 0,
+					values, stack), expression);
+			if (!decoded.toPostfixString().equals(
+					optimized.toPostfixString())
+				|| !decoded.getVariables().equals(
+					optimized.getVariables())) {
+				throw new AssertionError("Round trip changed "
+						+ expression.getSource());
+			}
+			rejectDamaged(bytes);
+			offset += ExpressionCodec.length(store, offset);
+		}
+		rejectMalformed();
+	}
+
+	private static void check(final double expected, final double actual,
+			final CompiledExpression expression) {
+		if (Double.doubleToRawLongBits(expected)
+				!= Double.doubleToRawLongBits(actual)) {
+			throw new AssertionError(expression.getSource() + ": "
+					+ actual + " instead of " + expected);
+		}
+	}
+
+	/**
+	 * Checks that truncated encodings and an unknown version fail to
+	 * decode.
+	 */
+	private static void rejectDamaged(final byte[] bytes) {
+		for (int length = 0; length < bytes.length; length++) {
+			expectRejected(ByteBuffer.wrap(bytes, 0, length).slice());
+		}
+		final byte[] wrongVersion = bytes.clone();
+		wrongVersion[0]++;
+		expectRejected(ByteBuffer.wrap(wrongVersion));
+	}
+
+	/**
+	 * Checks that negative or oversized variable counts, name lengths,
+	 * instruction lengths and stack depths fail to decode rather than
+	 * allocate, and that a variable index too large for an instruction
+	 * fails rather than wraps.
+	 */
+	private static void rejectMalformed() {
+		for (final byte[] value : new byte[][] {NEGATIVE, HUGE}) {
+			expectRejected(header(value));
+			expectRejected(header(new byte[] {1}, value));
+			expectRejected(header(new byte[] {0}, value));
+		}
+		final byte[] deep = CompiledExpression.compile("1").encode();
+		deep[1] = Byte.MAX_VALUE;
+		expectRejected(ByteBuffer.wrap(deep));
+		expectRejected(header(new byte[] {1, 1, 'x', 5,
+			CompiledExpression.VARIABLE, -128, -128, -128, 8}));
+	}
+
+	/**
+	 * Returns an encoding of the current version and a stack depth of one
+	 * followed by the provided bytes.
+	 */
+	private static ByteBuffer header(final byte[]... parts) {
+		final ByteBuffer buffer = ByteBuffer.allocate(32);
+		buffer.put((byte) ExpressionCodec.FORMAT_VERSION).put((byte) 1);
+		for (final byte[] part : parts) {
+			buffer.put(part);
+		}
+		return buffer.flip();
+	}
+
+	private static void expectRejected(final ByteBuffer input) {
+		try {
+			ExpressionCodec.decode(input);
+		} catch (IllegalArgumentException expected) {
+			return;
+		}
+		throw new AssertionError("Damaged encoding was decoded");
+	}
+
+	/**
+	 * Returns a formula of five to twenty operands mixing variables and
+	 * constants with two fraction digits.
+	 */
+	private static String formula(final Random random) {
+		final StringBuilder builder = new StringBuilder();
+		final int operands = 5 + random.nextInt(16);
+		for (int i = 0; i < operands; i++) {
+			if (i > 0) {
+				builder.append(OPERATORS[random.nextInt(
+					i % 4 == 0 ? OPERATORS.length : 4)]);
+			}
+			if (random.nextBoolean()) {
+				builder.append(VARIABLES[random.nextInt(
+						VARIABLES.length)]);
+			} else {
+				builder.append(random.nextInt(1000)).append('.')
+					.append(random.nextInt(90) + 10);
+			}
+		}
+		return builder.toString();
+	}
+}
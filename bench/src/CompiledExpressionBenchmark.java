@@ -0,0 +1,71 @@
+/*H*****************************************************************************
+ * Filename: CompiledExpressionBenchmark.java
+ * Description: Compares evaluating a compiled expression against feeding the
+ * 		same expression through Calculator.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Optimized expressions.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+/**
+ * Measures the cost of evaluating one formula repeatedly through the
+ * Calculator keystroke API, by compiling it every time, and by compiling it
+ * once and reusing the {@link CompiledExpression}. A second formula with
+ * variables, squares and a repeated term is evaluated before and after
+ * {@link CompiledExpression#optimize()}, one row at a time and in bulk.
+ */
+public class CompiledExpressionBenchmark {
+
+	private static final String FORMULA = 
+			"3*4+2^3-10/5+7*7*2-1.5^2+100/8-6";
+
+	private static final String VARIABLE_FORMULA = 
+			"x^2*1 + 2^3*x*y + y^2 - x*y/2 + x^2/4 - 0.5^2";
+
+	private static final int ROWS = 1 << 12;
+
+	public static void main(String[] args) {
+		final Calculator calculator = new Calculator();
+		final String[] keystrokes = new String[FORMULA.length()];
+		for (int i = 0; i < keystrokes.length; i++) {
+			keystrokes[i] = String.valueOf(FORMULA.charAt(i));
+		}
+		final CompiledExpression compiled = 
+				CompiledExpression.compile(FORMULA);
+
+		Harness.run("Calculator.getResult", () -> {
+			for (String keystroke : keystrokes) {
+				calculator.addElement(keystroke);
+			}
+			return calculator.getResult();
+		});
+		Harness.run("CompiledExpression.compile + evaluate", 
+				() -> CompiledExpression.compile(FORMULA).evaluate());
+		Harness.run("CompiledExpression.evaluate", compiled::evaluate);
+		Harness.run("optimized CompiledExpression.evaluate", 
+				compiled.optimize()::evaluate);
+
+		final CompiledExpression variable = 
+				CompiledExpression.compile(VARIABLE_FORMULA);
+		final CompiledExpression optimized = variable.optimize();
+		final double[] values = {1.25, -3.5};
+		final double[][] columns = new double[2][ROWS];
+		for (int i = 0; i < ROWS; i++) {
+			columns[0][i] = i * 0.25;
+			columns[1][i] = 100 - i * 0.5;
+		}
+		final double[] results = new double[ROWS];
+		final BulkEvaluator bulk = new BulkEvaluator();
+		Harness.run("variables evaluate", () -> variable.evaluate(values));
+		Harness.run("variables optimized evaluate", 
+				() -> optimized.evaluate(values));
+		Harness.run("variables bulk", ROWS, () -> {
+			bulk.evaluate(variable, columns, results, 0, ROWS);
+			return results[ROWS - 1];
+		});
+		Harness.run("variables optimized bulk", ROWS, () -> {
+			bulk.evaluate(optimized, columns, results, 0, ROWS);
+			return results[ROWS - 1];
+		});
+	}
+}
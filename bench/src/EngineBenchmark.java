@@ -0,0 +1,122 @@
+/*H*****************************************************************************
+ * Filename: EngineBenchmark.java
+ * Description: Measures tokenization and evaluation of the calculator engine
+ * 		for short and very long expressions.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Reused and pooled evaluation contexts.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Random;
+
+/**
+ * Measures keystroke tokenization through Calculator.addElement, lexing a
+ * whole string, and evaluation through Calculator.getResult, Evaluator and
+ * CompiledExpression, and through a reused or pooled EvaluationContext, for
+ * expressions of 10, 1k and 100k tokens. A second
+ * group runs 1k token expressions that use a single precedence level each.
+ */
+public class EngineBenchmark {
+
+	/**
+	 * The expression sizes, in tokens.
+	 */
+	private static final int[] SIZES = {10, 1_000, 100_000};
+
+	public static void main(String[] args) {
+		for (int size : SIZES) {
+			run("mixed " + size, mixedExpression(size));
+		}
+		run("addition 1000", singleOperatorExpression("+", 1_000));
+		run("multiplication 1000", singleOperatorExpression("*", 1_000));
+		run("exponentiation 1000", singleOperatorExpression("^", 1_000));
+	}
+
+	/**
+	 * Runs every benchmark of the engine against one expression.
+	 */
+	private static void run(final String label, final String expression) {
+		final int tokens = countTokens(expression);
+		final String[] keystrokes = new String[expression.length()];
+		for (int i = 0; i < keystrokes.length; i++) {
+			keystrokes[i] = String.valueOf(expression.charAt(i));
+		}
+		final Calculator calculator = new Calculator();
+		final Evaluator evaluator = new Evaluator();
+		final EvaluationContext context = new EvaluationContext();
+		final CompiledExpression compiled = 
+				CompiledExpression.compile(expression);
+
+		Harness.run(label + " tokenize addElement", tokens, () -> {
+			for (String keystroke : keystrokes) {
+				calculator.addElement(keystroke);
+			}
+			final int size = calculator.getBufferSize();
+			calculator.clearBuffer();
+			return size;
+		});
+		Harness.run(label + " tokenize Lexer", tokens, 
+				() -> countTokens(expression));
+		Harness.run(label + " Calculator.getResult", tokens, () -> {
+			for (String keystroke : keystrokes) {
+				calculator.addElement(keystroke);
+			}
+			return calculator.getResult();
+		});
+		Harness.run(label + " Lexer + Evaluator", tokens, 
+				() -> evaluator.evaluate(new Lexer(expression)));
+		Harness.run(label + " EvaluationContext", tokens, 
+				() -> context.evaluate(expression));
+		Harness.run(label + " EvaluationContext.acquire", tokens, () -> {
+			try (EvaluationContext pooled = EvaluationContext.acquire()) {
+				return pooled.evaluate(expression);
+			}
+		});
+		Harness.run(label + " CompiledExpression.evaluate", tokens, 
+				compiled::evaluate);
+	}
+
+	private static int countTokens(final String expression) {
+		final Lexer lexer = new Lexer(expression);
+		int tokens = 0;
+		while (lexer.next()) {
+			tokens++;
+		}
+		return tokens;
+	}
+
+	/**
+	 * Returns an expression with the provided number of tokens that mixes
+	 * every operator.
+	 */
+	static String mixedExpression(final int tokens) {
+		final Random random = new Random(tokens);
+		final String[] operators = {"+", "-", "*", "/", "+", "-", "*", "^"};
+		final StringBuilder builder = new StringBuilder();
+		builder.append(random.nextInt(100) + 1);
+		for (int i = 1; i + 1 < tokens; i += 2) {
+			final String operator = 
+				operators[random.nextInt(operators.length)];
+			builder.append(operator);
+			if (operator.equals("^")) {
+				builder.append(random.nextInt(3));
+			} else {
+				builder.append(random.nextInt(100) + 1);
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Returns an expression with the provided number of tokens that uses a
+	 * single operator.
+	 */
+	static String singleOperatorExpression(final String operator, 
+			final int tokens) {
+		final StringBuilder builder = new StringBuilder("1.0001");
+		for (int i = 1; i + 1 < tokens; i += 2) {
+			builder.append(operator).append("1.0001");
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,122 @@
+/*H*****************************************************************************
+ * Filename: FormatBenchmark.java
+ * Description: Compares DoubleFormatter with Double.toString.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Random;
+
+/**
+ * Formats {@link #VALUES} doubles of two kinds, typical calculator results
+ * with a few decimals and doubles with random bits, with
+ * {@link Double#toString(double)} and with {@link DoubleFormatter} into a
+ * reused char array and byte array.
+ *
+ * <p>Before timing anything, every value is checked to read back as the
+ * same double and to be no longer than {@link Double#toString(double)},
+ * and a million doubles with random bits are checked the same way.
+ * Infinities and NaNs, whose payload bits are not written, are left out.
+ */
+public class FormatBenchmark {
+
+	private static final int VALUES = 1024;
+
+	public static void main(String[] args) {
+		final Random random = new Random(VALUES);
+		final double[] results = new double[VALUES];
+		final double[] randomBits = new double[VALUES];
+		for (int i = 0; i < VALUES; i++) {
+			results[i] = random.nextInt(1_000_000) / 100.0
+				* (i % 8 == 0 ? 1e-6 : 1);
+			do {
+				randomBits[i] = Double.longBitsToDouble(random.nextLong());
+			} while (!Double.isFinite(randomBits[i]));
+		}
+		verify(results);
+		verify(randomBits);
+		final double[] sample = new double[1];
+		for (int i = 0; i < 1_000_000; i++) {
+			sample[0] = Double.longBitsToDouble(random.nextLong());
+			if (Double.isFinite(sample[0])) {
+				verify(sample);
+			}
+		}
+
+		run("results", results);
+		run("random bits", randomBits);
+	}
+
+	private static void run(final String name, final double[] values) {
+		final DoubleFormatter formatter = DoubleFormatter.SHORTEST;
+		final char[] chars = new char[DoubleFormatter.MAX_LENGTH];
+		final byte[] bytes = new byte[DoubleFormatter.MAX_LENGTH];
+		Harness.run(name + " Double.toString", values.length, () -> {
+			double sum = 0;
+			for (final double value : values) {
+				sum += Double.toString(value).length();
+			}
+			return sum;
+		});
+		Harness.run(name + " DoubleFormatter.toString", values.length,
+				() -> {
+			double sum = 0;
+			for (final double value : values) {
+				sum += formatter.toString(value).length();
+			}
+			return sum;
+		});
+		Harness.run(name + " DoubleFormatter char[]", values.length, () -> {
+			double sum = 0;
+			for (final double value : values) {
+				sum += formatter.format(value, chars, 0);
+			}
+			return sum;
+		});
+		Harness.run(name + " DoubleFormatter byte[]", values.length, () -> {
+			double sum = 0;
+			for (final double value : values) {
+				sum += formatter.format(value, bytes, 0);
+			}
+			return sum;
+		});
+	}
+
+	/**
+	 * Checks that every value reads back as the same double and has no
+	 * more significant digits than {@link Double#toString(double)} writes.
+	 */
+	private static void verify(final double[] values) {
+		for (final double value : values) {
+			final String text = DoubleFormatter.SHORTEST.toString(value);
+			if (Double.doubleToRawLongBits(Double.parseDouble(text))
+					!= Double.doubleToRawLongBits(value)) {
+				throw new AssertionError(text + " does not read back as "
+						+ value);
+			}
+			if (significantDigits(text) > Math.max(2,
+					significantDigits(Double.toString(value)))) {
+				throw new AssertionError(text + " is longer than "
+						+ value);
+			}
+		}
+	}
+
+	private static int significantDigits(final String text) {
+		int digits = 0;
+		int trailingZeros = 0;
+		boolean leading = true;
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c == 'E') {
+				break;
+			}
+			if (c >= '1' && c <= '9' || c == '0' && !leading) {
+				leading = false;
+				digits++;
+				trailingZeros = c == '0' ? trailingZeros + 1 : 0;
+			}
+		}
+		return Math.max(1, digits - trailingZeros);
+	}
+}
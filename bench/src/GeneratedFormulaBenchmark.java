@@ -0,0 +1,60 @@
+/*H*****************************************************************************
+ * Filename: GeneratedFormulaBenchmark.java
+ * Description: Compares generated bytecode against the postfix interpreter
+ * 		and Calculator.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+/**
+ * Measures one formula with variables evaluated by the postfix
+ * interpreter, by generated bytecode before and after optimization, and by
+ * the same arithmetic written by hand, plus the formula with the variables
+ * filled in typed into Calculator as the original baseline.
+ */
+public class GeneratedFormulaBenchmark {
+
+	private static final String FORMULA = 
+			"price * qty - discount / 2 + price * 0.08 - qty ^ 2 / 100";
+
+	private static final String CALCULATOR_FORMULA = 
+			"19.99*3-5/2+19.99*0.08-3^2/100";
+
+	public static void main(String[] args) {
+		final Calculator calculator = new Calculator();
+		final String[] keystrokes = new String[CALCULATOR_FORMULA.length()];
+		for (int i = 0; i < keystrokes.length; i++) {
+			keystrokes[i] = String.valueOf(CALCULATOR_FORMULA.charAt(i));
+		}
+		final CompiledExpression interpreted = 
+				CompiledExpression.compile(FORMULA);
+		final CompiledExpression generated = 
+				CompiledExpression.compile(FORMULA);
+		final CompiledExpression optimized = 
+				CompiledExpression.compile(FORMULA).optimize();
+		if (!generated.promote() || !optimized.promote()) {
+			throw new IllegalStateException("Formula was not generated");
+		}
+		final double[] values = {19.99, 3, 5};
+		final double[] stack = new double[interpreted.getMaxStackDepth()];
+
+		Harness.run("Calculator.getResult", () -> {
+			for (String keystroke : keystrokes) {
+				calculator.addElement(keystroke);
+			}
+			return calculator.getResult();
+		});
+		Harness.run("interpreter", 
+				() -> interpreted.interpret(values, stack));
+		Harness.run("generated", () -> generated.evaluate(values));
+		Harness.run("generated optimized", 
+				() -> optimized.evaluate(values));
+		Harness.run("hand written", () -> {
+			final double price = values[0];
+			final double qty = values[1];
+			final double discount = values[2];
+			return price * qty - discount / 2 + price * 0.08 
+					- Math.pow(qty, 2) / 100;
+		});
+	}
+}
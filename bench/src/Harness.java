@@ -0,0 +1,173 @@
+/*H*****************************************************************************
+ * Filename: Harness.java
+ * Description: A small timing harness shared by the benchmarks.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Added allocation measurement and adaptive batching.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.lang.management.ManagementFactory;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Runs a benchmark body in timed iterations after a warm up and reports the
+ * average time and the bytes allocated per operation. Calls are timed in
+ * batches sized so that reading the clock does not distort short bodies.
+ * Results of the body are folded into a volatile sink so the JIT cannot
+ * discard the work.
+ *
+ * <p>JMH is not used because it refuses benchmark classes in the default
+ * package, which is where every class of this project lives. The harness
+ * follows the same protocol: fork a fresh JVM per benchmark class (the
+ * Gradle tasks do this), warm up, then measure.
+ */
+public final class Harness {
+
+	/**
+	 * The number of untimed warm up iterations.
+	 */
+	private static final int WARMUP_ITERATIONS = 
+			Integer.getInteger("bench.warmup", 5);
+
+	/**
+	 * The number of timed iterations.
+	 */
+	private static final int MEASUREMENT_ITERATIONS = 
+			Integer.getInteger("bench.iterations", 5);
+
+	/**
+	 * The length of each iteration in milliseconds.
+	 */
+	private static final long ITERATION_MILLIS = 
+			Long.getLong("bench.millis", 500);
+
+	/**
+	 * The shortest time a batch of calls should take, in nanoseconds.
+	 */
+	private static final long MIN_BATCH_NANOS = 100_000;
+
+	/**
+	 * Reports the bytes allocated by the calling thread, or null when the
+	 * JVM does not support it.
+	 */
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+	/**
+	 * Receives benchmark results so they are never dead code.
+	 */
+	private static volatile double sink;
+
+	private Harness() {
+	}
+
+	/**
+	 * Measures the body and prints the average nanoseconds per operation.
+	 *
+	 * @param  name  the name printed with the result.
+	 * @param  body  the operation being measured.
+	 * @return the average nanoseconds per operation.
+	 */
+	public static double run(final String name, final DoubleSupplier body) {
+		return run(name, 1, body);
+	}
+
+	/**
+	 * Measures a body that performs several operations per call, such as
+	 * one evaluation per row of a batch, and prints the average nanoseconds
+	 * and bytes allocated per operation.
+	 *
+	 * @param  name               the name printed with the result.
+	 * @param  operationsPerCall  the number of operations in one call.
+	 * @param  body               the operations being measured.
+	 * @return the average nanoseconds per operation.
+	 */
+	public static double run(final String name, final int operationsPerCall,
+			final DoubleSupplier body) {
+		final int batch = calibrate(body);
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			iterate(body, batch);
+		}
+		final long allocatedBefore = allocatedBytes();
+		long calls = 0;
+		double total = 0;
+		double best = Double.MAX_VALUE;
+		for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+			final long[] result = iterate(body, batch);
+			final double nanosPerCall = (double) result[0] / result[1];
+			calls += result[1];
+			total += nanosPerCall;
+			best = Math.min(best, nanosPerCall);
+		}
+		final double bytesPerOperation = THREADS == null ? Double.NaN
+			: (double) (allocatedBytes() - allocatedBefore) / calls 
+				/ operationsPerCall;
+		final double average = total / MEASUREMENT_ITERATIONS 
+				/ operationsPerCall;
+		best /= operationsPerCall;
+		System.out.printf("%-48s %14.1f ns/op  (best %.1f)  %10.1f B/op%n", 
+				name, average, best, bytesPerOperation);
+		return average;
+	}
+
+	/**
+	 * Returns the number of calls that takes at least the minimum batch
+	 * time.
+	 */
+	private static int calibrate(final DoubleSupplier body) {
+		int batch = 1;
+		while (batch < 1 << 20) {
+			final long start = System.nanoTime();
+			double accumulator = 0;
+			for (int i = 0; i < batch; i++) {
+				accumulator += body.getAsDouble();
+			}
+			sink = accumulator;
+			if (System.nanoTime() - start >= MIN_BATCH_NANOS) {
+				break;
+			}
+			batch <<= 1;
+		}
+		return batch;
+	}
+
+	/**
+	 * Calls the body in batches for one iteration period.
+	 *
+	 * @return the elapsed nanoseconds and the number of calls.
+	 */
+	private static long[] iterate(final DoubleSupplier body, 
+			final int batch) {
+		final long start = System.nanoTime();
+		final long deadline = start + ITERATION_MILLIS * 1_000_000;
+		double accumulator = 0;
+		long calls = 0;
+		long now;
+		do {
+			for (int i = 0; i < batch; i++) {
+				accumulator += body.getAsDouble();
+			}
+			calls += batch;
+			now = System.nanoTime();
+		} while (now < deadline);
+		sink = accumulator;
+		return new long[] {now - start, calls};
+	}
+
+	/**
+	 * Returns the bytes allocated so far by the calling thread.
+	 */
+	private static long allocatedBytes() {
+		return THREADS == null ? 0 
+			: THREADS.getThreadAllocatedBytes(
+					Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean threads() {
+		if (ManagementFactory.getThreadMXBean() 
+				instanceof com.sun.management.ThreadMXBean) {
+			return (com.sun.management.ThreadMXBean) 
+				ManagementFactory.getThreadMXBean();
+		}
+		return null;
+	}
+}
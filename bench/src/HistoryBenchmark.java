@@ -0,0 +1,93 @@
+/*H*****************************************************************************
+ * Filename: HistoryBenchmark.java
+ * Description: Measures appending to, opening and searching a large
+ * 		calculation history.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Fills a history in a temporary directory with {@link #ENTRIES} entries,
+ * then reports how long reopening it takes and how much heap the open
+ * history holds, and times appends, which include compaction once the
+ * history reaches twice {@link #RETAINED} entries, reads by recency and
+ * prefix searches.
+ */
+public class HistoryBenchmark {
+
+	private static final int ENTRIES = 2_000_000;
+
+	private static final int RETAINED = 1_500_000;
+
+	public static void main(String[] args) throws IOException {
+		final Path directory = Files.createTempDirectory("history");
+		try {
+			run(directory);
+		} finally {
+			try (Stream<Path> files = Files.list(directory)) {
+				files.sorted(Comparator.reverseOrder())
+					.forEach(file -> file.toFile().delete());
+			}
+			Files.delete(directory);
+		}
+	}
+
+	private static void run(final Path directory) throws IOException {
+		final long fillStart = System.nanoTime();
+		try (HistoryLog history = HistoryLog.open(directory, RETAINED)) {
+			for (int i = 0; i < ENTRIES; i++) {
+				history.append(expression(i), Integer.toString(i));
+			}
+		}
+		System.out.printf("%d entries written in %.0f ms%n", ENTRIES,
+				(System.nanoTime() - fillStart) / 1e6);
+
+		final long heapBefore = usedHeap();
+		final long openStart = System.nanoTime();
+		final HistoryLog history = HistoryLog.open(directory, RETAINED);
+		final long openNanos = System.nanoTime() - openStart;
+		System.out.printf("open %.2f ms, %d entries, %d KB of heap%n",
+				openNanos / 1e6, history.size(),
+				Math.max(0, usedHeap() - heapBefore) >> 10);
+
+		final Random random = new Random(ENTRIES);
+		final int[] counter = {ENTRIES};
+		Harness.run("HistoryLog.append", () -> {
+			final int i = counter[0]++;
+			try {
+				history.append(expression(i), Integer.toString(i));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return history.size();
+		});
+		Harness.run("HistoryLog.get", () -> history.get(random.nextInt(
+				history.size())).getResult().length());
+		Harness.run("HistoryLog.find 10 by prefix", () -> history.find(
+				Integer.toString(10 + random.nextInt(90)), 10).size());
+		Harness.run("HistoryLog.find 10 by digit", () -> history.find(
+				Integer.toString(1 + random.nextInt(9)), 10).size());
+		history.close();
+	}
+
+	/**
+	 * Returns a varied expression for an entry.
+	 */
+	private static String expression(final int i) {
+		return i + "*" + (i % 97) + "+(" + (i % 13) + "/7)";
+	}
+
+	private static long usedHeap() {
+		System.gc();
+		final Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
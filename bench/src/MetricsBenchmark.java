@@ -0,0 +1,52 @@
+/*H*****************************************************************************
+ * Filename: MetricsBenchmark.java
+ * Description: Measures the cost of evaluation metrics, on and off.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Cache evaluated with an evaluation context.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+/**
+ * Measures the instrumented evaluation paths in whichever metrics mode the
+ * JVM was started with. The MetricsBenchmark task runs with metrics off 
+ * and MetricsEnabledBenchmark with them on, so comparing the two shows 
+ * what recording costs, and comparing the first with EngineBenchmark 
+ * shows that disabled metrics cost nothing.
+ */
+public class MetricsBenchmark {
+
+	public static void main(String[] args) {
+		final String mode = Metrics.ENABLED ? "metrics on " : "metrics off ";
+		run(mode + "mixed 10", 10);
+		run(mode + "mixed 1000", 1_000);
+
+		final EvaluationContext context = new EvaluationContext();
+		final ResultCache cache = new ResultCache(16);
+		final String expression = EngineBenchmark.mixedExpression(10);
+		Harness.run(mode + "ResultCache hit", 
+				() -> cache.evaluate(expression, context));
+
+		final Histogram histogram = new Histogram();
+		final long[] value = {0};
+		Harness.run("Histogram.record", () -> {
+			histogram.record(value[0]++ & 0xFFFFF);
+			return value[0];
+		});
+		if (Metrics.ENABLED) {
+			Metrics.print(System.out);
+		}
+	}
+
+	private static void run(final String label, final int tokens) {
+		final String expression = EngineBenchmark.mixedExpression(tokens);
+		final Evaluator evaluator = new Evaluator();
+		final DecimalEvaluator fixedPoint = DecimalEvaluator.fixedPoint(
+				DecimalEvaluator.DEFAULT_SCALE);
+		Harness.run(label + " Lexer + Evaluator", tokens,
+				() -> evaluator.evaluate(new Lexer(expression)));
+		Harness.run(label + " fixed point", tokens, () -> {
+			fixedPoint.evaluate(new Lexer(expression));
+			return fixedPoint.getScale();
+		});
+	}
+}
@@ -0,0 +1,65 @@
+/*H*****************************************************************************
+ * Filename: NumericModeBenchmark.java
+ * Description: Compares evaluation in each numeric mode.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Random;
+
+/**
+ * Measures the per token cost of evaluating the same expression with double,
+ * fixed point and BigDecimal arithmetic. The ledger expression adds and 
+ * multiplies amounts with two fraction digits, which stays in longs in 
+ * fixed point mode; the mixed expression also divides and raises to 
+ * powers, so some of its values overflow to BigDecimal.
+ */
+public class NumericModeBenchmark {
+
+	private static final int TOKENS = 1_000;
+
+	public static void main(String[] args) {
+		run("ledger " + TOKENS, ledgerExpression(TOKENS));
+		run("mixed " + TOKENS, EngineBenchmark.mixedExpression(TOKENS));
+	}
+
+	private static void run(final String label, final String expression) {
+		final Evaluator evaluator = new Evaluator();
+		final DecimalEvaluator fixedPoint = DecimalEvaluator.fixedPoint(
+				DecimalEvaluator.DEFAULT_SCALE);
+		final DecimalEvaluator bigDecimal = DecimalEvaluator.bigDecimal(
+				DecimalEvaluator.DEFAULT_CONTEXT);
+
+		Harness.run(label + " double", TOKENS, 
+				() -> evaluator.evaluate(new Lexer(expression)));
+		Harness.run(label + " fixed point", TOKENS, () -> {
+			fixedPoint.evaluate(new Lexer(expression));
+			return fixedPoint.getScale();
+		});
+		Harness.run(label + " BigDecimal", TOKENS, () -> {
+			bigDecimal.evaluate(new Lexer(expression));
+			return bigDecimal.toBigDecimal().scale();
+		});
+	}
+
+	/**
+	 * Returns a sum of amounts with two fraction digits, some multiplied 
+	 * by small quantities.
+	 */
+	static String ledgerExpression(final int tokens) {
+		final Random random = new Random(tokens);
+		final StringBuilder builder = new StringBuilder("100.00");
+		for (int i = 1; i + 1 < tokens; i += 2) {
+			final int kind = random.nextInt(4);
+			if (kind == 0) {
+				builder.append('*').append(random.nextInt(5) + 1);
+			} else {
+				builder.append(kind == 1 ? '-' : '+')
+					.append(random.nextInt(10_000) / 100)
+					.append('.')
+					.append(random.nextInt(90) + 10);
+			}
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,99 @@
+/*H*****************************************************************************
+ * Filename: StartupBenchmark.java
+ * Description: Measures the time from launching the calculator to its
+ * 		first painted frame, with and without class data sharing.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Launches the calculator jar in a new JVM {@link #LAUNCHES} times for each
+ * way of loading classes, and reports the mean and best time until it
+ * prints that its first frame is painted: with class data sharing off,
+ * with the JDK's default archive, and with an AppCDS archive of the
+ * calculator recorded by a first launch. Without a display the calculator
+ * paints its first frame off screen.
+ */
+public class StartupBenchmark {
+
+	private static final int LAUNCHES = Integer.getInteger("bench.launches",
+			10);
+
+	public static void main(String[] args)
+			throws IOException, InterruptedException {
+		final String jar = System.getProperty("bench.jar");
+		if (jar == null) {
+			throw new IllegalStateException("bench.jar is not set");
+		}
+		final Path directory = Files.createTempDirectory("startup");
+		final Path archive = directory.resolve("calculator.jsa");
+		try {
+			launch(jar, "-XX:ArchiveClassesAtExit=" + archive);
+			run("Startup -Xshare:off", jar, "-Xshare:off");
+			run("Startup default CDS", jar, "-Xshare:auto");
+			run("Startup AppCDS", jar, "-XX:SharedArchiveFile=" + archive);
+		} finally {
+			Files.deleteIfExists(archive);
+			Files.delete(directory);
+		}
+	}
+
+	private static void run(final String name, final String jar,
+			final String option) throws IOException, InterruptedException {
+		launch(jar, option);
+		final long[] nanos = new long[LAUNCHES];
+		for (int i = 0; i < LAUNCHES; i++) {
+			nanos[i] = launch(jar, option);
+		}
+		System.out.printf("%-48s %14.1f ms     (best %.1f)%n", name,
+				Arrays.stream(nanos).average().getAsDouble() / 1e6,
+				Arrays.stream(nanos).min().getAsLong() / 1e6);
+	}
+
+	/**
+	 * Launches the calculator and returns the nanoseconds until it reports
+	 * its first frame.
+	 */
+	private static long launch(final String jar, final String option)
+			throws IOException, InterruptedException {
+		final List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java")
+				.toString());
+		command.add("--add-modules");
+		command.add("jdk.incubator.vector");
+		command.add(option);
+		command.add("-D" + Main.EXIT_AFTER_FIRST_FRAME_PROPERTY + "=true");
+		command.add("-Dcalculator.history=");
+		command.add("-jar");
+		command.add(jar);
+		final long start = System.nanoTime();
+		final Process process = new ProcessBuilder(command)
+			.redirectError(ProcessBuilder.Redirect.DISCARD)
+			.start();
+		long nanos = -1;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				process.getInputStream(), StandardCharsets.UTF_8))) {
+			for (String line; (line = reader.readLine()) != null; ) {
+				if (line.equals(Main.FIRST_FRAME)) {
+					nanos = System.nanoTime() - start;
+				}
+			}
+		}
+		if (process.waitFor() != 0 || nanos < 0) {
+			throw new IllegalStateException("calculator did not start: "
+					+ command);
+		}
+		return nanos;
+	}
+}
@@ -0,0 +1,73 @@
+/*H*****************************************************************************
+ * Filename: WorkspaceBenchmark.java
+ * Description: Measures recalculating a workspace of 100,000 cells after
+ * 		a change to one cell.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Random;
+
+/**
+ * Builds a workspace of {@link #ROWS} rows of {@link #COLUMNS} cells. The
+ * first cell of each row is a value, the second reads it and a shared rate
+ * cell, and every later cell reads the one before it and the first, so
+ * changing a value reaches the rest of its row and changing the rate
+ * reaches every formula. Times a full recalculation against changes to one
+ * value, to one formula and to the rate.
+ */
+public class WorkspaceBenchmark {
+
+	private static final int ROWS = 1_000;
+
+	private static final int COLUMNS = 100;
+
+	public static void main(String[] args) {
+		try (Workspace workspace = new Workspace()) {
+			final long buildStart = System.nanoTime();
+			build(workspace);
+			System.out.printf("%d cells built in %.0f ms%n",
+					workspace.size(),
+					(System.nanoTime() - buildStart) / 1e6);
+
+			final Random random = new Random(ROWS);
+			Harness.run("Workspace.recalculate all", () -> {
+				workspace.recalculate();
+				return workspace.getRecalculatedCount();
+			});
+			Harness.run("Workspace.setValue one row", () -> {
+				workspace.setValue(cell(random.nextInt(ROWS), 0),
+						random.nextInt(100));
+				return workspace.getRecalculatedCount();
+			});
+			Harness.run("Workspace.set formula mid row", () -> {
+				final int row = random.nextInt(ROWS);
+				workspace.set(cell(row, COLUMNS / 2), cell(row,
+						COLUMNS / 2 - 1) + "*1.02+"
+						+ random.nextInt(10));
+				return workspace.getRecalculatedCount();
+			});
+			Harness.run("Workspace.setValue rate", () -> {
+				workspace.setValue("rate", random.nextInt(100) / 100.0);
+				return workspace.getRecalculatedCount();
+			});
+		}
+	}
+
+	private static void build(final Workspace workspace) {
+		workspace.setValue("rate", 1.01);
+		for (int row = 0; row < ROWS; row++) {
+			final String first = cell(row, 0);
+			workspace.setValue(first, row);
+			workspace.set(cell(row, 1), first + "*rate");
+			for (int column = 2; column < COLUMNS; column++) {
+				workspace.set(cell(row, column), cell(row, column - 1)
+						+ "*1.01+" + first);
+			}
+		}
+	}
+
+	private static String cell(final int row, final int column) {
+		return "r" + row + "c" + column;
+	}
+}
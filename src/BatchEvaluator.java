@@ -0,0 +1,198 @@
+/*H*****************************************************************************
+ * Filename: BatchEvaluator.java
+ * Description: Evaluates large batches of independent expressions, or one
+ * 		expression over many rows, in parallel.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Vectorized bulk evaluators when available.
+ * 	     2026-10-18 Expressions use the worker's evaluation context.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits batch work across a fork/join pool. Work is divided recursively
+ * into index ranges, each worker thread evaluates with its own evaluator
+ * state, and every result is written to the index of its input, so the
+ * output order does not depend on scheduling. A batch evaluator owns its
+ * pool and should be closed when no longer needed.
+ */
+public class BatchEvaluator implements AutoCloseable {
+
+	/**
+	 * The largest number of expressions evaluated by one task.
+	 */
+	private static final int EXPRESSIONS_PER_TASK = 256;
+
+	/**
+	 * The largest number of rows evaluated by one task, a whole number of
+	 * bulk evaluator chunks.
+	 */
+	private static final int ROWS_PER_TASK = 16 * BulkEvaluator.CHUNK_SIZE;
+
+	/**
+	 * A bulk evaluator for each worker thread.
+	 */
+	private static final ThreadLocal<BulkEvaluator> BULK_EVALUATOR = 
+				ThreadLocal.withInitial(BulkEvaluator::create);
+
+	/**
+	 * The pool that runs the work.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructs a batch evaluator that uses every available processor.
+	 */
+	public BatchEvaluator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs a batch evaluator with the provided number of workers.
+	 *
+	 * @param  parallelism  the number of worker threads.
+	 */
+	public BatchEvaluator(final int parallelism) {
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Returns the number of worker threads.
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Evaluates independent expressions without variables.
+	 *
+	 * @param  expressions  the infix expressions.
+	 * @return the result of each expression at its index, or NaN for an
+	 * 	   expression that is malformed.
+	 */
+	public double[] evaluateAll(final List<? extends CharSequence> 
+			expressions) {
+		final double[] results = new double[expressions.size()];
+		pool.invoke(new ExpressionTask(expressions, results, 0, 
+					results.length));
+		return results;
+	}
+
+	/**
+	 * Evaluates one expression over every row of columnar input.
+	 *
+	 * @param  expression  the expression to be evaluated.
+	 * @param  columns     one array of row values per variable, indexed 
+	 * 		       like {@link CompiledExpression#getVariables()}.
+	 * @param  results     receives one result per row; its length is the 
+	 * 		       number of rows.
+	 */
+	public void evaluate(final CompiledExpression expression, 
+			final double[][] columns, final double[] results) {
+		pool.invoke(new RowTask(expression, columns, results, 0, 
+					results.length));
+	}
+
+	/**
+	 * Evaluates a single expression with the calling thread's evaluator.
+	 *
+	 * @return the result, or NaN if the expression is malformed.
+	 */
+	static double evaluate(final CharSequence expression) {
+		try {
+			return EvaluationContext.forCurrentThread()
+					.evaluate(expression);
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			return Double.NaN;
+		}
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Evaluates a range of a list of expressions.
+	 */
+	private static final class ExpressionTask extends RecursiveAction {
+
+		private final List<? extends CharSequence> expressions;
+
+		private final double[] results;
+
+		private final int from;
+
+		private final int to;
+
+		ExpressionTask(final List<? extends CharSequence> expressions,
+				final double[] results, final int from, 
+				final int to) {
+			this.expressions = expressions;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= EXPRESSIONS_PER_TASK) {
+				for (int i = from; i < to; i++) {
+					results[i] = evaluate(expressions.get(i));
+				}
+			} else {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new ExpressionTask(expressions, results, 
+							from, middle),
+					new ExpressionTask(expressions, results, 
+							middle, to));
+			}
+		}
+	}
+
+	/**
+	 * Evaluates a range of rows of columnar input.
+	 */
+	private static final class RowTask extends RecursiveAction {
+
+		private final CompiledExpression expression;
+
+		private final double[][] columns;
+
+		private final double[] results;
+
+		private final int from;
+
+		private final int to;
+
+		RowTask(final CompiledExpression expression, 
+				final double[][] columns, final double[] results, 
+				final int from, final int to) {
+			this.expression = expression;
+			this.columns = columns;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= ROWS_PER_TASK) {
+				BULK_EVALUATOR.get().evaluate(expression, columns, 
+						results, from, to);
+			} else {
+				final int chunks = (to - from) 
+						/ BulkEvaluator.CHUNK_SIZE;
+				final int middle = from 
+					+ chunks / 2 * BulkEvaluator.CHUNK_SIZE;
+				invokeAll(new RowTask(expression, columns, results, 
+							from, middle),
+					new RowTask(expression, columns, results, 
+							middle, to));
+			}
+		}
+	}
+}
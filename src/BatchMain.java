@@ -0,0 +1,344 @@
+/*H*****************************************************************************
+ * Filename: BatchMain.java
+ * Description: Evaluates a file of newline separated expressions without
+ * 		starting the GUI.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Optional result cache.
+ * 	     2026-10-18 Slices evaluate through an evaluation context.
+ * 	     2026-10-18 Results formatted straight into the output buffer.
+ * 	     2026-10-18 Cache misses evaluated with the slice's context.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless batch mode. The input file is memory mapped one segment at a 
+ * time, each segment is split at line boundaries into one slice per worker
+ * thread, and each line is tokenized straight from the mapped bytes, so the
+ * file is never decoded into strings or read onto the heap. Workers write
+ * into their own output buffers, which are then written to the output
+ * channel in slice order, so the output lines are in input order.
+ *
+ * <p>Every line produces exactly one output line: the result, "error" for
+ * a malformed expression, or an empty line for an empty one. Output goes to
+ * the output file, or to standard output when no output file is given.
+ * Results are the shortest decimals that read back as the same doubles,
+ * written by {@link DoubleFormatter}. With -c, results are looked up in a
+ * {@link ResultCache} of the given size shared by all workers.
+ *
+ * <p>Usage: java -cp calculator.jar BatchMain [-t threads] [-c cacheSize]
+ * 		input [output]
+ */
+public class BatchMain {
+
+	/**
+	 * The number of bytes mapped at a time. Lines never span segments;
+	 * the next segment starts at the first line that did not fit.
+	 */
+	private static final long SEGMENT_SIZE = 64L << 20;
+
+	/**
+	 * The output line written for a malformed expression.
+	 */
+	private static final byte[] ERROR = {'e', 'r', 'r', 'o', 'r'};
+
+	/**
+	 * One evaluating worker per slice.
+	 */
+	private final Slice[] slices;
+
+	/**
+	 * Runs the slices of a segment in parallel.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Receives the output.
+	 */
+	private final WritableByteChannel output;
+
+	private BatchMain(final int threads, final ResultCache cache, 
+			final WritableByteChannel output) {
+		this.output = output;
+		slices = new Slice[threads];
+		for (int i = 0; i < threads; i++) {
+			slices[i] = new Slice(cache);
+		}
+		executor = Executors.newFixedThreadPool(threads, runnable -> {
+			final Thread thread = new Thread(runnable, "batch");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public static void main(String[] args) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int cacheSize = 0;
+		int argument = 0;
+		while (args.length - argument > 1 && args[argument].startsWith("-")) {
+			if (args[argument].equals("-t")) {
+				threads = Integer.parseInt(args[argument + 1]);
+			} else if (args[argument].equals("-c")) {
+				cacheSize = Integer.parseInt(args[argument + 1]);
+			} else {
+				break;
+			}
+			argument += 2;
+		}
+		if (args.length - argument < 1 || args.length - argument > 2 
+				|| threads < 1 || cacheSize < 0) {
+			System.err.println("Usage: java BatchMain [-t threads] "
+					+ "[-c cacheSize] input [output]");
+			System.exit(1);
+		}
+		final ResultCache cache = cacheSize > 0 
+				? new ResultCache(cacheSize) : null;
+		final Path input = Paths.get(args[argument]);
+		final long start = System.nanoTime();
+		final BatchMain batch;
+		try (FileChannel in = FileChannel.open(input, 
+					StandardOpenOption.READ);
+			WritableByteChannel out = args.length - argument == 2 
+				? FileChannel.open(Paths.get(args[argument + 1]), 
+					StandardOpenOption.CREATE, 
+					StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)
+				: Channels.newChannel(new FileOutputStream(
+						FileDescriptor.out))) {
+			batch = new BatchMain(threads, cache, out);
+			batch.run(in);
+		}
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		final double megabytes = input.toFile().length() / 1e6;
+		long lines = 0;
+		long errors = 0;
+		for (Slice slice : batch.slices) {
+			lines += slice.lines;
+			errors += slice.errors;
+		}
+		System.err.printf("%d lines, %d errors, %.1f MB in %.2f s "
+				+ "(%.1f MB/s, %d threads)%n", lines, errors, 
+				megabytes, seconds, megabytes / seconds, threads);
+		if (cache != null) {
+			System.err.println(cache);
+		}
+	}
+
+	/**
+	 * Maps the input one segment at a time and evaluates every line.
+	 */
+	private void run(final FileChannel in) throws IOException {
+		try {
+			final long size = in.size();
+			long segmentStart = 0;
+			while (segmentStart < size) {
+				final long segmentLength = Math.min(SEGMENT_SIZE, 
+						size - segmentStart);
+				final MappedByteBuffer segment = in.map(
+						FileChannel.MapMode.READ_ONLY, 
+						segmentStart, segmentLength);
+				final boolean last = 
+					segmentStart + segmentLength == size;
+				final int end = last ? (int) segmentLength 
+					: afterLastNewline(segment, 
+							(int) segmentLength);
+				if (end == 0) {
+					throw new IOException("Line at byte " 
+						+ segmentStart + " is longer than " 
+						+ SEGMENT_SIZE + " bytes");
+				}
+				evaluateSegment(segment, end);
+				segmentStart += end;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Splits the complete lines of a segment into slices, evaluates the
+	 * slices in parallel and writes their output in order.
+	 */
+	private void evaluateSegment(final ByteBuffer segment, final int end)
+			throws IOException {
+		final List<Callable<Void>> tasks = new ArrayList<>(slices.length);
+		int from = 0;
+		for (int i = 0; i < slices.length && from < end; i++) {
+			final int to = i == slices.length - 1 ? end 
+				: nextLineStart(segment, 
+					Math.max(from, (int) ((long) end * (i + 1) 
+						/ slices.length)), end);
+			final Slice slice = slices[i];
+			final int sliceFrom = from;
+			tasks.add(() -> {
+				slice.evaluate(segment, sliceFrom, to);
+				return null;
+			});
+			from = to;
+		}
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+		for (int i = 0; i < tasks.size(); i++) {
+			slices[i].writeTo(output);
+		}
+	}
+
+	/**
+	 * Returns the index after the last newline before the provided end,
+	 * or 0 if there is none.
+	 */
+	private static int afterLastNewline(final ByteBuffer segment, 
+			final int end) {
+		for (int i = end - 1; i >= 0; i--) {
+			if (segment.get(i) == '\n') {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the index after the first newline at or after the provided
+	 * index, or the end if there is none.
+	 */
+	private static int nextLineStart(final ByteBuffer segment, 
+			final int from, final int end) {
+		for (int i = from; i < end; i++) {
+			if (segment.get(i) == '\n') {
+				return i + 1;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Evaluates a range of lines with its own evaluation context and
+	 * collects their output lines.
+	 */
+	private static final class Slice {
+
+		private final EvaluationContext context = new EvaluationContext();
+
+		private final ResultCache cache;
+
+		/**
+		 * The output of the last evaluated range, kept between segments.
+		 */
+		private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+		private long lines;
+
+		private long errors;
+
+		Slice(final ResultCache cache) {
+			this.cache = cache;
+		}
+
+		/**
+		 * Evaluates every line that starts in the range.
+		 */
+		void evaluate(final ByteBuffer segment, final int from, 
+				final int to) {
+			buffer.clear();
+			int lineStart = from;
+			for (int i = from; i < to; i++) {
+				if (segment.get(i) == '\n') {
+					evaluateLine(segment, lineStart, i);
+					lineStart = i + 1;
+				}
+			}
+			if (lineStart < to) {
+				evaluateLine(segment, lineStart, to);
+			}
+		}
+
+		/**
+		 * Evaluates one line and writes its output line.
+		 */
+		private void evaluateLine(final ByteBuffer segment, final int from,
+				final int to) {
+			lines++;
+			int end = to;
+			if (end > from && segment.get(end - 1) == '\r') {
+				end--;
+			}
+			if (end > from) {
+				try {
+					final double result = evaluateExpression(
+							segment, from, end);
+					ensureRemaining(DoubleFormatter.MAX_LENGTH);
+					DoubleFormatter.SHORTEST.format(result, buffer);
+				} catch (IllegalArgumentException 
+						| IllegalStateException e) {
+					errors++;
+					ensureRemaining(ERROR.length);
+					buffer.put(ERROR);
+				}
+			}
+			ensureRemaining(1);
+			buffer.put((byte) '\n');
+		}
+
+		/**
+		 * Evaluates one expression, through the cache if there is one.
+		 */
+		private double evaluateExpression(final ByteBuffer segment, 
+				final int from, final int to) {
+			if (cache != null) {
+				return cache.evaluate(segment, from, to, context);
+			}
+			return context.evaluate(segment, from, to);
+		}
+
+		/**
+		 * Grows the output buffer if it has less than the requested 
+		 * space.
+		 */
+		private void ensureRemaining(final int bytes) {
+			if (buffer.remaining() < bytes) {
+				final ByteBuffer larger = ByteBuffer.allocate(
+					Math.max(buffer.capacity() << 1, 
+						buffer.position() + bytes));
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+		}
+
+		/**
+		 * Writes the collected output to the channel.
+		 */
+		void writeTo(final WritableByteChannel channel) throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+}
@@ -5,23 +5,88 @@
  * Modified: 2021-05-05	Added header comments.
  * 	     2021-05-11 Updated calculator logic.
  * 	     2021-05-19 Refactored and updated GUI.
+ * 	     2026-10-18 Decimal button adds a decimal point.
+ * 	     2026-10-18 Running result preview as the user types.
+ * 	     2026-10-18 Numeric mode from the calculator.mode property.
+ * 	     2026-10-18 Parenthesis buttons.
+ * 	     2026-10-18 Precision from the calculator.precision property.
+ * 	     2026-10-18 Buttons dispatch through a table shared with keyboard
+ * 	     		input and paste; results are evaluated in the
+ * 	     		background.
+ * 	     2026-10-18 Results recorded in a persistent history.
+ * 	     2026-10-18 Shared fonts; evaluation thread started on first use.
+ * 	     2026-10-18 Modulo and square root buttons.
+ * 	     2026-10-18 Whitespace skipped when checking pasted text.
+ * 	     2026-10-18 History recorded on the evaluation thread.
  * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
  ****************************************************************************H*/
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Initializes, formats, and styles all buttons for the calculator GUI. Requires
  * a calculator api for functionality.
+ *
+ * <p>Every character that can be entered, by button, keyboard or pasting
+ * from the clipboard, has its element in a table indexed by character, so
+ * input takes one lookup. The square root button enters sqrt( and can be
+ * typed as s; pasted text may also spell out sqrt(. Pressing equal takes
+ * the expression from the calculator and evaluates it on a background
+ * thread, so a long expression never freezes the window; the result is
+ * shown once it is ready unless something was entered in the meantime, in
+ * which case it is dropped.
+ * Results are recorded in a {@link HistoryLog}, kept in the directory named
+ * by the calculator.history property, or ~/.calculator by default; an
+ * empty property turns the history off.
  */
 public class ButtonPanel extends JPanel {
 
+	/**
+	 * The system property that selects the {@link NumericMode} of the
+	 * calculator.
+	 */
+	private static final String MODE_PROPERTY = "calculator.mode";
+
+	/**
+	 * The system property with the number of significant digits shown,
+	 * or 0 for the shortest decimal that reads back as the same double.
+	 */
+	private static final String PRECISION_PROPERTY = "calculator.precision";
+
+	/**
+	 * The system property with the directory of the history, or an empty
+	 * string for none.
+	 */
+	private static final String HISTORY_PROPERTY = "calculator.history";
+
+	/**
+	 * The text shown in place of a result when the expression is
+	 * malformed.
+	 */
+	private static final String ERROR = "Error";
+
+	/**
+	 * The number of characters in the input tables, covering ASCII.
+	 */
+	private static final int KEYS = 128;
+
 	/** 
 	 * The number of buttons in each row.
 	 */
-	private static final int ROWS = 5;
+	private static final int ROWS = 6;
 
 	/** 
 	 * The number of buttons in each column. 
@@ -43,6 +108,16 @@ public class ButtonPanel extends JPanel {
 	 */
 	private final Calculator calculator;
 
+	/**
+	 * The history results are recorded in, or null for none.
+	 */
+	private final HistoryLog history;
+
+	/**
+	 * The panel listing the history, or null if there is none.
+	 */
+	private final HistoryPanel historyPanel;
+
 	/**
 	 * A mapping between symbols and their respective buttons.
 	 */
@@ -58,6 +133,35 @@ public class ButtonPanel extends JPanel {
 	 */
 	private final LinkedHashMap<Number, JButton> numberButtons;
 
+	/**
+	 * The element added to the calculator for each character that can be
+	 * entered, or null for characters that cannot.
+	 */
+	private final String[] elements;
+
+	/**
+	 * The text displayed for each character that can be entered.
+	 */
+	private final String[] labels;
+
+	/**
+	 * Evaluates expressions one at a time off the event dispatch thread,
+	 * or null until the first evaluation.
+	 */
+	private ExecutorService evaluator;
+
+	/**
+	 * The evaluation in progress, or null for none.
+	 */
+	private Future<?> pending;
+
+	/**
+	 * Counts evaluations started and cancelled. A result is shown only if
+	 * this has not changed since its evaluation started. Only read and
+	 * written on the event dispatch thread.
+	 */
+	private long generation;
+
 	/**
 	 * Constructs button panel. Initializes layout, displayPanel, calculator object, 
 	 * and buttons. Formats layout, buttons, and adds buttons to layout.
@@ -66,14 +170,45 @@ public class ButtonPanel extends JPanel {
 		GridLayout layout = new GridLayout(ROWS, COLS);
 		displayPanel = new DisplayPanel();
 		calculator = new Calculator();
+		calculator.setNumericMode(NumericMode.fromName(
+				System.getProperty(MODE_PROPERTY, "double")));
+		calculator.setPrecision(Integer.getInteger(PRECISION_PROPERTY, 0));
+		history = openHistory();
+		historyPanel = history == null 
+			? null : new HistoryPanel(history, this::recall);
 		symbolButtons = new LinkedHashMap<>();
 		operatorButtons = new LinkedHashMap<>();
 		numberButtons = new LinkedHashMap<>();
+		elements = new String[KEYS];
+		labels = new String[KEYS];
 		formatGridLayout(layout);
 		initializeButtons();
+		bindKeys();
 		styleOperatorAndSymbolButtons();
 	}
 
+	/**
+	 * Opens the history named by the history property. A history that
+	 * cannot be opened, such as one in use by another calculator, is
+	 * reported and left out.
+	 *
+	 * @return the history, or null for none.
+	 */
+	private static HistoryLog openHistory() {
+		final String directory = System.getProperty(HISTORY_PROPERTY,
+			Paths.get(System.getProperty("user.home"), ".calculator")
+				.toString());
+		if (directory.isEmpty()) {
+			return null;
+		}
+		try {
+			return HistoryLog.open(Paths.get(directory));
+		} catch (IOException e) {
+			System.err.println("History not available: " + e.getMessage());
+			return null;
+		}
+	}
+
 	/**
 	 * Set the layout for this panel. Set the horizontal and vertical gap
 	 * between buttons.
@@ -89,114 +224,388 @@ public class ButtonPanel extends JPanel {
 	 * The appropriate calculator symbol is mapped to the corresponding button.
 	 */
 	private void initializeButtons() {
-		symbolButtons.put(Symbol.CLEAR, makeButton("clr"));
-		symbolButtons.put(Symbol.DELETE, makeButton("del"));
-		operatorButtons.put(Operator.EXPONENTIATION, makeButton("^"));
-		operatorButtons.put(Operator.MULTIPLICATION, makeButton("x"));
+		symbolButtons.put(Symbol.LEFT_PARENTHESIS, makeInputButton("(",
+				Symbol.LEFT_PARENTHESIS.getSymbol()));
+		symbolButtons.put(Symbol.RIGHT_PARENTHESIS, makeInputButton(")",
+				Symbol.RIGHT_PARENTHESIS.getSymbol()));
+		operatorButtons.put(Operator.MODULO, makeInputButton("%",
+				Operator.MODULO.getOperator()));
+		operatorButtons.put(Operator.SQUARE_ROOT, 
+				makeFunctionButton("\u221A", Operator.SQUARE_ROOT));
 
-		numberButtons.put(Number.SEVEN, makeButton("7"));
-		numberButtons.put(Number.EIGHT, makeButton("8"));
-		numberButtons.put(Number.NINE, makeButton("9"));
-		operatorButtons.put(Operator.DIVISION, makeButton("/"));
+		symbolButtons.put(Symbol.CLEAR, makeButton("clr", this::clear));
+		symbolButtons.put(Symbol.DELETE, makeButton("del", this::delete));
+		operatorButtons.put(Operator.EXPONENTIATION, makeInputButton("^",
+				Operator.EXPONENTIATION.getOperator()));
+		operatorButtons.put(Operator.MULTIPLICATION, makeInputButton("x",
+				Operator.MULTIPLICATION.getOperator()));
 
-		numberButtons.put(Number.FOUR, makeButton("4"));
-		numberButtons.put(Number.FIVE, makeButton("5"));
-		numberButtons.put(Number.SIX, makeButton("6"));
-		operatorButtons.put(Operator.ADDITION, makeButton("+"));
+		numberButtons.put(Number.SEVEN, makeNumberButton(Number.SEVEN));
+		numberButtons.put(Number.EIGHT, makeNumberButton(Number.EIGHT));
+		numberButtons.put(Number.NINE, makeNumberButton(Number.NINE));
+		operatorButtons.put(Operator.DIVISION, makeInputButton("/",
+				Operator.DIVISION.getOperator()));
 
-		numberButtons.put(Number.ONE, makeButton("1"));
-		numberButtons.put(Number.TWO, makeButton("2"));
-		numberButtons.put(Number.THREE, makeButton("3"));
-		operatorButtons.put(Operator.SUBTRACTION, makeButton("-"));
+		numberButtons.put(Number.FOUR, makeNumberButton(Number.FOUR));
+		numberButtons.put(Number.FIVE, makeNumberButton(Number.FIVE));
+		numberButtons.put(Number.SIX, makeNumberButton(Number.SIX));
+		operatorButtons.put(Operator.ADDITION, makeInputButton("+",
+				Operator.ADDITION.getOperator()));
 
-		symbolButtons.put(Symbol.DECIMAL, makeButton("."));
-		numberButtons.put(Number.ZERO, makeButton("0"));
-		symbolButtons.put(Symbol.NEGATIVE, makeButton("-"));
-		symbolButtons.put(Symbol.EQUAL, makeButton("="));
+		numberButtons.put(Number.ONE, makeNumberButton(Number.ONE));
+		numberButtons.put(Number.TWO, makeNumberButton(Number.TWO));
+		numberButtons.put(Number.THREE, makeNumberButton(Number.THREE));
+		operatorButtons.put(Operator.SUBTRACTION, makeInputButton("-",
+				Operator.SUBTRACTION.getOperator()));
 
-		formatEqualButton(displayPanel);
-		formatClearButton(displayPanel);
-		formatDeleteButton(displayPanel);
+		symbolButtons.put(Symbol.DECIMAL, makeInputButton(".",
+				Symbol.DECIMAL.getSymbol()));
+		numberButtons.put(Number.ZERO, makeNumberButton(Number.ZERO));
+		symbolButtons.put(Symbol.NEGATIVE, makeInputButton("-",
+				Symbol.NEGATIVE.getSymbol()));
+		symbolButtons.put(Symbol.EQUAL, makeButton("=", this::evaluate));
 	}
 
 	/**
 	 * Creates, formats, adds functionality  and returns a new JButton with
-	 * the provided name. General functionality added to all buttons.
+	 * the provided name.
 	 *
-	 * @param  name  the string displayed on the button.
+	 * @param  name    the string displayed on the button.
+	 * @param  action  what the button does when pressed.
 	 * @return a new formatted button.
 	 */
-	private JButton makeButton(final String name) {
+	private JButton makeButton(final String name, final Runnable action) {
 		final JButton button = new JButton(name);
-		button.setFont(new Font("Gill Sans", Font.BOLD, 20));
+		button.setFont(Fonts.BUTTON);
 		button.setBackground(Color.darkGray);
 		button.setForeground(Color.WHITE);
 		button.setOpaque(true);
 		button.setBorderPainted(false);
-		button.addActionListener(event -> {
-			final String element = ((JButton) event.getSource()).getText();
-			assert element != null : "element is null";
-			numberButtons.forEach((k, v) -> {
-				if (v.getText().equals(element)) {
-						calculator.addElement(k.getNumber());
-						displayPanel.appendElement(v.getText());
-					}
-			});
-			operatorButtons.forEach((k, v) -> {
-				if (v.getText().equals(element)) {
-					calculator.addElement(k.getOperator());
-					displayPanel.appendElement(v.getText());
-				}
-			});
-		});
+		button.setFocusable(false);
+		button.addActionListener(event -> action.run());
 		add(button);
 		return button;
 	}
 
 	/**
-	 * Adds functionality to the equal button. On action event, display panel 
-	 * is cleared and result is appended to the display panel.
-	 * 
-	 * @param  displayPanel  the display panel that the equal action modifies.
+	 * Creates a button that enters a digit.
+	 *
+	 * @param  number  the digit entered.
+	 * @return a new formatted button.
+	 */
+	private JButton makeNumberButton(final Number number) {
+		return makeInputButton(number.getNumber(), number.getNumber());
+	}
+
+	/**
+	 * Creates a button that enters an element, and maps the characters of
+	 * its name and of the element to that element so it can also be typed
+	 * or pasted.
+	 *
+	 * @param  name     the string displayed on the button and the display
+	 * 		    panel.
+	 * @param  element  the element added to the calculator buffer.
+	 * @return a new formatted button.
+	 */
+	private JButton makeInputButton(final String name, final String element) {
+		final char key = name.charAt(0);
+		mapInput(key, element, name);
+		mapInput(element.charAt(0), element, name);
+		return makeButton(name, () -> enter(key));
+	}
+
+	/**
+	 * Creates a button that enters a function and opens its group, and
+	 * maps the first character of the function's name to it so it can
+	 * also be typed.
+	 *
+	 * @param  name      the string displayed on the button.
+	 * @param  function  the function entered.
+	 * @return a new formatted button.
+	 */
+	private JButton makeFunctionButton(final String name,
+			final Operator function) {
+		final String open = Symbol.LEFT_PARENTHESIS.getSymbol();
+		final String element = function.getOperator() + open;
+		final char key = element.charAt(0);
+		mapInput(key, element, name + open);
+		return makeButton(name, () -> enter(key));
+	}
+
+	/**
+	 * Maps a character to the element it enters and the text displayed
+	 * for it.
+	 */
+	private void mapInput(final char key, final String element,
+			final String label) {
+		elements[key] = element;
+		labels[key] = label;
+	}
+
+	/**
+	 * Binds every character that can be entered, and the keys for equal,
+	 * delete, clear and, with a display, paste, for as long as the window
+	 * has focus.
 	 */
-	private void formatEqualButton(final DisplayPanel displayPanel) {
-		symbolButtons.get(Symbol.EQUAL).addActionListener(event -> {
-			if (calculator.getBufferSize() > 0) {
-				displayPanel.clearText();
-				displayPanel.appendElement(Double
-						.toString(calculator.getResult()));
+	private void bindKeys() {
+		for (char key = 0; key < KEYS; key++) {
+			if (elements[key] != null) {
+				final char entered = key;
+				bindKey(KeyStroke.getKeyStroke(key), () -> enter(entered));
+			}
+		}
+		bindKey(KeyStroke.getKeyStroke('='), this::evaluate);
+		bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), 
+				this::evaluate);
+		bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_BACK_SPACE, 0), 
+				this::delete);
+		bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), this::clear);
+		bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0), this::clear);
+		if (!GraphicsEnvironment.isHeadless()) {
+			bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_V, Toolkit
+				.getDefaultToolkit().getMenuShortcutKeyMaskEx()),
+				this::paste);
+		}
+	}
+
+	private void bindKey(final KeyStroke keyStroke, final Runnable action) {
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(keyStroke, keyStroke);
+		getActionMap().put(keyStroke, new AbstractAction() {
+			@Override
+			public void actionPerformed(final ActionEvent event) {
+				action.run();
 			}
 		});
 	}
 
 	/**
-	 * Adds functionality to the clear button. On action event the display panel, 
-	 * and calculator buffer is cleared.
+	 * Enters the element of a character and shows the running result.
+	 */
+	private void enter(final char key) {
+		cancelEvaluation();
+		calculator.addElement(elements[key]);
+		displayPanel.appendElement(labels[key]);
+		updatePreview();
+	}
+
+	/**
+	 * Enters the text on the clipboard as if it were typed. If the
+	 * clipboard holds no text, or text that cannot be entered, nothing is
+	 * entered and a beep sounds.
+	 */
+	private void paste() {
+		try {
+			if (enterAll((String) Toolkit.getDefaultToolkit()
+					.getSystemClipboard()
+					.getData(DataFlavor.stringFlavor))) {
+				return;
+			}
+		} catch (UnsupportedFlavorException | IOException 
+				| IllegalStateException e) {
+			// Nothing to paste.
+		}
+		Toolkit.getDefaultToolkit().beep();
+	}
+
+	/**
+	 * Enters every character of a text, ignoring whitespace, and shows
+	 * the running result. The display panel is updated once for the whole
+	 * text.
 	 *
-	 * @param  displayPanel  the display panel that the clear action modifies.  
+	 * @param  text  the text to be entered.
+	 * @return true if the text was entered, false if it has a character
+	 * 	   that cannot be entered, in which case nothing is.
+	 */
+	private boolean enterAll(final CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (Character.isWhitespace(c)) {
+				continue;
+			}
+			if (c >= KEYS || elements[c] == null) {
+				return false;
+			}
+			i += spelledLength(text, i) - 1;
+		}
+		cancelEvaluation();
+		final List<String> entered = new ArrayList<>(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (!Character.isWhitespace(c)) {
+				calculator.addElement(elements[c]);
+				entered.add(labels[c]);
+				i += spelledLength(text, i) - 1;
+			}
+		}
+		displayPanel.appendElements(entered);
+		updatePreview();
+		return true;
+	}
+
+	/**
+	 * Returns the number of characters of a text entered by the character
+	 * at an index: the length of its element if the text spells the
+	 * element out there, as a recalled sqrt( does, otherwise 1.
+	 */
+	private int spelledLength(final CharSequence text, final int index) {
+		final String element = elements[text.charAt(index)];
+		if (element.length() == 1 
+				|| index + element.length() > text.length()) {
+			return 1;
+		}
+		for (int i = 1; i < element.length(); i++) {
+			if (text.charAt(index + i) != element.charAt(i)) {
+				return 1;
+			}
+		}
+		return element.length();
+	}
+
+	/**
+	 * Takes the expression from the calculator and evaluates it in the
+	 * background. The display panel is cleared at once and shows the
+	 * result when it is ready, or an error in place of the running result
+	 * if the expression is malformed.
 	 */
-	private void formatClearButton(final DisplayPanel displayPanel) {
-		symbolButtons.get(Symbol.CLEAR).addActionListener(event -> {
-			displayPanel.clearText();
-			displayPanel.getList().clear();
-			calculator.clearBuffer();
+	private void evaluate() {
+		if (calculator.getBufferSize() == 0) {
+			return;
+		}
+		final String expression = calculator.getExpression();
+		calculator.clearBuffer();
+		displayPanel.clearText();
+		displayPanel.getList().clear();
+		displayPanel.setPreview("");
+		cancelEvaluation();
+		final long request = generation;
+		pending = evaluator().submit(() -> {
+			String result;
+			boolean failed = false;
+			try {
+				result = calculator.getResultText(expression);
+			} catch (IllegalArgumentException | IllegalStateException
+					| ArithmeticException e) {
+				result = ERROR;
+				failed = true;
+			}
+			if (!failed) {
+				record(expression, result);
+			}
+			publish(request, result, failed);
 		});
 	}
 
 	/**
-	 * Adds functionality to the delete button. On action event, the most 
-	 * recent element appended to the display panel and added to the calculator
-	 * buffer is removed.
+	 * Returns the executor that evaluates expressions, starting its thread
+	 * on first use so that startup does not pay for it.
+	 */
+	private ExecutorService evaluator() {
+		if (evaluator == null) {
+			evaluator = Executors.newSingleThreadExecutor(task -> {
+				final Thread thread = new Thread(task,
+						"calculator-evaluation");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return evaluator;
+	}
+
+	/**
+	 * Shows the result of an evaluation, unless it has been cancelled, and
+	 * the history it was recorded in, on the event dispatch thread.
 	 */
-	private void formatDeleteButton(final DisplayPanel displayPanel) {
-		symbolButtons.get(Symbol.DELETE).addActionListener(event -> {
-			if (calculator.getBufferSize() > 0) {
-				calculator.removeLastElement();
-				displayPanel.removeLastElement();
+	private void publish(final long request, final String result,
+			final boolean failed) {
+		SwingUtilities.invokeLater(() -> {
+			if (historyPanel != null && !failed) {
+				historyPanel.refresh();
+			}
+			if (request != generation) {
+				return;
+			}
+			pending = null;
+			if (failed) {
+				displayPanel.setPreview(result);
+			} else {
+				displayPanel.appendElement(result);
 			}
 		});
 	}
 
+	/**
+	 * Adds an expression and its result to the history, if there is one.
+	 * Called on the evaluation thread, so that the occasional compaction,
+	 * which copies every retained entry, never holds up the event dispatch
+	 * thread; the history panel is refreshed once the result is published.
+	 */
+	private void record(final String expression, final String result) {
+		if (history == null) {
+			return;
+		}
+		try {
+			history.append(expression, result);
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("History not recorded: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Replaces the input with an expression from the history.
+	 *
+	 * @param  expression  the expression recalled.
+	 */
+	private void recall(final String expression) {
+		clear();
+		enterAll(expression);
+	}
+
+	/**
+	 * Cancels the evaluation in progress, if any, so that its result is
+	 * not shown.
+	 */
+	private void cancelEvaluation() {
+		generation++;
+		if (pending != null) {
+			pending.cancel(false);
+			pending = null;
+		}
+	}
+
+	/**
+	 * Clears the display panel and the calculator buffer.
+	 */
+	private void clear() {
+		cancelEvaluation();
+		displayPanel.clearText();
+		displayPanel.getList().clear();
+		calculator.clearBuffer();
+		displayPanel.setPreview("");
+	}
+
+	/**
+	 * Removes the most recent element appended to the display panel and
+	 * added to the calculator buffer.
+	 */
+	private void delete() {
+		cancelEvaluation();
+		if (calculator.getBufferSize() > 0) {
+			calculator.removeLastElement();
+			displayPanel.removeLastElement();
+			updatePreview();
+		}
+	}
+
+	/**
+	 * Shows the running result of the calculator buffer on the display 
+	 * panel, or nothing while the expression is incomplete.
+	 */
+	private void updatePreview() {
+		final double preview = calculator.getPreview();
+		displayPanel.setPreview(Double.isNaN(preview) 
+				? "" : calculator.format(preview));
+	}
+
 	/**
 	 * The operator buttons are styled.
 	 */
@@ -213,8 +622,7 @@ public class ButtonPanel extends JPanel {
 	 * the operator buttons.
 	 */
 	private void styleEqualButton() {
-		symbolButtons.get(Symbol.EQUAL).setFont(
-				new Font("Arial", Font.BOLD, 15));
+		symbolButtons.get(Symbol.EQUAL).setFont(Fonts.EQUAL_BUTTON);
 		symbolButtons.get(Symbol.EQUAL).setBackground(Color.ORANGE);
 		symbolButtons.get(Symbol.EQUAL).setForeground(Color.WHITE);
 		symbolButtons.get(Symbol.EQUAL).setOpaque(true);
@@ -229,6 +637,14 @@ public class ButtonPanel extends JPanel {
 		return displayPanel;
 	}
 
+	/**
+	 * Returns the panel listing the history.
+	 * @return the history panel, or null if there is no history.
+	 */
+	public HistoryPanel getHistoryPanel() {
+		return historyPanel;
+	}
+
 	protected void paintComponent(Graphics g) {
 		final Graphics2D g2 = (Graphics2D) g;
 		g2.setPaint(Color.CYAN);
@@ -2,293 +2,287 @@
  * Filename: Calculator.java
  * Description: Defines a calculator class. Calculator implemented using a
  * 		stack.
- * Comment: Parenthesis implementation is not complete.
  * Modified: 2021-05-11	File Created.
  * 	     2021-05-17 Finished implementation w/o parenthesis.
  * 	     2021-06-01 Refactored and using a map of ENUMs for operators
  * 	     		and digits.
+ * 	     2026-10-18 Single pass evaluation through Evaluator.
+ * 	     2026-10-18 Buffer is evaluated as typed tokens.
+ * 	     2026-10-18 Buffer is kept as text and read by the streaming
+ * 	     		Lexer.
+ * 	     2026-10-18 Optional result cache.
+ * 	     2026-10-18 Running result kept up to date as elements are added
+ * 	     		and removed.
+ * 	     2026-10-18 Selectable decimal arithmetic.
+ * 	     2026-10-18 Parentheses.
+ * 	     2026-10-18 Evaluator and lexer reused for every result.
+ * 	     2026-10-18 Results formatted as the shortest round trip decimal,
+ * 	     		optionally rounded to a precision.
+ * 	     2026-10-18 Results of expressions other than the buffer.
+ * 	     2026-10-18 Modulo and functions.
+ * 	     2026-10-18 Cache misses evaluated with the context's lexer.
  * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
  ****************************************************************************H*/
 
-import java.util.*;
-import java.util.function.BiConsumer;
-import java.util.function.Predicate;
-import java.util.stream.Stream;
+import java.util.Arrays;
 
 /**
  * Defines a calculator that can perform the following calculations: 
- * exponentiation, multiplication, division, addition, and subtraction. Calculator
+ * exponentiation, multiplication, division, modulo, addition, and subtraction,
+ * and the functions of {@link Operator} such as square roots. Calculator
  * can receive any number of expressions and carry out all the specified operations.
- * Expressions must be in infix order.
+ * Expressions must be in infix order and may be grouped with parentheses.
  */
 public class Calculator {
 
 	/**
-	 * A stack that contains the input operators and operands.
+	 * The text of the input operators and operands, in the order they were
+	 * added.
 	 */
-	private final Deque<String> buffer;
+	private final StringBuilder buffer;
 
 	/**
-	 * Constructs calculator object. Initializes buffer and sets the official
-	 * list of acceptable operators.
+	 * A stack of the lengths of the elements in the buffer, so the last
+	 * element can be removed.
 	 */
-	public Calculator() {
-		buffer = new ArrayDeque<>();
-	}
+	private int[] elementLengths;
 
 	/**
-	 * Adds an element to the buffer. If element is not an operator and
-	 * more than two elements in a buffer then check precedence of the
-	 * most recent operator.
-	 *
-	 * @param  element  a string representing either an operator or an 
-	 * 		    operand.
+	 * The number of elements in the buffer.
 	 */
-	public void addElement(final String element) {
-		buffer.addFirst(element);
-		checkIfMultiDigit();
-	}
+	private int elementCount;
 
 	/**
-	 * Checks if the there are consecutive digits in the buffer. If true, 
-	 * then the digits are joined to form a multi-digit number.
+	 * Evaluates the buffer in order of operator precedence, reusing the
+	 * same stacks and lexer for every result.
 	 */
-	private void checkIfMultiDigit() {
-		if (buffer.size() > 1) {
-			String currentElement = buffer.removeFirst();
-			while (!isOperator(currentElement) && buffer.size() > 0) {
-				String nextElement = buffer.removeFirst();
-				if (isOperator(nextElement)) {
-					buffer.addFirst(nextElement);
-					break;
-				} else {
-					currentElement = combineDigits(nextElement, 
-								currentElement);
-				}
-			}
-			buffer.addFirst(currentElement);
-		}
-	}
+	private final EvaluationContext context;
 
 	/**
-	 * Combines two digits and returns the multi-digit result.
-	 * 
-	 * @param  firstDigit  the first digit in the multi-digit number.
-	 * @param  secondDigit  the second digit in the multi-digit number.
-	 * @return 		The newly formed multi-digit string.
+	 * Keeps the running result of the buffer as it is edited.
 	 */
-	private String combineDigits(String firstDigit, final String secondDigit) {
-		return firstDigit += secondDigit;
-	}
+	private final IncrementalEvaluator running;
 
 	/**
-	 * Checks if the argument is an operator.
-	 *
-	 * @param  element  the string to be checked.
-	 * @return 	    true if element is an operator, false otherwise.
+	 * Caches results of repeated expressions, or null for no caching.
 	 */
-	private boolean isOperator(final String element) {
-		return Stream.of(Operator.values()).anyMatch(value 
-				-> element.equals(value.getOperator()));
-	}
+	private ResultCache cache;
 
 	/**
-	 * Returns the final result of the calculation.
-	 *
-	 * @return  the final result of the calculation.
+	 * Evaluates the buffer with decimal arithmetic, or null to use binary
+	 * floating point.
 	 */
-	public double getResult() {
-		calculate();
-		return Double.parseDouble(buffer.removeFirst());
-	}
+	private DecimalEvaluator decimalEvaluator;
 
 	/**
-	 * Carries out all operations in buffer.
+	 * Formats binary floating point results.
 	 */
-	private void calculate() {
-		operateOnElements(this::isExponentiation, this::isExponentiation, 
-						this::exponentiate, this::exponentiate);
+	private DoubleFormatter formatter;
 
-		operateOnElements(this::isMultiplication, this::isDivision, 
-						this::multiply, this::divide);
-
-		operateOnElements(this::isAddition, this::isSubtraction, 
-						this::add, this::subtract);
+	/**
+	 * Constructs calculator object. Initializes buffer and evaluator.
+	 */
+	public Calculator() {
+		buffer = new StringBuilder();
+		elementLengths = new int[16];
+		context = new EvaluationContext();
+		running = new IncrementalEvaluator(buffer);
+		formatter = DoubleFormatter.SHORTEST;
 	}
 
 	/**
-	 * Carries out provided operations in order of precedence, either primary
-	 * or secondary. 
+	 * Adds an element to the buffer. Consecutive digits are read as a 
+	 * single multi-digit number when the buffer is evaluated.
 	 *
-	 * @param  isPrimaryOperation    a Predicate functional interface that determines
-	 * 				 if the operator specifies the primary function.
-	 * @param  isSecondaryOperation  a Predicate functional interface that determines 
-	 * 				 if the operator specifies the secondary function.
-	 * @param  primaryOperation	 a BiConsumer functional interface that specifies the 
-	 * 				 higher order operation to be carried out.
-	 * @param  secondaryOperation	 a BiConsumer functional interface that the specifies 
-	 * 				 lower order operation to be carried out.
+	 * @param  element  a string representing either an operator or an 
+	 * 		    operand.
 	 */
-	private void operateOnElements(Predicate<String> isPrimaryOperation,
-					Predicate<String> isSecondaryOperation,
-					BiConsumer<Double, Double> primaryOperation,
-					BiConsumer<Double, Double> secondaryOperation) {
-		final Deque<String> temp = new ArrayDeque<>();
-		while (buffer.size() > 0) {
-			final String element = buffer.removeFirst();
-			if (isOperator(element)) {
-				if (isPrimaryOperation.test(element)) {
-					final Double firstOperand = 
-						Double.parseDouble(buffer.removeFirst());
-					final Double secondOperand = 
-						Double.parseDouble(temp.removeFirst());
-					primaryOperation.accept(firstOperand, 
-								secondOperand);
-				} else if (isSecondaryOperation.test(element)) {
-					final Double firstOperand = 
-						Double.parseDouble(buffer.removeFirst());
-					final Double secondOperand = 
-						Double.parseDouble(temp.removeFirst());
-					secondaryOperation.accept(firstOperand, 
-								secondOperand);
-				} else {
-					temp.addFirst(element);
-				}
-			} else {
-				temp.addFirst(element);
-			}
+	public void addElement(final String element) {
+		if (elementCount == elementLengths.length) {
+			elementLengths = Arrays.copyOf(elementLengths, 
+						elementCount << 1);
 		}
-		while (temp.size() > 0) {
-			buffer.addFirst(temp.removeFirst());
+		elementLengths[elementCount++] = element.length();
+		for (int i = 0; i < element.length(); i++) {
+			buffer.append(element.charAt(i));
+			running.append(element.charAt(i));
 		}
 	}
 
 	/**
-	 * Checks if provided element specifies exponentiation.
+	 * Returns the result of the elements added so far without clearing
+	 * the buffer. A trailing operator is ignored. The result is kept up to
+	 * date as elements are added and removed, so this does not read the
+	 * buffer again.
 	 *
-	 * @param  element  String to be checked.
-	 * @return true if element specifies exponentiation, false otherwise.
+	 * @return the running result, or NaN if the buffer is empty or holds
+	 * 	   an invalid expression.
 	 */
-	private boolean isExponentiation(final String element) {
-		return Operator.EXPONENTIATION.isOperator(element);
+	public double getPreview() {
+		return running.getPreview();
 	}
 
 	/**
-	 * Checks if provided element specifies multiplication..
+	 * Returns the final result of the calculation. The buffer is read
+	 * once by the lexer, evaluated, then cleared.
 	 *
-	 * @param  element  String to be checked.
-	 * @return true if element specifies multiplication, false otherwise.
+	 * @return  the final result of the calculation.
+	 * @throws IllegalArgumentException if the buffer holds an unexpected
+	 * 				    character.
+	 * @throws IllegalStateException if the buffer holds a malformed
+	 * 				 expression.
 	 */
-	private boolean isMultiplication(final String element) {
-		return Operator.MULTIPLICATION.isOperator(element);
+	public double getResult() {
+		try {
+			return cache == null 
+				? context.evaluate(buffer) 
+				: cache.evaluate(buffer, context);
+		} finally {
+			clearBuffer();
+		}
 	}
 
 	/**
-	 * Checks if provided element specifies division.
+	 * Returns the final result of the calculation as text in the current
+	 * numeric mode, then clears the buffer. Decimal results are plain
+	 * decimals without trailing zeros.
 	 *
-	 * @param  element  String to be checked.
-	 * @return true if element specifies division, false otherwise.
+	 * @return  the final result of the calculation.
+	 * @throws IllegalArgumentException if the buffer holds an unexpected
+	 * 				    character.
+	 * @throws IllegalStateException if the buffer holds a malformed
+	 * 				 expression.
+	 * @throws ArithmeticException if a decimal result divides by zero.
 	 */
-	private boolean isDivision(final String element) {
-		return Operator.DIVISION.isOperator(element);
+	public String getResultText() {
+		try {
+			return getResultText(buffer);
+		} finally {
+			clearBuffer();
+		}
 	}
 
 	/**
-	 * Checks if provided element specifies addition.
+	 * Returns the result of an expression as text in the current numeric
+	 * mode, the way {@link #getResultText()} returns the result of the
+	 * buffer. The buffer is neither read nor cleared, so this may run on
+	 * another thread while elements are added, provided that calls to it
+	 * and to the other result methods do not overlap.
 	 *
-	 * @param  element  String to be checked.
-	 * @return true if element specifies addition, false otherwise.
+	 * @param  expression  the infix expression.
+	 * @return the result of the expression.
+	 * @throws IllegalArgumentException if the expression holds an
+	 * 				    unexpected character.
+	 * @throws IllegalStateException if the expression is malformed.
+	 * @throws ArithmeticException if a decimal result divides by zero.
 	 */
-	private boolean isAddition(final String element) {
-		return Operator.ADDITION.isOperator(element);
+	public String getResultText(final CharSequence expression) {
+		if (decimalEvaluator == null) {
+			return format(cache == null 
+				? context.evaluate(expression) 
+				: cache.evaluate(expression, context));
+		}
+		decimalEvaluator.evaluate(context.lexer(expression));
+		return decimalEvaluator.getResultText();
 	}
 
 	/**
-	 * Checks if provided element specifies subtraction.
-	 *
-	 * @param  element  String to be checked.
-	 * @return true if element specifies subtraction, false otherwise.
+	 * Returns the text of the elements added so far.
 	 */
-	private boolean isSubtraction(final String element) {
-		return Operator.SUBTRACTION.isOperator(element);
+	public String getExpression() {
+		return buffer.toString();
 	}
 
 	/**
-	 * Carries out exponentiation using the provided base and exponent.
+	 * Selects the arithmetic used by {@link #getResultText()}. Decimal 
+	 * modes use {@link DecimalEvaluator#DEFAULT_CONTEXT} or
+	 * {@link DecimalEvaluator#DEFAULT_SCALE}. The running result and 
+	 * {@link #getResult()} are always binary floating point.
 	 *
-	 * @param  base      the base that is raised to the exponent power.
-	 * @param  exponent  the exponent that the base is raised to. 
+	 * @param  mode  the numeric mode.
 	 */
-	private void exponentiate(final Double base, final Double exponent) {
-		buffer.addFirst(Double.toString(Math.pow(base, exponent)));
+	public void setNumericMode(final NumericMode mode) {
+		switch (mode) {
+			case BIG_DECIMAL:
+				decimalEvaluator = DecimalEvaluator.bigDecimal(
+					DecimalEvaluator.DEFAULT_CONTEXT);
+				break;
+			case FIXED_POINT:
+				decimalEvaluator = DecimalEvaluator.fixedPoint(
+					DecimalEvaluator.DEFAULT_SCALE);
+				break;
+			default:
+				decimalEvaluator = null;
+		}
 	}
 
 	/**
-	 * Carries out multiplication using the provided multiplier and multiplicand.
+	 * Sets the number of significant digits that binary floating point
+	 * results are rounded to when formatted. Decimal results are not
+	 * affected.
 	 *
-	 * @param  multiplier    the number by which the multiplicand is multiplied.
-	 * @param  multiplicand  the quantity that is multiplied by the multiplier. 
+	 * @param  significantDigits  the number of digits from 1 to 17, or 0
+	 * 			      for the shortest decimal that reads back
+	 * 			      as the same double.
+	 * @throws IllegalArgumentException if the number of digits is out of
+	 * 				    range.
 	 */
-	private void multiply(final Double multiplier, final Double multiplicand) {
-		buffer.addFirst(Double.toString(multiplier * multiplicand));
+	public void setPrecision(final int significantDigits) {
+		formatter = DoubleFormatter.withPrecision(significantDigits);
 	}
 
 	/**
-	 * Carries out division using the provided dividend and divisor.
+	 * Formats a binary floating point value the way
+	 * {@link #getResultText()} does.
 	 *
-	 * @param  dividend  the dividend that is divided by the divisor.
-	 * @param  divisor   the number that the dividend is divided by. 
+	 * @param  value  the value to be formatted.
+	 * @return the value as text.
 	 */
-	private void divide(final Double dividend, final Double divisor) {
-		double result;
-		try {
-			result = dividend / divisor;
-			buffer.addFirst(Double.toString(result));
-		} catch(ArithmeticException e) {
-			clearBuffer();
-			System.out.println(e + "Cannot Divide by zero");
-		}
+	public String format(final double value) {
+		return formatter.toString(value);
 	}
 
 	/**
-	 * Carries out addition using the provided first and second summands.
-	 *
-	 * @param  firstSummand   the first summand that is added to the second summand.
-	 * @param  secondSummand  the second summand that is added to the first summand.
+	 * Returns the arithmetic used by {@link #getResultText()}.
 	 */
-	private void add(final Double firstSummand, final Double secondSummand) {
-		buffer.addFirst(Double.toString(firstSummand + secondSummand));
+	public NumericMode getNumericMode() {
+		return decimalEvaluator == null 
+				? NumericMode.DOUBLE : decimalEvaluator.getMode();
 	}
 
 	/**
-	 * Carries out subtraction using provided minuend and subtrahend.
+	 * Sets the cache that results are looked up in and stored to. The
+	 * cache may be shared with other calculators and threads.
 	 *
-	 * @param  minuend     the number that is subtracted by the subtrahend.
-	 * @param  subtrahend  the number that is subtracted from another.
+	 * @param  cache  the result cache, or null to stop caching.
 	 */
-	private void subtract(final Double minuend, final Double subtrahend) {
-		buffer.addFirst(Double.toString(minuend - subtrahend));
+	public void setCache(final ResultCache cache) {
+		this.cache = cache;
 	}
 
 	/**
 	 * Removes element that was added last.
 	 */
 	public void removeLastElement() {
-		buffer.removeFirst();
+		for (int i = elementLengths[--elementCount]; i > 0; i--) {
+			buffer.setLength(buffer.length() - 1);
+			running.removeLast();
+		}
 	}
 
 	/**
 	 * Removes all elements from the buffer.
 	 */
 	public void clearBuffer() {
-		buffer.clear();
+		buffer.setLength(0);
+		elementCount = 0;
+		running.clear();
 	}
 
 	/**
 	 * Returns the size of the buffer.
 	 */
 	public int getBufferSize() {
-		return buffer.size();
+		return elementCount;
 	}
 }
-
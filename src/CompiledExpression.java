@@ -0,0 +1,519 @@
+/*H*****************************************************************************
+ * Filename: CompiledExpression.java
+ * Description: An infix expression compiled once into postfix instructions
+ * 		that can be evaluated any number of times.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Added variables and bulk evaluation.
+ * 	     2026-10-18 Instructions for optimized expressions.
+ * 	     2026-10-18 Hot expressions are promoted to generated bytecode.
+ * 	     2026-10-18 Vectorized bulk evaluators when available.
+ * 	     2026-10-18 Metrics.
+ * 	     2026-10-18 Binary encoding.
+ * 	     2026-10-18 Opcodes for every operator.
+ * 	     2026-10-18 Largest index of an instruction.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable expression in postfix order. Each instruction is an int
+ * holding an opcode in its low byte and, for operands, an index into the 
+ * constant pool or the variable values in the remaining bits. Variables are
+ * numbered in order of their first appearance in the source. Evaluation
+ * walks the instructions once over a stack whose depth is known at compile
+ * time. A compiled
+ * expression can be shared between threads, and evaluating it allocates
+ * nothing once the calling thread's scratch stack exists.
+ *
+ * <p>An expression evaluated one row at a time more than
+ * {@link #PROMOTION_THRESHOLD} times is promoted: {@link FormulaGenerator}
+ * turns it into a hidden class of straight line bytecode, which is used
+ * for every later evaluation. The threshold is read from the 
+ * calculator.jit.threshold system property; a negative threshold turns
+ * promotion off. Expressions too large to generate stay interpreted.
+ */
+public final class CompiledExpression {
+
+	/**
+	 * The number of low bits of an instruction that hold the opcode.
+	 */
+	static final int OPCODE_BITS = 8;
+
+	/**
+	 * The mask that selects the opcode of an instruction.
+	 */
+	static final int OPCODE_MASK = (1 << OPCODE_BITS) - 1;
+
+	/**
+	 * The largest index an instruction can hold in the bits above its
+	 * opcode.
+	 */
+	static final int MAX_INDEX = -1 >>> OPCODE_BITS;
+
+	static final int EXPONENTIATION = 0;
+	static final int MULTIPLICATION = 1;
+	static final int DIVISION = 2;
+	static final int ADDITION = 3;
+	static final int SUBTRACTION = 4;
+
+	/**
+	 * The opcode of the first operator after {@link Operator#SUBTRACTION}.
+	 * Later operators are numbered up from here in ordinal order, clear of
+	 * the other instructions and of the decimal constant opcodes of
+	 * {@link ExpressionCodec}, so encodings written before an operator was
+	 * added still decode.
+	 */
+	static final int FIRST_EXTENDED_OPERATOR = 0x20;
+
+	/**
+	 * Pushes the constant at the index held by the instruction.
+	 */
+	static final int CONSTANT = 5;
+
+	/**
+	 * Pushes the variable value at the index held by the instruction.
+	 */
+	static final int VARIABLE = 6;
+
+	/**
+	 * Pushes a copy of the top of the stack.
+	 */
+	static final int DUPLICATE = 7;
+
+	/**
+	 * Copies the top of the stack into the scratch slot at the index held
+	 * by the instruction, leaving it on the stack.
+	 */
+	static final int STORE = 8;
+
+	/**
+	 * Pushes the scratch slot at the index held by the instruction.
+	 */
+	static final int LOAD = 9;
+
+	/**
+	 * The number of evaluations after which an expression is promoted to
+	 * generated bytecode, or a negative number to never promote.
+	 */
+	static final int PROMOTION_THRESHOLD = 
+			Integer.getInteger("calculator.jit.threshold", 10_000);
+
+	/**
+	 * The operator of each operator opcode, null for other opcodes.
+	 */
+	private static final Operator[] OPERATORS = 
+				new Operator[OPCODE_MASK + 1];
+
+	static {
+		for (Operator operator : Operator.values()) {
+			OPERATORS[opcode(operator)] = operator;
+		}
+	}
+
+	/**
+	 * The values passed when the expression has no variables.
+	 */
+	private static final double[] NO_VARIABLES = new double[0];
+
+	/**
+	 * A bulk evaluator for each thread that evaluates columns without
+	 * providing one.
+	 */
+	private static final ThreadLocal<BulkEvaluator> BULK_EVALUATOR =
+				ThreadLocal.withInitial(BulkEvaluator::create);
+
+	/**
+	 * A scratch stack for each thread that evaluates without providing one.
+	 */
+	private static final ThreadLocal<double[]> SCRATCH = 
+				ThreadLocal.withInitial(() -> new double[16]);
+
+	/**
+	 * The instructions in postfix order.
+	 */
+	private final int[] code;
+
+	/**
+	 * The constant pool.
+	 */
+	private final double[] constants;
+
+	/**
+	 * The deepest the stack grows during evaluation.
+	 */
+	private final int maxStackDepth;
+
+	/**
+	 * The variable names, indexed by variable number.
+	 */
+	private final String[] variables;
+
+	/**
+	 * The expression this was compiled from.
+	 */
+	private final String source;
+
+	/**
+	 * The generated bytecode for this expression, or null while it is
+	 * interpreted.
+	 */
+	private volatile Formula formula;
+
+	/**
+	 * The number of interpreted evaluations, until promotion is tried. 
+	 * Updates from different threads may be lost, which only delays
+	 * promotion.
+	 */
+	private int invocations;
+
+	CompiledExpression(final int[] code, final double[] constants, 
+			final int maxStackDepth, final String[] variables, 
+			final String source) {
+		this.code = code;
+		this.constants = constants;
+		this.maxStackDepth = maxStackDepth;
+		this.variables = variables;
+		this.source = source;
+	}
+
+	/**
+	 * Compiles an infix expression.
+	 *
+	 * @param  expression  the infix expression.
+	 * @return the compiled expression.
+	 * @throws IllegalArgumentException if the expression is malformed.
+	 */
+	public static CompiledExpression compile(final CharSequence expression) {
+		return ExpressionCompiler.compile(expression);
+	}
+
+	/**
+	 * Returns an equivalent expression with constants folded, identities
+	 * removed, squares turned into multiplications and repeated
+	 * subexpressions evaluated once. Its results are bit for bit the same
+	 * as this expression's.
+	 *
+	 * @return the optimized expression.
+	 * @see ExpressionOptimizer
+	 */
+	public CompiledExpression optimize() {
+		return ExpressionOptimizer.optimize(this);
+	}
+
+	/**
+	 * Returns the compact binary encoding of this expression, which does
+	 * not include the source text.
+	 *
+	 * @return the encoded bytes.
+	 * @see ExpressionCodec
+	 */
+	public byte[] encode() {
+		return ExpressionCodec.encode(this);
+	}
+
+	/**
+	 * Reads an expression encoded by {@link #encode()} at the position of
+	 * a buffer and advances the position past it.
+	 *
+	 * @param  input  the buffer holding the encoding.
+	 * @return the decoded expression, with an empty source.
+	 * @throws IllegalArgumentException if the bytes are not a valid
+	 * 				    encoding.
+	 */
+	public static CompiledExpression decode(final ByteBuffer input) {
+		return ExpressionCodec.decode(input);
+	}
+
+	/**
+	 * Returns the opcode that applies the provided operator.
+	 */
+	static int opcode(final Operator operator) {
+		final int ordinal = operator.ordinal();
+		return ordinal <= SUBTRACTION ? ordinal 
+			: FIRST_EXTENDED_OPERATOR + ordinal - SUBTRACTION - 1;
+	}
+
+	/**
+	 * Returns the operator applied by an opcode.
+	 *
+	 * @return the operator, or null if the opcode applies none.
+	 */
+	static Operator operator(final int opcode) {
+		return opcode >= 0 && opcode < OPERATORS.length 
+			? OPERATORS[opcode] : null;
+	}
+
+	/**
+	 * Applies an operator that has no instruction of its own to the top of
+	 * a stack, the way the interpreter applies the others.
+	 *
+	 * @param  operator  the operator.
+	 * @param  stack     the stack holding its operands.
+	 * @param  top       the number of values on the stack.
+	 * @return the number of values on the stack afterwards.
+	 */
+	static int apply(final Operator operator, final double[] stack,
+			int top) {
+		if (operator.isUnary()) {
+			stack[top - 1] = operator.apply(stack[top - 1]);
+		} else {
+			top--;
+			stack[top - 1] = operator.apply(stack[top - 1], stack[top]);
+		}
+		return top;
+	}
+
+	/**
+	 * Evaluates an expression without variables using the calling thread's
+	 * scratch stack.
+	 *
+	 * @return the result of the expression.
+	 */
+	public double evaluate() {
+		return evaluate(NO_VARIABLES);
+	}
+
+	/**
+	 * Evaluates the expression using the calling thread's scratch stack.
+	 *
+	 * @param  values  the variable values, indexed like 
+	 * 		   {@link #getVariables()}.
+	 * @return the result of the expression.
+	 */
+	public double evaluate(final double[] values) {
+		double[] stack = SCRATCH.get();
+		if (stack.length < maxStackDepth) {
+			stack = new double[maxStackDepth];
+			SCRATCH.set(stack);
+		}
+		return evaluate(values, stack);
+	}
+
+	/**
+	 * Evaluates the expression on the provided stack.
+	 *
+	 * @param  values  the variable values, indexed like 
+	 * 		   {@link #getVariables()}.
+	 * @param  stack   scratch space of at least {@link #getMaxStackDepth()}
+	 * 		   elements.
+	 * @return the result of the expression.
+	 * @throws IllegalArgumentException if a variable has no value.
+	 */
+	public double evaluate(final double[] values, final double[] stack) {
+		checkVariableCount(values.length);
+		final Formula generated = formula;
+		if (generated != null) {
+			return generated.evaluate(values);
+		}
+		if (PROMOTION_THRESHOLD >= 0 && invocations >= 0 
+				&& ++invocations > PROMOTION_THRESHOLD) {
+			promote();
+		}
+		return interpret(values, stack);
+	}
+
+	/**
+	 * Generates bytecode for this expression now instead of waiting for 
+	 * the promotion threshold.
+	 *
+	 * @return true if the expression is evaluated by generated bytecode,
+	 * 	   false if it is too large and stays interpreted.
+	 */
+	public synchronized boolean promote() {
+		if (formula == null && invocations != -1) {
+			formula = FormulaGenerator.generate(this);
+			invocations = -1;
+			if (Metrics.ENABLED && formula != null) {
+				Metrics.recordPromotion();
+			}
+		}
+		return formula != null;
+	}
+
+	/**
+	 * Returns true if this expression is evaluated by generated bytecode.
+	 */
+	public boolean isPromoted() {
+		return formula != null;
+	}
+
+	/**
+	 * Evaluates the expression on the provided stack with the interpreter,
+	 * whether or not it has been promoted.
+	 */
+	double interpret(final double[] values, final double[] stack) {
+		int top = 0;
+		for (final int instruction : code) {
+			switch (instruction & OPCODE_MASK) {
+				case CONSTANT:
+					stack[top++] = 
+						constants[instruction >>> OPCODE_BITS];
+					break;
+				case VARIABLE:
+					stack[top++] = 
+						values[instruction >>> OPCODE_BITS];
+					break;
+				case ADDITION:
+					top--;
+					stack[top - 1] += stack[top];
+					break;
+				case SUBTRACTION:
+					top--;
+					stack[top - 1] -= stack[top];
+					break;
+				case MULTIPLICATION:
+					top--;
+					stack[top - 1] *= stack[top];
+					break;
+				case DIVISION:
+					top--;
+					stack[top - 1] /= stack[top];
+					break;
+				case DUPLICATE:
+					stack[top] = stack[top - 1];
+					top++;
+					break;
+				case STORE:
+					stack[instruction >>> OPCODE_BITS] = 
+						stack[top - 1];
+					break;
+				case LOAD:
+					stack[top++] = 
+						stack[instruction >>> OPCODE_BITS];
+					break;
+				case EXPONENTIATION:
+					top--;
+					stack[top - 1] = Math.pow(stack[top - 1], 
+								stack[top]);
+					break;
+				default:
+					top = apply(OPERATORS[instruction & OPCODE_MASK],
+							stack, top);
+					break;
+			}
+		}
+		return stack[0];
+	}
+
+	/**
+	 * Evaluates the expression once per row of columnar input using the 
+	 * calling thread's {@link BulkEvaluator}.
+	 *
+	 * @param  columns  one array of row values per variable, indexed like
+	 * 		    {@link #getVariables()}.
+	 * @param  results  receives one result per row; its length is the 
+	 * 		    number of rows.
+	 */
+	public void evaluate(final double[][] columns, final double[] results) {
+		BULK_EVALUATOR.get().evaluate(this, columns, results, 0, 
+				results.length);
+	}
+
+	/**
+	 * Throws if fewer values than variables were provided.
+	 */
+	void checkVariableCount(final int count) {
+		if (count < variables.length) {
+			throw new IllegalArgumentException("Expected " 
+					+ variables.length + " variable values, got "
+					+ count);
+		}
+	}
+
+	/**
+	 * Returns the instructions. The array is shared and must not be
+	 * modified.
+	 */
+	int[] getCode() {
+		return code;
+	}
+
+	/**
+	 * Returns the constant pool. The array is shared and must not be
+	 * modified.
+	 */
+	double[] getConstants() {
+		return constants;
+	}
+
+	/**
+	 * Returns the variable names in the order their values are expected.
+	 */
+	public List<String> getVariables() {
+		return Collections.unmodifiableList(Arrays.asList(variables));
+	}
+
+	/**
+	 * Returns the index of the named variable, or -1 if the expression does
+	 * not use it.
+	 */
+	public int getVariableIndex(final String name) {
+		for (int i = 0; i < variables.length; i++) {
+			if (variables[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the scratch stack size needed by {@link #evaluate(double[])},
+	 * including the slots that hold repeated subexpressions.
+	 */
+	public int getMaxStackDepth() {
+		return maxStackDepth;
+	}
+
+	/**
+	 * Returns the number of postfix instructions.
+	 */
+	public int getInstructionCount() {
+		return code.length;
+	}
+
+	/**
+	 * Returns the expression this was compiled from, or an empty string if
+	 * it was decoded from its binary encoding.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the instructions in postfix notation.
+	 */
+	public String toPostfixString() {
+		final StringBuilder builder = new StringBuilder();
+		for (final int instruction : code) {
+			if (builder.length() > 0) {
+				builder.append(' ');
+			}
+			final int opcode = instruction & OPCODE_MASK;
+			if (opcode == CONSTANT) {
+				builder.append(constants[instruction >>> OPCODE_BITS]);
+			} else if (opcode == VARIABLE) {
+				builder.append(variables[instruction >>> OPCODE_BITS]);
+			} else if (opcode == DUPLICATE) {
+				builder.append("dup");
+			} else if (opcode == STORE) {
+				builder.append("store[")
+					.append(instruction >>> OPCODE_BITS).append(']');
+			} else if (opcode == LOAD) {
+				builder.append("load[")
+					.append(instruction >>> OPCODE_BITS).append(']');
+			} else {
+				builder.append(OPERATORS[opcode].getOperator());
+			}
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public String toString() {
+		return source;
+	}
+}
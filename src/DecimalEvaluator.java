@@ -0,0 +1,722 @@
+/*H*****************************************************************************
+ * Filename: DecimalEvaluator.java
+ * Description: Evaluates an infix expression with decimal arithmetic, either
+ * 		with BigDecimal or with fixed point longs.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Parentheses.
+ * 	     2026-10-18 Metrics.
+ * 	     2026-10-18 Modulo and functions.
+ * 	     2026-10-18 Operands and operators must alternate.
+ * 	     2026-10-18 Negation.
+ * 	     2026-10-18 Double results kept to their significant digits.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Evaluates an infix expression with decimal instead of binary arithmetic,
+ * so 0.1+0.2 is exactly 0.3. The evaluation order is the same single pass
+ * as {@link Evaluator}, parentheses included; only the operand stack and the
+ * arithmetic differ.
+ * Literals are read from the text of each operand token, never from its
+ * double value.
+ *
+ * <p>In {@link NumericMode#BIG_DECIMAL} mode every value is a
+ * {@link BigDecimal} and every operation is rounded to a
+ * {@link MathContext}.
+ *
+ * <p>In {@link NumericMode#FIXED_POINT} mode every value has at most a
+ * fixed number of fraction digits. A value is kept as a long holding its
+ * digits and an int holding its number of fraction digits, and addition,
+ * subtraction, multiplication, division, modulo and integer powers are
+ * done with overflow checked long arithmetic, so evaluation allocates
+ * nothing as long as every value fits in a long. A value that does not
+ * fit, or an operation that overflows, is done with BigDecimal instead, and the
+ * result goes back to a long as soon as it fits again. Results that have
+ * more fraction digits than allowed are rounded half even.
+ *
+ * <p>Powers with an integer exponent are exact before rounding; other
+ * exponents are computed in double precision. Modulo is exact, and square
+ * roots are rounded like the other operations. The other functions, and
+ * any operator without decimal arithmetic of its own, are computed in
+ * double precision. Division by zero throws an
+ * {@link ArithmeticException}, as does a result that is not finite. An
+ * evaluator can be reused, but it is not thread-safe.
+ */
+public class DecimalEvaluator {
+
+	/**
+	 * The context used by {@link NumericMode#BIG_DECIMAL} mode when none is
+	 * given.
+	 */
+	public static final MathContext DEFAULT_CONTEXT = MathContext.DECIMAL128;
+
+	/**
+	 * The number of fraction digits used by {@link NumericMode#FIXED_POINT}
+	 * mode when none is given.
+	 */
+	public static final int DEFAULT_SCALE = 10;
+
+	/**
+	 * The largest number of fraction digits in fixed point mode, so any
+	 * two scales can be aligned with one power of ten that fits in a long.
+	 */
+	public static final int MAX_SCALE = 18;
+
+	/**
+	 * Powers of ten that fit in a long.
+	 */
+	private static final long[] POWERS_OF_TEN = new long[19];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	/**
+	 * The most digits of a literal that always fit in a long.
+	 */
+	private static final int MAX_LONG_DIGITS = 18;
+
+	/**
+	 * The largest integer exponent computed exactly.
+	 */
+	private static final int MAX_EXACT_EXPONENT = 999;
+
+	/**
+	 * Either BIG_DECIMAL or FIXED_POINT.
+	 */
+	private final NumericMode mode;
+
+	/**
+	 * The rounding of every operation in BIG_DECIMAL mode.
+	 */
+	private final MathContext context;
+
+	/**
+	 * The most fraction digits of a value in FIXED_POINT mode.
+	 */
+	private final int scale;
+
+	/**
+	 * The digits of each operand on the stack that fits in a long.
+	 */
+	private long[] unscaled;
+
+	/**
+	 * The number of fraction digits of each operand that fits in a long.
+	 */
+	private int[] scales;
+
+	/**
+	 * Each operand on the stack that does not fit in a long, or null if it
+	 * does.
+	 */
+	private BigDecimal[] inflated;
+
+	/**
+	 * The number of operands on the stack.
+	 */
+	private int operandCount;
+
+	/**
+	 * A stack of operators waiting for their right hand operand, with null
+	 * marking an open left parenthesis.
+	 */
+	private Operator[] operators;
+
+	private int operatorCount;
+
+	/**
+	 * The number of times each operator was applied during the current
+	 * evaluation, by ordinal, when {@link Metrics} are enabled.
+	 */
+	private final long[] appliedCounts;
+
+	private DecimalEvaluator(final NumericMode mode,
+			final MathContext context, final int scale) {
+		this.mode = mode;
+		this.context = context;
+		this.scale = scale;
+		unscaled = new long[16];
+		scales = new int[16];
+		inflated = new BigDecimal[16];
+		operators = new Operator[16];
+		appliedCounts = new long[Operator.values().length];
+	}
+
+	/**
+	 * Returns an evaluator that rounds every operation to the provided
+	 * context.
+	 *
+	 * @param  context  the precision and rounding of every operation.
+	 * @return a BIG_DECIMAL mode evaluator.
+	 */
+	public static DecimalEvaluator bigDecimal(final MathContext context) {
+		return new DecimalEvaluator(NumericMode.BIG_DECIMAL, context, 0);
+	}
+
+	/**
+	 * Returns an evaluator that keeps the provided number of fraction
+	 * digits.
+	 *
+	 * @param  scale  the number of fraction digits, up to
+	 * 		  {@link #MAX_SCALE}.
+	 * @return a FIXED_POINT mode evaluator.
+	 * @throws IllegalArgumentException if the scale is out of range.
+	 */
+	public static DecimalEvaluator fixedPoint(final int scale) {
+		if (scale < 0 || scale > MAX_SCALE) {
+			throw new IllegalArgumentException("Scale must be between 0 "
+					+ "and " + MAX_SCALE);
+		}
+		return new DecimalEvaluator(NumericMode.FIXED_POINT, null, scale);
+	}
+
+	/**
+	 * Returns the mode of this evaluator.
+	 */
+	public NumericMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Reads every token from the lexer and leaves the result of the
+	 * expression as the only operand, to be read with
+	 * {@link #isCompact()}, {@link #getUnscaledValue()} and
+	 * {@link #getScale()}, or with {@link #toBigDecimal()}.
+	 *
+	 * @param  lexer  a lexer positioned before the first token.
+	 * @throws IllegalArgumentException if the expression has a variable or
+	 * 				    an unexpected character.
+	 * @throws IllegalStateException if the expression is malformed or has
+	 * 				 an unmatched parenthesis.
+	 * @throws ArithmeticException if the expression divides by zero or
+	 * 			       has a result that is not finite.
+	 */
+	public void evaluate(final Lexer lexer) {
+		operandCount = 0;
+		operatorCount = 0;
+		final long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		int tokens = 0;
+		boolean expectOperand = true;
+		try {
+			while (lexer.next()) {
+				tokens++;
+				switch (lexer.getKind()) {
+					case OPERAND:
+						if (!expectOperand) {
+							throw unexpected("operator");
+						}
+						addOperand(lexer.getText());
+						expectOperand = false;
+						break;
+					case OPERATOR:
+						final Operator operator = 
+							lexer.getOperator();
+						if (operator.isUnary() != expectOperand) {
+							throw unexpected(expectOperand
+								? "operand" : "operator");
+						}
+						addOperator(operator);
+						expectOperand = true;
+						break;
+					case LEFT_PARENTHESIS:
+						if (!expectOperand) {
+							throw unexpected("operator");
+						}
+						pushOperator(null);
+						break;
+					case RIGHT_PARENTHESIS:
+						if (expectOperand) {
+							throw unexpected("operand");
+						}
+						closeParenthesis();
+						break;
+					default:
+						throw new IllegalArgumentException(
+							"Variables need a compiled "
+							+ "expression");
+				}
+			}
+			if (expectOperand) {
+				throw new IllegalStateException("Expected operand at "
+						+ "end of expression");
+			}
+			while (operatorCount > 0) {
+				applyTopOperator();
+			}
+			if (operandCount != 1) {
+				throw new IllegalStateException("Malformed expression");
+			}
+			if (Metrics.ENABLED) {
+				Metrics.recordEvaluation(tokens, 
+						System.nanoTime() - start);
+			}
+		} catch (RuntimeException e) {
+			operandCount = 0;
+			operatorCount = 0;
+			if (Metrics.ENABLED) {
+				Metrics.recordError();
+			}
+			throw e;
+		} finally {
+			if (Metrics.ENABLED) {
+				Metrics.recordOperators(appliedCounts);
+			}
+		}
+	}
+
+	private static IllegalStateException unexpected(final String expected) {
+		return new IllegalStateException("Expected " + expected);
+	}
+
+	/**
+	 * Returns true if the result fits in a long, so it can be read without
+	 * allocating.
+	 */
+	public boolean isCompact() {
+		return inflated[0] == null;
+	}
+
+	/**
+	 * Returns the digits of a compact result.
+	 */
+	public long getUnscaledValue() {
+		return unscaled[0];
+	}
+
+	/**
+	 * Returns the number of fraction digits of a compact result.
+	 */
+	public int getScale() {
+		return scales[0];
+	}
+
+	/**
+	 * Returns the result as a BigDecimal.
+	 */
+	public BigDecimal toBigDecimal() {
+		return inflated[0] != null ? inflated[0]
+				: BigDecimal.valueOf(unscaled[0], scales[0]);
+	}
+
+	/**
+	 * Returns the result as plain decimal text without trailing zeros in
+	 * the fraction.
+	 */
+	public String getResultText() {
+		if (inflated[0] != null) {
+			final BigDecimal result = inflated[0].stripTrailingZeros();
+			return (result.scale() < 0 ? result.setScale(0) : result)
+					.toPlainString();
+		}
+		long digits = unscaled[0];
+		int fractionDigits = scales[0];
+		while (fractionDigits > 0 && digits % 10 == 0) {
+			digits /= 10;
+			fractionDigits--;
+		}
+		return BigDecimal.valueOf(digits, fractionDigits).toPlainString();
+	}
+
+	/**
+	 * Pushes an operand from the text of a number token.
+	 */
+	private void addOperand(final CharSequence text) {
+		if (operandCount == unscaled.length) {
+			unscaled = Arrays.copyOf(unscaled, operandCount << 1);
+			scales = Arrays.copyOf(scales, operandCount << 1);
+			inflated = Arrays.copyOf(inflated, operandCount << 1);
+		}
+		if (mode == NumericMode.BIG_DECIMAL) {
+			pushInflated(new BigDecimal(text.toString(), context));
+			return;
+		}
+		long digits = 0;
+		int digitCount = 0;
+		int fractionDigits = -1;
+		final int start = text.charAt(0) == '-' ? 1 : 0;
+		for (int i = start; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c == '.') {
+				fractionDigits = 0;
+				continue;
+			}
+			if (digits != 0 || c != '0') {
+				digitCount++;
+			}
+			digits = digits * 10 + (c - '0');
+			if (fractionDigits >= 0) {
+				fractionDigits++;
+			}
+		}
+		fractionDigits = Math.max(fractionDigits, 0);
+		if (digitCount > MAX_LONG_DIGITS || fractionDigits > scale) {
+			push(new BigDecimal(text.toString()));
+		} else {
+			pushCompact(start == 1 ? -digits : digits, fractionDigits);
+		}
+	}
+
+	/**
+	 * Pushes an operator, first applying operators on the stack that bind
+	 * at least as tightly, up to the innermost open parenthesis.
+	 */
+	private void addOperator(final Operator operator) {
+		while (operatorCount > 0 && operators[operatorCount - 1] != null
+			&& operators[operatorCount - 1].appliesBefore(operator)) {
+			applyTopOperator();
+		}
+		pushOperator(operator);
+	}
+
+	/**
+	 * Applies every operator of the innermost open group and closes it.
+	 */
+	private void closeParenthesis() {
+		while (operatorCount > 0 && operators[operatorCount - 1] != null) {
+			applyTopOperator();
+		}
+		if (operatorCount == 0) {
+			throw new IllegalStateException("Unmatched "
+					+ Symbol.RIGHT_PARENTHESIS.getSymbol());
+		}
+		operatorCount--;
+	}
+
+	/**
+	 * Pushes an operator, or null for a left parenthesis.
+	 */
+	private void pushOperator(final Operator operator) {
+		if (operatorCount == operators.length) {
+			operators = Arrays.copyOf(operators, operatorCount << 1);
+		}
+		operators[operatorCount++] = operator;
+	}
+
+	/**
+	 * Pops the top operator and its operands and pushes the result.
+	 */
+	private void applyTopOperator() {
+		final Operator operator = operators[--operatorCount];
+		if (operator == null) {
+			throw new IllegalStateException("Unmatched "
+					+ Symbol.LEFT_PARENTHESIS.getSymbol());
+		}
+		if (operandCount < operator.getArity()) {
+			throw new IllegalStateException("Missing operand for "
+					+ operator.getOperator());
+		}
+		if (Metrics.ENABLED) {
+			appliedCounts[operator.ordinal()]++;
+		}
+		if (operator == Operator.NEGATION
+				&& inflated[operandCount - 1] == null
+				&& unscaled[operandCount - 1] != Long.MIN_VALUE) {
+			unscaled[operandCount - 1] = -unscaled[operandCount - 1];
+			return;
+		}
+		if (operator.isUnary()) {
+			final BigDecimal result = applyFunction(operator,
+					valueAt(operandCount - 1));
+			operandCount--;
+			push(result);
+			return;
+		}
+		final int right = --operandCount;
+		final int left = operandCount - 1;
+		if (mode == NumericMode.FIXED_POINT && inflated[left] == null
+				&& inflated[right] == null) {
+			try {
+				applyCompact(operator, left, right);
+				return;
+			} catch (ArithmeticException overflow) {
+				// Done again below with BigDecimal.
+			}
+		}
+		final BigDecimal result = applyInflated(operator,
+				valueAt(left), valueAt(right));
+		operandCount--;
+		push(result);
+	}
+
+	/**
+	 * Applies an operator to two compact operands in place of the left
+	 * one.
+	 *
+	 * @throws ArithmeticException if the result does not fit in a long.
+	 */
+	private void applyCompact(final Operator operator, final int left,
+			final int right) {
+		long a = unscaled[left];
+		long b = unscaled[right];
+		final int aScale = scales[left];
+		final int bScale = scales[right];
+		switch (operator) {
+			case ADDITION:
+			case SUBTRACTION:
+				final int sumScale = Math.max(aScale, bScale);
+				a = Math.multiplyExact(a, POWERS_OF_TEN[sumScale - aScale]);
+				b = Math.multiplyExact(b, POWERS_OF_TEN[sumScale - bScale]);
+				unscaled[left] = operator == Operator.ADDITION
+						? Math.addExact(a, b)
+						: Math.subtractExact(a, b);
+				scales[left] = sumScale;
+				return;
+			case MULTIPLICATION:
+				setRounded(left, Math.multiplyExact(a, b), aScale + bScale);
+				return;
+			case DIVISION:
+				if (b == 0) {
+					throw new ArithmeticException("Division by zero");
+				}
+				final int shift = scale - aScale + bScale;
+				if (shift >= POWERS_OF_TEN.length) {
+					throw new ArithmeticException("Overflow");
+				}
+				unscaled[left] = divideRounded(
+					Math.multiplyExact(a, POWERS_OF_TEN[shift]), b);
+				scales[left] = scale;
+				return;
+			case MODULO:
+				if (b == 0) {
+					throw new ArithmeticException("Division by zero");
+				}
+				final int remainderScale = Math.max(aScale, bScale);
+				a = Math.multiplyExact(a, 
+						POWERS_OF_TEN[remainderScale - aScale]);
+				b = Math.multiplyExact(b, 
+						POWERS_OF_TEN[remainderScale - bScale]);
+				unscaled[left] = a % b;
+				scales[left] = remainderScale;
+				return;
+			case EXPONENTIATION:
+				if (bScale > 0 && b % POWERS_OF_TEN[bScale] != 0) {
+					throw new ArithmeticException("Fractional exponent");
+				}
+				final long exponent = b / POWERS_OF_TEN[bScale];
+				if (exponent < 0 || exponent > MAX_EXACT_EXPONENT) {
+					throw new ArithmeticException("Exponent out of range");
+				}
+				long result = 1;
+				int resultScale = 0;
+				long base = a;
+				int baseScale = aScale;
+				for (long n = exponent; n > 0; n >>= 1) {
+					if ((n & 1) != 0) {
+						result = Math.multiplyExact(result, base);
+						resultScale += baseScale;
+					}
+					if (n > 1) {
+						base = Math.multiplyExact(base, base);
+						baseScale += baseScale;
+					}
+					if (resultScale > MAX_SCALE + scale
+						|| baseScale > MAX_SCALE + scale) {
+						throw new ArithmeticException("Overflow");
+					}
+				}
+				setRounded(left, result, resultScale);
+				return;
+			default:
+				// Done below with BigDecimal.
+				throw new ArithmeticException("Not compact");
+		}
+	}
+
+	/**
+	 * Stores a compact value in place, rounding it half even to the
+	 * maximum number of fraction digits.
+	 */
+	private void setRounded(final int index, final long digits,
+			final int digitsScale) {
+		if (digitsScale <= scale) {
+			unscaled[index] = digits;
+			scales[index] = digitsScale;
+			return;
+		}
+		final int drop = digitsScale - scale;
+		unscaled[index] = drop >= POWERS_OF_TEN.length ? 0
+				: divideRounded(digits, POWERS_OF_TEN[drop]);
+		scales[index] = scale;
+	}
+
+	/**
+	 * Divides and rounds half even.
+	 */
+	private static long divideRounded(final long dividend,
+			final long divisor) {
+		if (dividend == Long.MIN_VALUE && divisor == -1) {
+			throw new ArithmeticException("Overflow");
+		}
+		final long quotient = dividend / divisor;
+		final long remainder = dividend % divisor;
+		if (remainder == 0) {
+			return quotient;
+		}
+		final long twice = Math.abs(remainder) * 2;
+		final long magnitude = Math.abs(divisor);
+		final int sign = (dividend < 0) == (divisor < 0) ? 1 : -1;
+		if (twice > magnitude || (twice == magnitude
+				&& (quotient & 1) != 0) || twice < 0) {
+			return quotient + sign;
+		}
+		return quotient;
+	}
+
+	/**
+	 * Applies an operator to two BigDecimal operands.
+	 */
+	private BigDecimal applyInflated(final Operator operator,
+			final BigDecimal left, final BigDecimal right) {
+		final boolean fixed = mode == NumericMode.FIXED_POINT;
+		switch (operator) {
+			case ADDITION:
+				return fixed ? left.add(right) : left.add(right, context);
+			case SUBTRACTION:
+				return fixed ? left.subtract(right)
+					: left.subtract(right, context);
+			case MULTIPLICATION:
+				return fixed ? left.multiply(right)
+					: left.multiply(right, context);
+			case DIVISION:
+				if (right.signum() == 0) {
+					throw new ArithmeticException("Division by zero");
+				}
+				return fixed
+					? left.divide(right, scale, RoundingMode.HALF_EVEN)
+					: left.divide(right, context);
+			case MODULO:
+				if (right.signum() == 0) {
+					throw new ArithmeticException("Division by zero");
+				}
+				return fixed ? left.remainder(right)
+					: left.remainder(right, context);
+			case EXPONENTIATION:
+				return power(left, right);
+			default:
+				return inexact(operator.apply(left.doubleValue(),
+						right.doubleValue()));
+		}
+	}
+
+	/**
+	 * Applies a function to a BigDecimal operand. Negation is exact.
+	 * Square roots are rounded to the context, or in fixed point mode to
+	 * at least one more fraction digit than is kept, before the value is
+	 * pushed; other functions are computed in double precision.
+	 */
+	private BigDecimal applyFunction(final Operator operator,
+			final BigDecimal operand) {
+		if (operator == Operator.NEGATION) {
+			return operand.negate();
+		}
+		if (operator != Operator.SQUARE_ROOT) {
+			return inexact(operator.apply(operand.doubleValue()));
+		}
+		if (operand.signum() < 0) {
+			throw new ArithmeticException("Square root of a negative "
+					+ "number");
+		}
+		if (mode == NumericMode.BIG_DECIMAL) {
+			return operand.sqrt(context);
+		}
+		final int integerDigits = Math.max(0, 
+				operand.precision() - operand.scale());
+		return operand.sqrt(new MathContext(
+				(integerDigits + 1) / 2 + scale + 1,
+				RoundingMode.HALF_EVEN));
+	}
+
+	/**
+	 * Returns a result computed in double precision as the shortest
+	 * decimal that reads back as the same double, rounded to the context
+	 * in BigDecimal mode. The full binary expansion would show digits
+	 * that are not significant.
+	 *
+	 * @throws ArithmeticException if the result is not finite.
+	 */
+	private BigDecimal inexact(final double result) {
+		if (Double.isNaN(result) || Double.isInfinite(result)) {
+			throw new ArithmeticException("Result is not finite");
+		}
+		final BigDecimal value = BigDecimal.valueOf(result);
+		return mode == NumericMode.FIXED_POINT ? value
+				: value.round(context);
+	}
+
+	/**
+	 * Raises a BigDecimal to a power. Integer exponents up to
+	 * {@link #MAX_EXACT_EXPONENT} are exact before rounding; other
+	 * exponents are computed in double precision.
+	 */
+	private BigDecimal power(final BigDecimal base, final BigDecimal exponent) {
+		final boolean fixed = mode == NumericMode.FIXED_POINT;
+		final BigDecimal integer = exponent.stripTrailingZeros();
+		if (integer.scale() <= 0 && integer.abs().compareTo(
+				BigDecimal.valueOf(MAX_EXACT_EXPONENT)) <= 0) {
+			final int n = integer.intValueExact();
+			if (n >= 0) {
+				return fixed ? base.pow(n) : base.pow(n, context);
+			}
+			if (base.signum() == 0) {
+				throw new ArithmeticException("Division by zero");
+			}
+			return fixed
+				? BigDecimal.ONE.divide(base.pow(-n), scale,
+						RoundingMode.HALF_EVEN)
+				: base.pow(n, context);
+		}
+		return inexact(Math.pow(base.doubleValue(),
+				exponent.doubleValue()));
+	}
+
+	/**
+	 * Returns the operand at the provided stack index as a BigDecimal.
+	 */
+	private BigDecimal valueAt(final int index) {
+		return inflated[index] != null ? inflated[index]
+				: BigDecimal.valueOf(unscaled[index], scales[index]);
+	}
+
+	/**
+	 * Pushes a value computed with BigDecimal. In fixed point mode it is
+	 * rounded to the maximum number of fraction digits, and kept as a
+	 * long if it fits.
+	 */
+	private void push(BigDecimal value) {
+		if (mode == NumericMode.BIG_DECIMAL) {
+			pushInflated(value);
+			return;
+		}
+		if (value.scale() > scale) {
+			value = value.setScale(scale, RoundingMode.HALF_EVEN);
+		} else if (value.scale() < 0) {
+			value = value.setScale(0);
+		}
+		final BigInteger digits = value.unscaledValue();
+		if (digits.bitLength() < Long.SIZE) {
+			pushCompact(digits.longValue(), value.scale());
+		} else {
+			pushInflated(value);
+		}
+	}
+
+	private void pushCompact(final long digits, final int digitsScale) {
+		unscaled[operandCount] = digits;
+		scales[operandCount] = digitsScale;
+		inflated[operandCount++] = null;
+	}
+
+	private void pushInflated(final BigDecimal value) {
+		inflated[operandCount++] = value;
+	}
+}
@@ -2,12 +2,18 @@
  * Filename: DisplayPanel.java
  * Description: Panel where the input and output is displayed to the user.
  * Modified: 2021-05-05	Added header comments.
+ * 	     2026-10-18 Running result preview and in place removal of the
+ * 	     		last element.
+ * 	     2026-10-18 Text area is read only so keys reach the buttons;
+ * 	     		elements can be appended in one update.
+ * 	     2026-10-18 Shared fonts.
  * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
  ****************************************************************************H*/
 
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Displays the input text from the user and the calculated
@@ -20,6 +26,11 @@ public class DisplayPanel extends JPanel {
 	 */
 	private final JTextArea textArea;
 
+	/**
+	 * The label where the running result is displayed.
+	 */
+	private final JLabel previewLabel;
+
 	/**
 	 * A list of elements that are currently displayed to 
 	 * the text area.
@@ -31,10 +42,17 @@ public class DisplayPanel extends JPanel {
 	 */
 	public DisplayPanel() {
 		textArea = new JTextArea(1, 8);
-		textArea.setFont(new Font("Gill Sans", Font.PLAIN, 50));
+		textArea.setFont(Fonts.DISPLAY);
 		textArea.setBackground(Color.LIGHT_GRAY);
 		textArea.setComponentOrientation(ComponentOrientation.LEFT_TO_RIGHT);
-		add(textArea);
+		textArea.setEditable(false);
+		textArea.setFocusable(false);
+		previewLabel = new JLabel(" ", SwingConstants.RIGHT);
+		previewLabel.setFont(Fonts.PREVIEW);
+		previewLabel.setForeground(Color.LIGHT_GRAY);
+		setLayout(new BorderLayout());
+		add(textArea, BorderLayout.CENTER);
+		add(previewLabel, BorderLayout.SOUTH);
 		numberList = new ArrayList<>();
 		setBackground(Color.BLACK);
 	}
@@ -48,18 +66,42 @@ public class DisplayPanel extends JPanel {
 	}
 
 	/**
-	 * Removes the last element to the text area.
+	 * Appends elements to the text area in one update, which keeps long
+	 * pasted input from being laid out once per element.
+	 *
+	 * @param  texts  the elements in the order they were entered.
+	 */
+	public void appendElements(final List<String> texts) {
+		final StringBuilder text = new StringBuilder();
+		for (final String element : texts) {
+			text.append(element);
+		}
+		textArea.append(text.toString());
+		numberList.addAll(texts);
+	}
+
+	/**
+	 * Removes the last element to the text area. Only the characters of
+	 * that element are removed from the document.
 	 */
 	public void removeLastElement() {
 		if (numberList.size() > 0) {
-			numberList.remove(numberList.size()- 1);
-			clearText();
-			for (String element : numberList) {
-				textArea.append(element);
-			}
+			final String last = numberList.remove(numberList.size() - 1);
+			final int end = textArea.getDocument().getLength();
+			textArea.replaceRange(null, 
+				Math.max(0, end - last.length()), end);
 		}
 	}
 
+	/**
+	 * Displays the running result under the input.
+	 *
+	 * @param  text  the running result, or an empty string for none.
+	 */
+	public void setPreview(final String text) {
+		previewLabel.setText(text.isEmpty() ? " " : text);
+	}
+
 	/**
 	 * Returns the list of elements that are currently displayed
 	 * on the text area.
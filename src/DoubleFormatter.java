@@ -0,0 +1,463 @@
+/*H*****************************************************************************
+ * Filename: DoubleFormatter.java
+ * Description: Formats doubles as the shortest decimal that reads back as
+ * 		the same double, without allocating.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Table computed on first format.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a double as text into a caller's char or byte array, using
+ * Giulietti's Schubfach algorithm to find the shortest decimal that
+ * {@link Double#parseDouble(String)} turns back into exactly the same
+ * double. The layout is that of {@link Double#toString(double)}: plain
+ * decimals with at least one fraction digit from 10^-3 up to 10^7, and
+ * otherwise one digit, a fraction and an exponent, as in 1.0E10. Output
+ * never depends on the locale.
+ *
+ * <p>Java 17's {@link Double#toString(double)} sometimes writes one digit
+ * more than needed, and it builds a string for every call. This formatter
+ * gives the same text as {@link Double#toString(double)} on Java 19 and
+ * later, and formatting into an array allocates nothing.
+ *
+ * <p>A formatter may also limit results to a number of significant
+ * digits. The shortest decimal is then rounded half up to that many
+ * digits, so a value shown as 2.675 becomes 2.68, as a person would round
+ * it, even though the double is slightly below 2.675. Rounded text no
+ * longer reads back as the same double. Formatters are immutable and
+ * thread-safe.
+ */
+public final class DoubleFormatter {
+
+	/**
+	 * The longest text written for any double, -2.2250738585072014E-308.
+	 */
+	public static final int MAX_LENGTH = 24;
+
+	/**
+	 * Writes the shortest decimal that reads back as the same double.
+	 */
+	public static final DoubleFormatter SHORTEST = new DoubleFormatter(0);
+
+	/**
+	 * The number of significand bits, including the hidden bit.
+	 */
+	private static final int P = 53;
+
+	/**
+	 * The exponent of the smallest subnormal double.
+	 */
+	private static final int Q_MIN = -1074;
+
+	/**
+	 * The significand of the smallest normal double.
+	 */
+	private static final long C_MIN = 1L << P - 1;
+
+	/**
+	 * Subnormal significands below this have too few digits and are
+	 * scaled up by ten first.
+	 */
+	private static final long C_TINY = 3;
+
+	private static final long T_MASK = C_MIN - 1;
+
+	private static final int BQ_MASK = 0x7FF;
+
+	private static final long MASK_63 = Long.MAX_VALUE;
+
+	/**
+	 * The range of decimal exponents k for which 10^-k is tabulated.
+	 */
+	private static final int K_MIN = -324;
+
+	private static final int K_MAX = 292;
+
+	/**
+	 * Powers of ten that fit in a long.
+	 */
+	private static final long[] POWERS_OF_TEN = new long[19];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	/**
+	 * The number of significant digits written, or 0 for the shortest
+	 * decimal.
+	 */
+	private final int significantDigits;
+
+	private DoubleFormatter(final int significantDigits) {
+		this.significantDigits = significantDigits;
+	}
+
+	/**
+	 * Returns a formatter that writes at most the provided number of
+	 * significant digits.
+	 *
+	 * @param  significantDigits  the number of digits from 1 to 17, or 0
+	 * 			      for the shortest decimal that reads back
+	 * 			      as the same double.
+	 * @return the formatter.
+	 * @throws IllegalArgumentException if the number of digits is out of
+	 * 				    range.
+	 */
+	public static DoubleFormatter withPrecision(final int significantDigits) {
+		if (significantDigits < 0 || significantDigits > 17) {
+			throw new IllegalArgumentException("Significant digits must "
+					+ "be between 0 and 17");
+		}
+		return significantDigits == 0 || significantDigits == 17
+			? SHORTEST : new DoubleFormatter(significantDigits);
+	}
+
+	/**
+	 * Returns the number of significant digits written, or 0 for the
+	 * shortest decimal.
+	 */
+	public int getSignificantDigits() {
+		return significantDigits;
+	}
+
+	/**
+	 * Returns a value as text.
+	 *
+	 * @param  value  the value to be formatted.
+	 * @return the text.
+	 */
+	public String toString(final double value) {
+		final char[] text = new char[MAX_LENGTH];
+		return new String(text, 0, format(value, text, 0));
+	}
+
+	/**
+	 * Writes a value as text into a char array.
+	 *
+	 * @param  value   the value to be formatted.
+	 * @param  output  the array written to, with room for
+	 * 		   {@link #MAX_LENGTH} chars from the offset.
+	 * @param  offset  the index of the first char written.
+	 * @return the index after the last char written.
+	 */
+	public int format(final double value, final char[] output,
+			final int offset) {
+		return write(value, output, null, offset);
+	}
+
+	/**
+	 * Writes a value as ASCII text into a byte array.
+	 *
+	 * @param  value   the value to be formatted.
+	 * @param  output  the array written to, with room for
+	 * 		   {@link #MAX_LENGTH} bytes from the offset.
+	 * @param  offset  the index of the first byte written.
+	 * @return the index after the last byte written.
+	 */
+	public int format(final double value, final byte[] output,
+			final int offset) {
+		return write(value, null, output, offset);
+	}
+
+	/**
+	 * Writes a value as ASCII text at the position of a buffer and
+	 * advances the position past it.
+	 *
+	 * @param  value   the value to be formatted.
+	 * @param  output  the buffer written to, with room for
+	 * 		   {@link #MAX_LENGTH} bytes.
+	 */
+	public void format(final double value, final ByteBuffer output) {
+		if (output.hasArray()) {
+			final int start = output.arrayOffset() + output.position();
+			final int end = format(value, output.array(), start);
+			output.position(output.position() + end - start);
+		} else {
+			final byte[] text = new byte[MAX_LENGTH];
+			output.put(text, 0, format(value, text, 0));
+		}
+	}
+
+	/**
+	 * Writes a value into whichever of the arrays is not null.
+	 */
+	private int write(final double value, final char[] chars,
+			final byte[] bytes, final int offset) {
+		final long bits = Double.doubleToRawLongBits(value);
+		final long t = bits & T_MASK;
+		final int bq = (int) (bits >>> P - 1) & BQ_MASK;
+		if (bq == BQ_MASK) {
+			return writeText(t != 0 ? "NaN"
+				: bits < 0 ? "-Infinity" : "Infinity",
+				chars, bytes, offset);
+		}
+		final int index = bits < 0 ? put(chars, bytes, offset, '-') : offset;
+		if (bq != 0) {
+			final int mq = -Q_MIN + 1 - bq;
+			final long c = C_MIN | t;
+			if (0 < mq && mq < P) {
+				final long f = c >> mq;
+				if (f << mq == c) {
+					return writeDecimal(f, 0, chars, bytes, index);
+				}
+			}
+			return toDecimal(-mq, c, 0, chars, bytes, index);
+		}
+		if (t != 0) {
+			return t < C_TINY
+				? toDecimal(Q_MIN, 10 * t, -1, chars, bytes, index)
+				: toDecimal(Q_MIN, t, 0, chars, bytes, index);
+		}
+		return writeDecimal(0, 0, chars, bytes, index);
+	}
+
+	/**
+	 * Finds the shortest decimal for c 2^q and writes it. Of the decimals
+	 * that round to the double, the one with fewest digits is chosen, and
+	 * of those the closest, ties going to an even last digit.
+	 */
+	private int toDecimal(final int q, final long c, final int dk,
+			final char[] chars, final byte[] bytes, final int index) {
+		final int out = (int) c & 1;
+		final long cb = c << 2;
+		final long cbr = cb + 2;
+		final long cbl;
+		final int k;
+		if (c != C_MIN || q == Q_MIN) {
+			cbl = cb - 2;
+			k = floorLog10Pow2(q);
+		} else {
+			cbl = cb - 1;
+			k = floorLog10ThreeQuartersPow2(q);
+		}
+		final int h = q + floorLog2Pow10(-k) + 2;
+		final long g1 = Table.G[2 * (k - K_MIN)];
+		final long g0 = Table.G[2 * (k - K_MIN) + 1];
+		final long vb = roundToOdd(g1, g0, cb << h);
+		final long vbl = roundToOdd(g1, g0, cbl << h);
+		final long vbr = roundToOdd(g1, g0, cbr << h);
+		final long s = vb >> 2;
+		if (s >= 100) {
+			final long sp10 = 10 * Math.multiplyHigh(s,
+					115_292_150_460_684_698L << 4);
+			final long tp10 = sp10 + 10;
+			final boolean upin = vbl + out <= sp10 << 2;
+			final boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin) {
+				return writeDecimal(upin ? sp10 : tp10, k,
+						chars, bytes, index);
+			}
+		}
+		final long t = s + 1;
+		final boolean uin = vbl + out <= s << 2;
+		final boolean win = (t << 2) + out <= vbr;
+		if (uin != win) {
+			return writeDecimal(uin ? s : t, k + dk, chars, bytes, index);
+		}
+		final long cmp = vb - (s + t << 1);
+		return writeDecimal(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t,
+				k + dk, chars, bytes, index);
+	}
+
+	/**
+	 * Returns g cp / 2^127 rounded to odd, from the two 63 bit halves of
+	 * g.
+	 */
+	private static long roundToOdd(final long g1, final long g0,
+			final long cp) {
+		final long x1 = Math.multiplyHigh(g0, cp);
+		final long y0 = g1 * cp;
+		final long y1 = Math.multiplyHigh(g1, cp);
+		final long z = (y0 >>> 1) + x1;
+		final long vbp = y1 + (z >>> 63);
+		return vbp | (z & MASK_63) + MASK_63 >>> 63;
+	}
+
+	private static int floorLog10Pow2(final int e) {
+		return (int) (e * 661_971_961_083L >> 41);
+	}
+
+	private static int floorLog10ThreeQuartersPow2(final int e) {
+		return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41);
+	}
+
+	private static int floorLog2Pow10(final int e) {
+		return (int) (e * 913_124_641_741L >> 38);
+	}
+
+	/**
+	 * Writes f 10^e, after rounding it to the significant digits of this
+	 * formatter.
+	 */
+	private int writeDecimal(long f, int e, final char[] chars,
+			final byte[] bytes, final int start) {
+		if (f == 0) {
+			return writeText("0.0", chars, bytes, start);
+		}
+		int zeros = trailingZeros(f);
+		f /= POWERS_OF_TEN[zeros];
+		e += zeros;
+		int length = digitCount(f);
+		if (significantDigits > 0 && length > significantDigits) {
+			final long unit = POWERS_OF_TEN[length - significantDigits];
+			final long rounded = f / unit;
+			f = f - rounded * unit >= unit >> 1 ? rounded + 1 : rounded;
+			e += length - significantDigits;
+			zeros = trailingZeros(f);
+			f /= POWERS_OF_TEN[zeros];
+			e += zeros;
+			length = digitCount(f);
+		}
+		final int exponent = length - 1 + e;
+		int index = start;
+		if (exponent >= 0 && exponent < 7) {
+			if (length <= exponent + 1) {
+				index = writeDigits(f, length, length, chars, bytes, index);
+				for (int i = length; i <= exponent; i++) {
+					index = put(chars, bytes, index, '0');
+				}
+				index = put(chars, bytes, index, '.');
+				return put(chars, bytes, index, '0');
+			}
+			return writeDigits(f, length, exponent + 1, chars, bytes,
+					index);
+		}
+		if (exponent < 0 && exponent >= -3) {
+			index = put(chars, bytes, index, '0');
+			index = put(chars, bytes, index, '.');
+			for (int i = exponent + 1; i < 0; i++) {
+				index = put(chars, bytes, index, '0');
+			}
+			return writeDigits(f, length, length, chars, bytes, index);
+		}
+		if (length == 1) {
+			index = put(chars, bytes, index, (char) ('0' + f));
+			index = put(chars, bytes, index, '.');
+			index = put(chars, bytes, index, '0');
+		} else {
+			index = writeDigits(f, length, 1, chars, bytes, index);
+		}
+		index = put(chars, bytes, index, 'E');
+		if (exponent < 0) {
+			index = put(chars, bytes, index, '-');
+		}
+		final int magnitude = Math.abs(exponent);
+		return writeDigits(magnitude, digitCount(magnitude),
+				digitCount(magnitude), chars, bytes, index);
+	}
+
+	/**
+	 * Writes the digits of f with a decimal point after the first
+	 * pointAfter of them, or none if pointAfter is the number of digits.
+	 */
+	private static int writeDigits(long f, final int length,
+			final int pointAfter, final char[] chars, final byte[] bytes,
+			final int start) {
+		final int end = start + length + (pointAfter < length ? 1 : 0);
+		int index = end;
+		for (int i = length - 1; i >= 0; i--) {
+			final long quotient = f / 10;
+			put(chars, bytes, --index, (char) ('0' + (f - quotient * 10)));
+			f = quotient;
+			if (i == pointAfter) {
+				put(chars, bytes, --index, '.');
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Returns the number of decimal digits of a positive f.
+	 */
+	private static int digitCount(final long f) {
+		final int count = floorLog10Pow2(Long.SIZE
+				- Long.numberOfLeadingZeros(f));
+		return count < POWERS_OF_TEN.length && f >= POWERS_OF_TEN[count]
+			? count + 1 : count;
+	}
+
+	/**
+	 * Returns the number of trailing decimal zeros of a positive f,
+	 * testing eight, four, two and then one at a time.
+	 */
+	private static int trailingZeros(long f) {
+		int zeros = 0;
+		if (f % 100_000_000 == 0) {
+			f /= 100_000_000;
+			zeros += 8;
+			if (f % 100_000_000 == 0) {
+				f /= 100_000_000;
+				zeros += 8;
+			}
+		}
+		if (f % 10_000 == 0) {
+			f /= 10_000;
+			zeros += 4;
+		}
+		if (f % 100 == 0) {
+			f /= 100;
+			zeros += 2;
+		}
+		return f % 10 == 0 ? zeros + 1 : zeros;
+	}
+
+	private static int writeText(final String text, final char[] chars,
+			final byte[] bytes, final int start) {
+		int index = start;
+		for (int i = 0; i < text.length(); i++) {
+			index = put(chars, bytes, index, text.charAt(i));
+		}
+		return index;
+	}
+
+	private static int put(final char[] chars, final byte[] bytes,
+			final int index, final char c) {
+		if (chars != null) {
+			chars[index] = c;
+		} else {
+			bytes[index] = (byte) c;
+		}
+		return index + 1;
+	}
+
+	/**
+	 * Holds the table of powers of ten, which is computed with BigInteger
+	 * arithmetic the first time a double is formatted rather than when a
+	 * formatter is created, keeping it off the startup path.
+	 */
+	private static final class Table {
+
+		/**
+		 * For each k from K_MIN to K_MAX, the 126 bit
+		 * g = floor(10^-k 2^-r) + 1 where r makes 2^125 <= 10^-k 2^-r <
+		 * 2^126, as its high 63 bits followed by its low 63 bits.
+		 */
+		static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+		static {
+			final BigInteger mask = BigInteger.ONE.shiftLeft(63)
+					.subtract(BigInteger.ONE);
+			for (int k = K_MIN; k <= K_MAX; k++) {
+				final BigInteger power = BigInteger.TEN.pow(Math.abs(k));
+				final BigInteger g;
+				if (k <= 0) {
+					final int shift = power.bitLength() - 126;
+					g = (shift >= 0 ? power.shiftRight(shift)
+						: power.shiftLeft(-shift)).add(BigInteger.ONE);
+				} else {
+					g = BigInteger.ONE.shiftLeft(125 + power.bitLength())
+						.divide(power).add(BigInteger.ONE);
+				}
+				G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+				G[2 * (k - K_MIN) + 1] = g.and(mask).longValue();
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*H*****************************************************************************
+ * Filename: DoubleStack.java
+ * Description: A growable stack of primitive doubles.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Random access from the bottom.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A last in first out stack of primitive doubles backed by an array. Values
+ * are never boxed, and the array is kept when the stack is cleared so a
+ * stack that is reused stops allocating once it has grown to its working
+ * size.
+ */
+public class DoubleStack {
+
+	/**
+	 * The initial capacity of the backing array.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The elements of the stack, bottom first.
+	 */
+	private double[] elements;
+
+	/**
+	 * The number of elements on the stack.
+	 */
+	private int size;
+
+	/**
+	 * Constructs an empty stack.
+	 */
+	public DoubleStack() {
+		elements = new double[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Pushes a value onto the top of the stack.
+	 *
+	 * @param  value  the value to be pushed.
+	 */
+	public void push(final double value) {
+		if (size == elements.length) {
+			elements = Arrays.copyOf(elements, size << 1);
+		}
+		elements[size++] = value;
+	}
+
+	/**
+	 * Removes and returns the value on the top of the stack.
+	 *
+	 * @return the value on the top of the stack.
+	 * @throws NoSuchElementException if the stack is empty.
+	 */
+	public double pop() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return elements[--size];
+	}
+
+	/**
+	 * Returns the value on the top of the stack without removing it.
+	 *
+	 * @return the value on the top of the stack.
+	 * @throws NoSuchElementException if the stack is empty.
+	 */
+	public double peek() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return elements[size - 1];
+	}
+
+	/**
+	 * Returns the value at the provided depth from the bottom of the stack.
+	 *
+	 * @param  index  the index from the bottom, starting at zero.
+	 * @return the value at the index.
+	 * @throws IndexOutOfBoundsException if the index is not on the stack.
+	 */
+	public double get(final int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		return elements[index];
+	}
+
+	/**
+	 * Returns the number of values on the stack.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if the stack holds no values.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all values from the stack. The backing array is kept.
+	 */
+	public void clear() {
+		size = 0;
+	}
+}
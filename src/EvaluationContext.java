@@ -0,0 +1,168 @@
+/*H*****************************************************************************
+ * Filename: EvaluationContext.java
+ * Description: A reusable evaluator and lexer, with per thread and pooled
+ * 		instances for concurrent callers.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Holds everything needed to evaluate an expression, an {@link Evaluator}
+ * and a {@link Lexer}, so that a caller evaluating many expressions reuses
+ * the same stacks and lexer window for each of them. Once its arrays have
+ * grown to fit the largest expression, a context evaluates without
+ * allocating.
+ *
+ * <p>A context is not thread-safe. Concurrent callers get one of their own
+ * in one of two ways:
+ *
+ * <ul>
+ * <li>{@link #forCurrentThread()} returns a context kept for the calling
+ *     thread, which is the cheapest choice for a fixed set of threads such
+ *     as a worker pool;</li>
+ * <li>{@link #acquire()} takes a context from a small striped pool and
+ *     {@link #close()} returns it, which suits many short lived threads,
+ *     such as a virtual thread per request, that would otherwise leave a
+ *     context behind in every thread.</li>
+ * </ul>
+ */
+public final class EvaluationContext implements AutoCloseable {
+
+	/**
+	 * The number of pool slots, a power of two so a slot is chosen with a
+	 * mask.
+	 */
+	private static final int STRIPES = Integer.highestOneBit(
+			Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+
+	/**
+	 * Idle contexts, at most one per slot. A thread takes and returns its
+	 * context in the slot picked by its id, so threads rarely meet in the
+	 * same slot.
+	 */
+	private static final AtomicReferenceArray<EvaluationContext> POOL =
+			new AtomicReferenceArray<>(STRIPES);
+
+	private static final ThreadLocal<EvaluationContext> CURRENT =
+			ThreadLocal.withInitial(EvaluationContext::new);
+
+	private final Evaluator evaluator;
+
+	private final Lexer lexer;
+
+	/**
+	 * Constructs a context with empty stacks.
+	 */
+	public EvaluationContext() {
+		evaluator = new Evaluator();
+		lexer = new Lexer("");
+	}
+
+	/**
+	 * Returns the context of the calling thread. It must not be closed or
+	 * handed to another thread.
+	 *
+	 * @return the context of the calling thread.
+	 */
+	public static EvaluationContext forCurrentThread() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Takes a context from the pool, or constructs one if the pool has
+	 * none for the calling thread. It should be closed when the caller is
+	 * done with it.
+	 *
+	 * @return a context for the sole use of the caller until it is closed.
+	 */
+	public static EvaluationContext acquire() {
+		final EvaluationContext pooled = POOL.getAndSet(stripe(), null);
+		return pooled != null ? pooled : new EvaluationContext();
+	}
+
+	/**
+	 * Returns this context to the pool, unless the slot of the calling
+	 * thread is taken, in which case it is dropped. The context must not
+	 * be used afterwards.
+	 */
+	@Override
+	public void close() {
+		reset();
+		POOL.compareAndSet(stripe(), null, this);
+	}
+
+	private static int stripe() {
+		final long id = Thread.currentThread().getId();
+		return (int) (id * 0x9E3779B97F4A7C15L >>> 40) & (STRIPES - 1);
+	}
+
+	/**
+	 * Evaluates an expression.
+	 *
+	 * @param  expression  the infix expression.
+	 * @return the result of the expression.
+	 * @throws IllegalArgumentException if the expression has a variable or
+	 * 				    an unexpected character.
+	 * @throws IllegalStateException if the expression is malformed.
+	 */
+	public double evaluate(final CharSequence expression) {
+		lexer.reset(expression);
+		try {
+			return evaluator.evaluate(lexer);
+		} finally {
+			lexer.reset("");
+		}
+	}
+
+	/**
+	 * Evaluates an expression held as ASCII in a range of a byte buffer.
+	 *
+	 * @param  input  the buffer holding the expression.
+	 * @param  from   the index of the first byte, inclusive.
+	 * @param  to     the index of the last byte, exclusive.
+	 * @return the result of the expression.
+	 * @throws IllegalArgumentException if the expression has a variable or
+	 * 				    an unexpected character.
+	 * @throws IllegalStateException if the expression is malformed.
+	 */
+	public double evaluate(final ByteBuffer input, final int from,
+			final int to) {
+		lexer.reset(input, from, to);
+		try {
+			return evaluator.evaluate(lexer);
+		} finally {
+			lexer.reset("");
+		}
+	}
+
+	/**
+	 * Returns the lexer of this context reset onto an expression, for
+	 * evaluators other than the one of this context.
+	 *
+	 * @param  expression  the infix expression.
+	 * @return the lexer, positioned before the first token.
+	 */
+	public Lexer lexer(final CharSequence expression) {
+		lexer.reset(expression);
+		return lexer;
+	}
+
+	/**
+	 * Returns the evaluator of this context.
+	 */
+	public Evaluator getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Discards any partially evaluated expression and lets go of the last
+	 * input. The stacks and the lexer window are kept.
+	 */
+	public void reset() {
+		evaluator.reset();
+		lexer.reset("");
+	}
+}
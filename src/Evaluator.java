@@ -0,0 +1,308 @@
+/*H*****************************************************************************
+ * Filename: Evaluator.java
+ * Description: Evaluates an infix expression in a single left to right pass
+ * 		using operator precedence climbing.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Primitive operand stack and typed tokens.
+ * 	     2026-10-18 Parentheses.
+ * 	     2026-10-18 Metrics.
+ * 	     2026-10-18 Functions.
+ * 	     2026-10-18 Operands and operators must alternate.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Arrays;
+
+/**
+ * Evaluates an infix expression that is fed one token at a time. Operands
+ * and operators are kept on two stacks, and an operator is applied as soon
+ * as an operator that binds less tightly follows it, so every token is
+ * pushed and popped at most once. A left parenthesis waits on the operator
+ * stack as a null marker that no operator applies past, and a right 
+ * parenthesis applies every operator down to its marker, so the stacks 
+ * grow with the nesting depth and the number of precedence levels, not 
+ * with the length of the expression, and nesting is limited only by the
+ * heap. A function waits on the operator stack like any other operator
+ * and is applied to the one operand that follows it. Operands and binary
+ * operators must alternate, as the compiler requires, so 2 3 + and () are
+ * rejected rather than given a value. Operands stay
+ * primitive doubles from start to finish and the stacks are reused, so a
+ * warmed up evaluator allocates nothing. An evaluator can be reused
+ * after {@link #getResult()} or {@link #reset()}, but it is not
+ * thread-safe.
+ */
+public class Evaluator {
+
+	/**
+	 * A stack of operands and intermediate results.
+	 */
+	private final DoubleStack operands;
+
+	/**
+	 * A stack of operators waiting for their right hand operand, with null
+	 * marking an open left parenthesis.
+	 */
+	private Operator[] operators;
+
+	/**
+	 * The number of operators on the operator stack.
+	 */
+	private int operatorCount;
+
+	/**
+	 * True if the next token must be an operand, a function or a left
+	 * parenthesis.
+	 */
+	private boolean expectOperand = true;
+
+	/**
+	 * The number of times each operator was applied since the last reset,
+	 * by ordinal, when {@link Metrics} are enabled.
+	 */
+	private final long[] appliedCounts;
+
+	/**
+	 * Constructs an evaluator with empty stacks.
+	 */
+	public Evaluator() {
+		operands = new DoubleStack();
+		operators = new Operator[16];
+		appliedCounts = new long[Operator.values().length];
+	}
+
+	/**
+	 * Adds the next token of the expression.
+	 *
+	 * @param  token  an operand, operator or parenthesis token.
+	 * @throws IllegalArgumentException if the token is a variable.
+	 * @throws IllegalStateException if a right parenthesis has no match.
+	 */
+	public void addToken(final Token token) {
+		switch (token.getKind()) {
+			case OPERAND:
+				addOperand(token.getValue());
+				break;
+			case OPERATOR:
+				addOperator(token.getOperator());
+				break;
+			case LEFT_PARENTHESIS:
+				addLeftParenthesis();
+				break;
+			case RIGHT_PARENTHESIS:
+				addRightParenthesis();
+				break;
+			default:
+				throw new IllegalArgumentException("Variables need a "
+						+ "compiled expression");
+		}
+	}
+
+	/**
+	 * Reads every token from the lexer and returns the result of the
+	 * expression. The evaluator is reset afterwards.
+	 *
+	 * @param  lexer  a lexer positioned before the first token.
+	 * @return the result of the expression.
+	 * @throws IllegalArgumentException if the expression has a variable or
+	 * 				    an unexpected character.
+	 * @throws IllegalStateException if the expression is malformed.
+	 */
+	public double evaluate(final Lexer lexer) {
+		final long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		int tokens = 0;
+		try {
+			while (lexer.next()) {
+				tokens++;
+				switch (lexer.getKind()) {
+					case OPERAND:
+						addOperand(lexer.getValue());
+						break;
+					case OPERATOR:
+						addOperator(lexer.getOperator());
+						break;
+					case LEFT_PARENTHESIS:
+						addLeftParenthesis();
+						break;
+					case RIGHT_PARENTHESIS:
+						addRightParenthesis();
+						break;
+					default:
+						throw new IllegalArgumentException(
+							"Variables need a compiled "
+							+ "expression");
+				}
+			}
+			final double result = getResult();
+			if (Metrics.ENABLED) {
+				Metrics.recordEvaluation(tokens, 
+						System.nanoTime() - start);
+			}
+			return result;
+		} catch (RuntimeException e) {
+			if (Metrics.ENABLED) {
+				Metrics.recordError();
+			}
+			throw e;
+		} finally {
+			reset();
+		}
+	}
+
+	/**
+	 * Adds the next operand of the expression.
+	 *
+	 * @param  operand  the operand value.
+	 * @throws IllegalStateException if an operator was expected.
+	 */
+	public void addOperand(final double operand) {
+		if (!expectOperand) {
+			throw unexpected("operator");
+		}
+		operands.push(operand);
+		expectOperand = false;
+	}
+
+	/**
+	 * Adds the next operator of the expression. Operators already on the
+	 * stack that bind at least as tightly are applied first, up to the
+	 * innermost open parenthesis. A function is pushed without applying
+	 * anything.
+	 *
+	 * @param  operator  the operator.
+	 * @throws IllegalStateException if a binary operator comes where an
+	 * 				 operand was expected, or a function
+	 * 				 where an operator was expected.
+	 */
+	public void addOperator(final Operator operator) {
+		if (operator.isUnary()) {
+			if (!expectOperand) {
+				throw unexpected("operator");
+			}
+			push(operator);
+			return;
+		}
+		if (expectOperand) {
+			throw unexpected("operand");
+		}
+		expectOperand = true;
+		while (operatorCount > 0 && operators[operatorCount - 1] != null
+			&& operators[operatorCount - 1].appliesBefore(operator)) {
+			applyTopOperator();
+		}
+		push(operator);
+	}
+
+	/**
+	 * Opens a group of the expression.
+	 *
+	 * @throws IllegalStateException if an operator was expected.
+	 */
+	public void addLeftParenthesis() {
+		if (!expectOperand) {
+			throw unexpected("operator");
+		}
+		push(null);
+	}
+
+	/**
+	 * Closes the innermost open group, applying every operator in it.
+	 *
+	 * @throws IllegalStateException if no group is open, or the group
+	 * 				 ends where an operand was expected.
+	 */
+	public void addRightParenthesis() {
+		if (expectOperand) {
+			throw unexpected("operand");
+		}
+		while (operatorCount > 0 && operators[operatorCount - 1] != null) {
+			applyTopOperator();
+		}
+		if (operatorCount == 0) {
+			reset();
+			throw new IllegalStateException("Unmatched "
+					+ Symbol.RIGHT_PARENTHESIS.getSymbol());
+		}
+		operatorCount--;
+	}
+
+	/**
+	 * Discards the expression and returns the exception for a token out of
+	 * place.
+	 */
+	private IllegalStateException unexpected(final String expected) {
+		reset();
+		return new IllegalStateException("Expected " + expected);
+	}
+
+	private void push(final Operator operator) {
+		if (operatorCount == operators.length) {
+			operators = Arrays.copyOf(operators, operatorCount << 1);
+		}
+		operators[operatorCount++] = operator;
+	}
+
+	/**
+	 * Applies all remaining operators and returns the final result. The
+	 * evaluator is reset afterwards.
+	 *
+	 * @return the result of the expression.
+	 * @throws IllegalStateException if the expression is malformed or has
+	 * 				 an unmatched parenthesis.
+	 */
+	public double getResult() {
+		try {
+			if (expectOperand) {
+				throw new IllegalStateException("Expected operand at "
+						+ "end of expression");
+			}
+			while (operatorCount > 0) {
+				applyTopOperator();
+			}
+			if (operands.size() != 1) {
+				throw new IllegalStateException("Malformed expression");
+			}
+			return operands.pop();
+		} finally {
+			reset();
+		}
+	}
+
+	/**
+	 * Pops the top operator and its operands and pushes the result.
+	 */
+	private void applyTopOperator() {
+		final Operator operator = operators[--operatorCount];
+		if (operator == null) {
+			reset();
+			throw new IllegalStateException("Unmatched "
+					+ Symbol.LEFT_PARENTHESIS.getSymbol());
+		}
+		if (operands.size() < operator.getArity()) {
+			reset();
+			throw new IllegalStateException("Missing operand for " 
+					+ operator.getOperator());
+		}
+		if (operator.isUnary()) {
+			operands.push(operator.apply(operands.pop()));
+		} else {
+			final double right = operands.pop();
+			final double left = operands.pop();
+			operands.push(operator.apply(left, right));
+		}
+		if (Metrics.ENABLED) {
+			appliedCounts[operator.ordinal()]++;
+		}
+	}
+
+	/**
+	 * Discards any partially evaluated expression.
+	 */
+	public void reset() {
+		operands.clear();
+		operatorCount = 0;
+		expectOperand = true;
+		if (Metrics.ENABLED) {
+			Metrics.recordOperators(appliedCounts);
+		}
+	}
+}
@@ -0,0 +1,600 @@
+/*H*****************************************************************************
+ * Filename: ExpressionCodec.java
+ * Description: Compact binary encoding of compiled expressions, which can
+ * 		be evaluated straight from a buffer.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Every operator.
+ * 	     2026-10-18 Counts and lengths checked before allocating.
+ * 	     2026-10-18 Indexes bounded by what an instruction holds.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes a {@link CompiledExpression} as bytes and reads it back, so that
+ * formulas can be stored and sent between services without being lexed
+ * and compiled again. An encoded expression is:
+ *
+ * <pre>
+ *   byte     format version, 1
+ *   varint   maximum stack depth
+ *   varint   number of variables
+ *            for each variable: varint byte length, UTF-8 name
+ *   varint   byte length of the instructions
+ *            for each instruction: an opcode byte, followed by
+ *              8 bytes of raw big endian double for a constant, or
+ *              a zigzag varint digits for a decimal constant, or
+ *              a varint index for a variable, store or load
+ * </pre>
+ *
+ * <p>Varints are unsigned LEB128: seven bits per byte, low bits first,
+ * with the high bit set on every byte but the last. The opcodes are those
+ * of {@link CompiledExpression}, whose operator opcodes are fixed by the
+ * ordinals of {@link Operator}, plus {@link #DECIMAL} opcodes, which hold
+ * the number of fraction digits of a constant in their low bits. A
+ * constant such as 123.45 whose digits divided by a power of ten give back
+ * exactly the same double is written as those digits, 12345 in three
+ * bytes, and any other constant as its raw bits. Constants are written
+ * inline rather than pooled, so an expression such as x*2+1 takes 14 bytes.
+ *
+ * <p>{@link #evaluate(ByteBuffer, int, double[], double[])} runs the
+ * instructions directly from the buffer without building any objects,
+ * which suits formulas that are evaluated once or a few times after they
+ * are loaded. Formulas evaluated many times should be decoded once with
+ * {@link #decode(ByteBuffer)} instead, which also makes them eligible for
+ * promotion to bytecode. Doubles are read big endian whatever the byte
+ * order of the buffer.
+ */
+public final class ExpressionCodec {
+
+	/**
+	 * The version written in the first byte of every encoding.
+	 */
+	static final int FORMAT_VERSION = 1;
+
+	/**
+	 * The first of the opcodes of a decimal constant. The low four bits
+	 * are its number of fraction digits.
+	 */
+	static final int DECIMAL = 0x10;
+
+	private static final int MAX_FRACTION_DIGITS = 15;
+
+	/**
+	 * The largest magnitude of digits that a double holds exactly.
+	 */
+	private static final long MAX_DIGITS = 1L << 53;
+
+	/**
+	 * The powers of ten that a double holds exactly, so a division by one
+	 * of them is correctly rounded.
+	 */
+	private static final double[] POWERS_OF_TEN = new double[
+			MAX_FRACTION_DIGITS + 1];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private static final String MALFORMED = "Malformed expression encoding";
+
+	private ExpressionCodec() {
+	}
+
+	/**
+	 * Returns the encoding of an expression.
+	 *
+	 * @param  expression  the expression to be encoded.
+	 * @return the encoded bytes.
+	 */
+	public static byte[] encode(final CompiledExpression expression) {
+		final byte[] bytes = new byte[encodedLength(expression)];
+		encode(expression, ByteBuffer.wrap(bytes));
+		return bytes;
+	}
+
+	/**
+	 * Writes the encoding of an expression at the position of a buffer and
+	 * advances the position past it.
+	 *
+	 * @param  expression  the expression to be encoded.
+	 * @param  output      the buffer written to.
+	 * @throws BufferOverflowException if the buffer has less room than
+	 * 				   {@link #encodedLength(CompiledExpression)}.
+	 */
+	public static void encode(final CompiledExpression expression,
+			final ByteBuffer output) {
+		output.put((byte) FORMAT_VERSION);
+		putVarint(output, expression.getMaxStackDepth());
+		putVarint(output, expression.getVariables().size());
+		for (final String name : expression.getVariables()) {
+			final byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+			putVarint(output, utf8.length);
+			output.put(utf8);
+		}
+		putVarint(output, codeLength(expression));
+		final double[] constants = expression.getConstants();
+		for (final int instruction : expression.getCode()) {
+			final int opcode = instruction & CompiledExpression.OPCODE_MASK;
+			final int index = instruction >>> CompiledExpression.OPCODE_BITS;
+			if (opcode == CompiledExpression.CONSTANT) {
+				putConstant(output, constants[index]);
+				continue;
+			}
+			output.put((byte) opcode);
+			if (hasIndex(opcode)) {
+				putVarint(output, index);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bytes the encoding of an expression takes.
+	 *
+	 * @param  expression  the expression.
+	 * @return the length of its encoding.
+	 */
+	public static int encodedLength(final CompiledExpression expression) {
+		int length = 1 + varintLength(expression.getMaxStackDepth())
+			+ varintLength(expression.getVariables().size());
+		for (final String name : expression.getVariables()) {
+			final int nameLength =
+				name.getBytes(StandardCharsets.UTF_8).length;
+			length += varintLength(nameLength) + nameLength;
+		}
+		final int codeLength = codeLength(expression);
+		return length + varintLength(codeLength) + codeLength;
+	}
+
+	/**
+	 * Returns the length of the instruction section of an encoding.
+	 */
+	private static int codeLength(final CompiledExpression expression) {
+		final double[] constants = expression.getConstants();
+		int length = 0;
+		for (final int instruction : expression.getCode()) {
+			final int opcode = instruction & CompiledExpression.OPCODE_MASK;
+			length++;
+			if (opcode == CompiledExpression.CONSTANT) {
+				final double value = constants[
+					instruction >>> CompiledExpression.OPCODE_BITS];
+				final int fractionDigits = fractionDigits(value);
+				length += fractionDigits < 0 ? Double.BYTES
+					: varintLength(zigzag(digits(value, fractionDigits)));
+			} else if (hasIndex(opcode)) {
+				length += varintLength(
+					instruction >>> CompiledExpression.OPCODE_BITS);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Reads an encoded expression at the position of a buffer and advances
+	 * the position past it. The result has no source text.
+	 *
+	 * @param  input  the buffer read from.
+	 * @return the decoded expression.
+	 * @throws IllegalArgumentException if the bytes are not a valid
+	 * 				    encoding.
+	 */
+	public static CompiledExpression decode(final ByteBuffer input) {
+		try {
+			int position = input.position();
+			if (input.get(position++) != FORMAT_VERSION) {
+				throw new IllegalArgumentException("Unknown expression "
+						+ "encoding version");
+			}
+			final long depth = getVarint(input, position);
+			position += varintLength(depth);
+			final long variableCount = getVarint(input, position);
+			position += varintLength(variableCount);
+			final String[] variables = new String[
+				checkLength(variableCount, input, position)];
+			for (int i = 0; i < variables.length; i++) {
+				final long length = getVarint(input, position);
+				position += varintLength(length);
+				final byte[] utf8 =
+					new byte[checkLength(length, input, position)];
+				input.get(position, utf8);
+				variables[i] = new String(utf8, StandardCharsets.UTF_8);
+				position += utf8.length;
+			}
+			final long codeBytes = getVarint(input, position);
+			position += varintLength(codeBytes);
+			final int codeLength = checkLength(codeBytes, input, position);
+			final int end = position + codeLength;
+			final int[] code = new int[codeLength];
+			final double[] constants = new double[codeLength / 2];
+			int instructionCount = 0;
+			int constantCount = 0;
+			while (position < end) {
+				int opcode = input.get(position++);
+				int index = 0;
+				if (opcode == CompiledExpression.CONSTANT
+						|| isDecimal(opcode)) {
+					if (opcode == CompiledExpression.CONSTANT) {
+						constants[constantCount] =
+							getDouble(input, position);
+						position += Double.BYTES;
+					} else {
+						final long digits = getVarint(input, position);
+						position += varintLength(digits);
+						constants[constantCount] = decimal(digits, opcode);
+						opcode = CompiledExpression.CONSTANT;
+					}
+					index = checkIndex(constantCount++);
+				} else if (hasIndex(opcode)) {
+					final long value = getVarint(input, position);
+					position += varintLength(value);
+					index = checkIndex(value);
+				}
+				code[instructionCount++] = opcode
+					| index << CompiledExpression.OPCODE_BITS;
+			}
+			if (position != end) {
+				throw new IllegalArgumentException(MALFORMED);
+			}
+			final CompiledExpression expression = new CompiledExpression(
+					Arrays.copyOf(code, instructionCount),
+					Arrays.copyOf(constants, constantCount),
+					checkInt(depth), variables, "");
+			verify(expression);
+			input.position(end);
+			return expression;
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException(MALFORMED, e);
+		}
+	}
+
+	/**
+	 * Checks that every instruction of a decoded expression is known, that
+	 * its indexes are in range, and that the stack stays within the
+	 * recorded depth and ends with one value. The depth counts a slot for
+	 * every value pushed or stored, so it cannot exceed the number of
+	 * instructions.
+	 */
+	private static void verify(final CompiledExpression expression) {
+		final int maxDepth = expression.getMaxStackDepth();
+		final int variableCount = expression.getVariables().size();
+		int depth = 0;
+		int maxSeen = 0;
+		for (final int instruction : expression.getCode()) {
+			final int opcode = instruction & CompiledExpression.OPCODE_MASK;
+			final int index = instruction >>> CompiledExpression.OPCODE_BITS;
+			switch (opcode) {
+				case CompiledExpression.CONSTANT:
+					depth++;
+					break;
+				case CompiledExpression.DUPLICATE:
+					if (depth < 1) {
+						throw new IllegalArgumentException(MALFORMED);
+					}
+					depth++;
+					break;
+				case CompiledExpression.VARIABLE:
+					if (index >= variableCount) {
+						throw new IllegalArgumentException(MALFORMED);
+					}
+					depth++;
+					break;
+				case CompiledExpression.STORE:
+				case CompiledExpression.LOAD:
+					if (index >= maxDepth) {
+						throw new IllegalArgumentException(MALFORMED);
+					}
+					depth += opcode == CompiledExpression.LOAD ? 1 : 0;
+					break;
+				default:
+					final Operator operator =
+						CompiledExpression.operator(opcode);
+					if (operator == null) {
+						throw new IllegalArgumentException(MALFORMED);
+					}
+					depth -= operator.getArity() - 1;
+					break;
+			}
+			if (depth < 1) {
+				throw new IllegalArgumentException(MALFORMED);
+			}
+			maxSeen = Math.max(maxSeen, depth);
+		}
+		if (depth != 1 || maxSeen > maxDepth
+				|| maxDepth > expression.getInstructionCount()) {
+			throw new IllegalArgumentException(MALFORMED);
+		}
+	}
+
+	/**
+	 * Returns the stack size needed to evaluate the expression encoded at
+	 * an index of a buffer.
+	 *
+	 * @param  input   the buffer holding the encoding.
+	 * @param  offset  the index of the encoding.
+	 * @return the scratch stack size needed by
+	 * 	   {@link #evaluate(ByteBuffer, int, double[], double[])}.
+	 */
+	public static int getMaxStackDepth(final ByteBuffer input,
+			final int offset) {
+		return (int) getVarint(input, offset + 1);
+	}
+
+	/**
+	 * Returns the length of the encoding at an index of a buffer, so that
+	 * encodings stored one after another can be skipped.
+	 *
+	 * @param  input   the buffer holding the encoding.
+	 * @param  offset  the index of the encoding.
+	 * @return the length of the encoding in bytes.
+	 */
+	public static int length(final ByteBuffer input, final int offset) {
+		final int codeStart = skipHeader(input, offset);
+		final long codeLength = getVarint(input, codeStart);
+		return codeStart - offset + varintLength(codeLength)
+			+ (int) codeLength;
+	}
+
+	/**
+	 * Evaluates the expression encoded at an index of a buffer without
+	 * decoding it. Nothing is allocated and the buffer position is not
+	 * changed. The encoding is trusted to be well formed; a malformed one
+	 * gives a wrong result or an exception.
+	 *
+	 * @param  input   the buffer holding the encoding.
+	 * @param  offset  the index of the encoding.
+	 * @param  values  the variable values, indexed in the order of the
+	 * 		   encoded variable names.
+	 * @param  stack   scratch space of at least
+	 * 		   {@link #getMaxStackDepth(ByteBuffer, int)} elements.
+	 * @return the result of the expression.
+	 * @throws IllegalArgumentException if the bytes are not a valid
+	 * 				    encoding or too few values or too
+	 * 				    little stack were provided.
+	 */
+	public static double evaluate(final ByteBuffer input, final int offset,
+			final double[] values, final double[] stack) {
+		try {
+			int position = skipHeader(input, offset);
+			final long codeLength = getVarint(input, position);
+			position += varintLength(codeLength);
+			final int end = position + (int) codeLength;
+			int top = 0;
+			while (position < end) {
+				final int opcode = input.get(position++);
+				if (isDecimal(opcode)) {
+					final long digits = getVarint(input, position);
+					position += varintLength(digits);
+					stack[top++] = decimal(digits, opcode);
+					continue;
+				}
+				switch (opcode) {
+					case CompiledExpression.CONSTANT:
+						stack[top++] = getDouble(input, position);
+						position += Double.BYTES;
+						break;
+					case CompiledExpression.VARIABLE: {
+						final long index = getVarint(input, position);
+						position += varintLength(index);
+						stack[top++] = values[(int) index];
+						break;
+					}
+					case CompiledExpression.ADDITION:
+						top--;
+						stack[top - 1] += stack[top];
+						break;
+					case CompiledExpression.SUBTRACTION:
+						top--;
+						stack[top - 1] -= stack[top];
+						break;
+					case CompiledExpression.MULTIPLICATION:
+						top--;
+						stack[top - 1] *= stack[top];
+						break;
+					case CompiledExpression.DIVISION:
+						top--;
+						stack[top - 1] /= stack[top];
+						break;
+					case CompiledExpression.EXPONENTIATION:
+						top--;
+						stack[top - 1] = Math.pow(stack[top - 1],
+									stack[top]);
+						break;
+					case CompiledExpression.DUPLICATE:
+						stack[top] = stack[top - 1];
+						top++;
+						break;
+					case CompiledExpression.STORE: {
+						final long index = getVarint(input, position);
+						position += varintLength(index);
+						stack[(int) index] = stack[top - 1];
+						break;
+					}
+					case CompiledExpression.LOAD: {
+						final long index = getVarint(input, position);
+						position += varintLength(index);
+						stack[top++] = stack[(int) index];
+						break;
+					}
+					default:
+						final Operator operator =
+							CompiledExpression.operator(opcode);
+						if (operator == null) {
+							throw new IllegalArgumentException(
+									MALFORMED);
+						}
+						top = CompiledExpression.apply(operator, stack,
+								top);
+						break;
+				}
+			}
+			return stack[0];
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException(MALFORMED, e);
+		}
+	}
+
+	/**
+	 * Returns the index of the instruction length that follows the
+	 * version, depth and variable names.
+	 */
+	private static int skipHeader(final ByteBuffer input, final int offset) {
+		int position = offset + 1;
+		position += varintLength(getVarint(input, position));
+		final long variableCount = getVarint(input, position);
+		position += varintLength(variableCount);
+		for (long i = 0; i < variableCount; i++) {
+			final long length = getVarint(input, position);
+			position += varintLength(length) + (int) length;
+		}
+		return position;
+	}
+
+	/**
+	 * Writes a constant as its digits if that gives back the same double,
+	 * otherwise as its raw bits.
+	 */
+	private static void putConstant(final ByteBuffer output,
+			final double value) {
+		final int fractionDigits = fractionDigits(value);
+		if (fractionDigits < 0) {
+			output.put((byte) CompiledExpression.CONSTANT);
+			putDouble(output, value);
+		} else {
+			output.put((byte) (DECIMAL | fractionDigits));
+			putVarint(output, zigzag(digits(value, fractionDigits)));
+		}
+	}
+
+	/**
+	 * Returns the fewest fraction digits with which the value is exactly
+	 * its digits divided by a power of ten, or -1 if there are none.
+	 */
+	private static int fractionDigits(final double value) {
+		for (int i = 0; i <= MAX_FRACTION_DIGITS; i++) {
+			final double scaled = value * POWERS_OF_TEN[i];
+			if (Math.abs(scaled) < MAX_DIGITS && scaled == Math.rint(scaled)
+				&& Double.doubleToRawLongBits((long) scaled
+					/ POWERS_OF_TEN[i])
+					== Double.doubleToRawLongBits(value)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static long digits(final double value, final int fractionDigits) {
+		return (long) (value * POWERS_OF_TEN[fractionDigits]);
+	}
+
+	/**
+	 * Returns the value of a decimal constant from its encoded digits and
+	 * its opcode.
+	 */
+	private static double decimal(final long zigzagDigits, final int opcode) {
+		final long digits = zigzagDigits >>> 1 ^ -(zigzagDigits & 1);
+		return digits / POWERS_OF_TEN[opcode & MAX_FRACTION_DIGITS];
+	}
+
+	private static boolean isDecimal(final int opcode) {
+		return (opcode & ~MAX_FRACTION_DIGITS) == DECIMAL;
+	}
+
+	private static long zigzag(final long value) {
+		return value << 1 ^ value >> 63;
+	}
+
+	private static boolean hasIndex(final int opcode) {
+		return opcode == CompiledExpression.VARIABLE
+			|| opcode == CompiledExpression.STORE
+			|| opcode == CompiledExpression.LOAD;
+	}
+
+	private static void putVarint(final ByteBuffer output, 
+			final long value) {
+		long remaining = value;
+		while ((remaining & ~0x7FL) != 0) {
+			output.put((byte) (remaining & 0x7F | 0x80));
+			remaining >>>= 7;
+		}
+		output.put((byte) remaining);
+	}
+
+	/**
+	 * Reads the varint at an index. Varints of more than ten bytes are
+	 * malformed.
+	 */
+	private static long getVarint(final ByteBuffer input, final int index) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final byte b = input.get(index + shift / 7);
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException(MALFORMED);
+	}
+
+	private static int varintLength(final long value) {
+		int length = 1;
+		for (long remaining = value >>> 7; remaining != 0;
+				remaining >>>= 7) {
+			length++;
+		}
+		return length;
+	}
+
+	private static int checkInt(final long value) {
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(MALFORMED);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Returns an index, rejecting one that does not fit in the bits of an
+	 * instruction above its opcode.
+	 */
+	private static int checkIndex(final long value) {
+		if (value < 0 || value > CompiledExpression.MAX_INDEX) {
+			throw new IllegalArgumentException(MALFORMED);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Returns a count or length read before an index, rejecting one larger
+	 * than the bytes left from that index to the limit, since every item
+	 * counted takes at least a byte. A malformed encoding therefore cannot
+	 * make the decoder allocate more than its own size.
+	 */
+	private static int checkLength(final long value, final ByteBuffer input,
+			final int index) {
+		if (value < 0 || value > input.limit() - index) {
+			throw new IllegalArgumentException(MALFORMED);
+		}
+		return (int) value;
+	}
+
+	private static void putDouble(final ByteBuffer output,
+			final double value) {
+		final long bits = Double.doubleToRawLongBits(value);
+		output.putLong(output.order() == ByteOrder.BIG_ENDIAN
+				? bits : Long.reverseBytes(bits));
+	}
+
+	private static double getDouble(final ByteBuffer input,
+			final int index) {
+		final long bits = input.getLong(index);
+		return Double.longBitsToDouble(input.order() == ByteOrder.BIG_ENDIAN
+				? bits : Long.reverseBytes(bits));
+	}
+}
@@ -0,0 +1,235 @@
+/*H*****************************************************************************
+ * Filename: ExpressionCompiler.java
+ * Description: Compiles infix expressions into postfix instructions.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Added variables.
+ * 	     2026-10-18 Parentheses.
+ * 	     2026-10-18 Functions.
+ * 	     2026-10-18 Constant and variable counts checked.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Converts an infix expression into a {@link CompiledExpression} with the
+ * shunting yard algorithm. Operators wait on a stack until an operator that
+ * binds less tightly arrives, at which point they are emitted. A left
+ * parenthesis waits on the same stack as a null marker, and a right
+ * parenthesis emits every operator down to it, so the compiler needs
+ * memory for the nesting depth but never recurses. A function comes where
+ * an operand is expected and waits until its operand has been emitted.
+ */
+public final class ExpressionCompiler {
+
+	/**
+	 * The instructions emitted so far.
+	 */
+	private int[] code;
+
+	/**
+	 * The number of instructions emitted so far.
+	 */
+	private int codeLength;
+
+	/**
+	 * The constant pool.
+	 */
+	private double[] constants;
+
+	/**
+	 * The number of constants in the pool.
+	 */
+	private int constantCount;
+
+	/**
+	 * The variable numbers, keyed by name in order of first appearance.
+	 */
+	private final Map<String, Integer> variables;
+
+	/**
+	 * Operators waiting to be emitted, with null marking an open left
+	 * parenthesis.
+	 */
+	private Operator[] operators;
+
+	/**
+	 * The number of waiting operators.
+	 */
+	private int operatorCount;
+
+	/**
+	 * The stack depth after the instructions emitted so far.
+	 */
+	private int depth;
+
+	/**
+	 * The deepest the stack has grown so far.
+	 */
+	private int maxDepth;
+
+	private ExpressionCompiler() {
+		code = new int[16];
+		constants = new double[8];
+		operators = new Operator[8];
+		variables = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Compiles an infix expression.
+	 *
+	 * @param  expression  the infix expression.
+	 * @return the compiled expression.
+	 * @throws IllegalArgumentException if the expression is malformed.
+	 */
+	public static CompiledExpression compile(final CharSequence expression) {
+		return new ExpressionCompiler().run(expression);
+	}
+
+	/**
+	 * Reads every token of the expression and emits its instructions.
+	 */
+	private CompiledExpression run(final CharSequence expression) {
+		final Lexer lexer = new Lexer(expression);
+		boolean expectOperand = true;
+		while (lexer.next()) {
+			if (lexer.getKind() == Token.Kind.OPERAND) {
+				if (!expectOperand) {
+					throw unexpected(lexer, "operator");
+				}
+				emitConstant(lexer.getValue());
+			} else if (lexer.getKind() == Token.Kind.VARIABLE) {
+				if (!expectOperand) {
+					throw unexpected(lexer, "operator");
+				}
+				emitVariable(lexer.getName());
+			} else if (lexer.getKind() == Token.Kind.LEFT_PARENTHESIS) {
+				if (!expectOperand) {
+					throw unexpected(lexer, "operator");
+				}
+				push(null);
+				continue;
+			} else if (lexer.getKind() == Token.Kind.RIGHT_PARENTHESIS) {
+				if (expectOperand) {
+					throw unexpected(lexer, "operand");
+				}
+				closeParenthesis(lexer);
+				continue;
+			} else if (lexer.getOperator().isUnary()) {
+				if (!expectOperand) {
+					throw unexpected(lexer, "operator");
+				}
+				push(lexer.getOperator());
+				continue;
+			} else {
+				if (expectOperand) {
+					throw unexpected(lexer, "operand");
+				}
+				pushOperator(lexer.getOperator());
+			}
+			expectOperand = !expectOperand;
+		}
+		if (expectOperand) {
+			throw new IllegalArgumentException("Expected operand at end "
+					+ "of expression");
+		}
+		while (operatorCount > 0) {
+			final Operator operator = operators[--operatorCount];
+			if (operator == null) {
+				throw new IllegalArgumentException("Unmatched "
+					+ Symbol.LEFT_PARENTHESIS.getSymbol());
+			}
+			emitOperator(operator);
+		}
+		return new CompiledExpression(Arrays.copyOf(code, codeLength),
+				Arrays.copyOf(constants, constantCount), maxDepth,
+				variables.keySet().toArray(new String[0]),
+				expression.toString());
+	}
+
+	private static IllegalArgumentException unexpected(final Lexer lexer,
+			final String expected) {
+		return new IllegalArgumentException("Expected " + expected 
+				+ " at index " + lexer.getTokenStart());
+	}
+
+	/**
+	 * Emits the waiting operators that bind at least as tightly as the 
+	 * incoming operator, then makes the incoming operator wait.
+	 */
+	private void pushOperator(final Operator operator) {
+		while (operatorCount > 0 && operators[operatorCount - 1] != null
+			&& operators[operatorCount - 1].appliesBefore(operator)) {
+			emitOperator(operators[--operatorCount]);
+		}
+		push(operator);
+	}
+
+	/**
+	 * Emits the waiting operators of the innermost open group and closes
+	 * it.
+	 */
+	private void closeParenthesis(final Lexer lexer) {
+		while (operatorCount > 0 && operators[operatorCount - 1] != null) {
+			emitOperator(operators[--operatorCount]);
+		}
+		if (operatorCount == 0) {
+			throw new IllegalArgumentException("Unmatched "
+					+ Symbol.RIGHT_PARENTHESIS.getSymbol() + " at index "
+					+ lexer.getTokenStart());
+		}
+		operatorCount--;
+	}
+
+	/**
+	 * Makes an operator, or null for a left parenthesis, wait.
+	 */
+	private void push(final Operator operator) {
+		if (operatorCount == operators.length) {
+			operators = Arrays.copyOf(operators, operatorCount << 1);
+		}
+		operators[operatorCount++] = operator;
+	}
+
+	private void emitConstant(final double value) {
+		if (constantCount > CompiledExpression.MAX_INDEX) {
+			throw new IllegalArgumentException("More than "
+					+ CompiledExpression.MAX_INDEX + " constants");
+		}
+		if (constantCount == constants.length) {
+			constants = Arrays.copyOf(constants, constantCount << 1);
+		}
+		constants[constantCount] = value;
+		emit(CompiledExpression.CONSTANT 
+			| constantCount++ << CompiledExpression.OPCODE_BITS, 1);
+	}
+
+	private void emitVariable(final String name) {
+		final int index = variables.computeIfAbsent(name, 
+				key -> variables.size());
+		if (index > CompiledExpression.MAX_INDEX) {
+			throw new IllegalArgumentException("More than "
+					+ CompiledExpression.MAX_INDEX + " variables");
+		}
+		emit(CompiledExpression.VARIABLE 
+			| index << CompiledExpression.OPCODE_BITS, 1);
+	}
+
+	private void emitOperator(final Operator operator) {
+		emit(CompiledExpression.opcode(operator), 1 - operator.getArity());
+	}
+
+	/**
+	 * Appends an instruction and tracks the stack depth it leaves behind.
+	 */
+	private void emit(final int instruction, final int stackEffect) {
+		if (codeLength == code.length) {
+			code = Arrays.copyOf(code, codeLength << 1);
+		}
+		code[codeLength++] = instruction;
+		depth += stackEffect;
+		maxDepth = Math.max(maxDepth, depth);
+	}
+}
@@ -0,0 +1,411 @@
+/*H*****************************************************************************
+ * Filename: ExpressionOptimizer.java
+ * Description: Simplifies compiled expressions without changing their
+ * 		results.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Functions.
+ * 	     2026-10-18 Optimized expressions accepted as input.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Arrays;
+
+/**
+ * Rewrites a {@link CompiledExpression} into an equivalent one that does
+ * less work. The postfix instructions are turned into a tree of operator
+ * nodes, one node per instruction, and each node is simplified as soon as
+ * its operands are known:
+ *
+ * <ul>
+ * <li>an operator whose operands are all constants is folded into a
+ *     constant;</li>
+ * <li>x*1, 1*x, x/1, x-0, x+(-0), (-0)+x and x^1 become x, and x^0
+ *     becomes 1;</li>
+ * <li>x^2 becomes x*x, which evaluates x once and duplicates it;</li>
+ * <li>identical subtrees are shared, so a repeated subexpression is
+ *     evaluated once and kept in a scratch slot for its later uses.</li>
+ * </ul>
+ *
+ * <p>Only rewrites that give bit for bit the same result for every input,
+ * including NaN, infinities and signed zeros, are applied. That rules out
+ * x+0 and 0+x (-0+0 is +0), x*0 (NaN*0 is NaN), x-x, reassociation, and
+ * powers other than 0, 1 and 2, which Math.pow rounds once but repeated
+ * multiplication rounds several times. Math.pow(x, 2) is exactly x*x.
+ *
+ * <p>An expression that was already optimized, or decoded from one, can be
+ * optimized again: the nodes it stores in scratch slots are shared by its
+ * loads, so it rebuilds the same tree.
+ *
+ * <p>Expressions can have hundreds of thousands of tokens, so the tree is
+ * built, walked and emitted without recursion.
+ */
+public final class ExpressionOptimizer {
+
+	/**
+	 * The node kinds, which are the opcodes of the instructions they came
+	 * from.
+	 */
+	private final int[] kinds;
+
+	/**
+	 * The left operand of each operator node.
+	 */
+	private final int[] lefts;
+
+	/**
+	 * The right operand of each binary operator node, -1 for a function
+	 * node, or the variable number of a variable node.
+	 */
+	private final int[] rights;
+
+	/**
+	 * The value of each constant node.
+	 */
+	private final double[] values;
+
+	/**
+	 * The number of nodes.
+	 */
+	private int nodeCount;
+
+	/**
+	 * An open addressed table of node numbers plus one, used to find an
+	 * existing node identical to a new one.
+	 */
+	private final int[] table;
+
+	/**
+	 * Builds the optimized instructions.
+	 */
+	private int[] code;
+
+	private int codeLength;
+
+	private double[] constants;
+
+	private int constantCount;
+
+	private int depth;
+
+	private int maxDepth;
+
+	private ExpressionOptimizer(final int capacity) {
+		kinds = new int[capacity];
+		lefts = new int[capacity];
+		rights = new int[capacity];
+		values = new double[capacity];
+		table = new int[Integer.highestOneBit(capacity) << 2];
+		code = new int[capacity];
+		constants = new double[8];
+	}
+
+	/**
+	 * Returns an optimized copy of the expression.
+	 *
+	 * @param  expression  the expression to be optimized.
+	 * @return an expression with the same results that does less work.
+	 */
+	public static CompiledExpression optimize(
+			final CompiledExpression expression) {
+		final int[] source = expression.getCode();
+		final ExpressionOptimizer optimizer =
+				new ExpressionOptimizer(Math.max(source.length, 1));
+		final int root = optimizer.build(source,
+				expression.getConstants(),
+				expression.getMaxStackDepth());
+		return optimizer.emit(root, expression);
+	}
+
+	/**
+	 * Builds the simplified tree from postfix instructions and returns its
+	 * root. The operand stack of the instructions becomes a stack of node
+	 * numbers, and the scratch slots of an expression that was already
+	 * optimized hold the nodes stored in them.
+	 */
+	private int build(final int[] source, final double[] sourceConstants,
+			final int stackDepth) {
+		final int[] stack = new int[source.length];
+		final int[] slots = new int[stackDepth];
+		int top = 0;
+		for (final int instruction : source) {
+			final int opcode = instruction & CompiledExpression.OPCODE_MASK;
+			final int index = instruction >>> CompiledExpression.OPCODE_BITS;
+			switch (opcode) {
+				case CompiledExpression.CONSTANT:
+					stack[top++] = constant(sourceConstants[index]);
+					break;
+				case CompiledExpression.VARIABLE:
+					stack[top++] = node(opcode, -1, index, 0);
+					break;
+				case CompiledExpression.DUPLICATE:
+					stack[top] = stack[top - 1];
+					top++;
+					break;
+				case CompiledExpression.STORE:
+					slots[index] = stack[top - 1];
+					break;
+				case CompiledExpression.LOAD:
+					stack[top++] = slots[index];
+					break;
+				default:
+					if (CompiledExpression.operator(opcode).isUnary()) {
+						stack[top - 1] = function(opcode, 
+								stack[top - 1]);
+						break;
+					}
+					top--;
+					stack[top - 1] = operator(opcode, stack[top - 1],
+								stack[top]);
+			}
+		}
+		return stack[0];
+	}
+
+	/**
+	 * Returns the node for a function applied to a node, folded if the
+	 * node is a constant.
+	 */
+	private int function(final int opcode, final int operand) {
+		if (kinds[operand] == CompiledExpression.CONSTANT) {
+			return constant(CompiledExpression.operator(opcode)
+					.apply(values[operand]));
+		}
+		return node(opcode, operand, -1, 0);
+	}
+
+	/**
+	 * Returns the simplified node for an operator applied to two nodes.
+	 */
+	private int operator(final int opcode, final int left, final int right) {
+		final boolean leftConstant =
+			kinds[left] == CompiledExpression.CONSTANT;
+		final boolean rightConstant =
+			kinds[right] == CompiledExpression.CONSTANT;
+		if (leftConstant && rightConstant) {
+			return constant(CompiledExpression.operator(opcode)
+					.apply(values[left], values[right]));
+		}
+		switch (opcode) {
+			case CompiledExpression.MULTIPLICATION:
+				if (rightConstant && values[right] == 1) {
+					return left;
+				}
+				if (leftConstant && values[left] == 1) {
+					return right;
+				}
+				break;
+			case CompiledExpression.DIVISION:
+				if (rightConstant && values[right] == 1) {
+					return left;
+				}
+				break;
+			case CompiledExpression.ADDITION:
+				if (rightConstant && isNegativeZero(values[right])) {
+					return left;
+				}
+				if (leftConstant && isNegativeZero(values[left])) {
+					return right;
+				}
+				break;
+			case CompiledExpression.SUBTRACTION:
+				if (rightConstant && isPositiveZero(values[right])) {
+					return left;
+				}
+				break;
+			case CompiledExpression.EXPONENTIATION:
+				if (rightConstant && values[right] == 0) {
+					return constant(1);
+				}
+				if (rightConstant && values[right] == 1) {
+					return left;
+				}
+				if (rightConstant && values[right] == 2) {
+					return node(CompiledExpression.MULTIPLICATION,
+							left, left, 0);
+				}
+				break;
+			default:
+				break;
+		}
+		return node(opcode, left, right, 0);
+	}
+
+	private static boolean isPositiveZero(final double value) {
+		return Double.doubleToRawLongBits(value) == 0;
+	}
+
+	private static boolean isNegativeZero(final double value) {
+		return Double.doubleToRawLongBits(value) == Long.MIN_VALUE;
+	}
+
+	private int constant(final double value) {
+		return node(CompiledExpression.CONSTANT, -1, -1, value);
+	}
+
+	/**
+	 * Returns the existing node with the provided contents, or adds one.
+	 * Constants are compared by their bits, so 0 and -0 stay apart.
+	 */
+	private int node(final int kind, final int left, final int right,
+			final double value) {
+		final long bits = Double.doubleToRawLongBits(value);
+		int hash = kind * 0x9E3779B9 + left * 0x85EBCA6B
+			+ right * 0xC2B2AE35 + Long.hashCode(bits) * 0x27D4EB2F;
+		hash ^= hash >>> 16;
+		final int mask = table.length - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			final int existing = table[slot] - 1;
+			if (existing < 0) {
+				final int added = add(kind, left, right, value);
+				table[slot] = added + 1;
+				return added;
+			}
+			if (kinds[existing] == kind && lefts[existing] == left
+				&& rights[existing] == right
+				&& Double.doubleToRawLongBits(values[existing])
+					== bits) {
+				return existing;
+			}
+		}
+	}
+
+	/**
+	 * Adds a node. Every instruction adds at most one node, so the arrays
+	 * sized by the instruction count never fill up.
+	 */
+	private int add(final int kind, final int left, final int right,
+			final double value) {
+		kinds[nodeCount] = kind;
+		lefts[nodeCount] = left;
+		rights[nodeCount] = right;
+		values[nodeCount] = value;
+		return nodeCount++;
+	}
+
+	private boolean isLeaf(final int node) {
+		return kinds[node] == CompiledExpression.CONSTANT
+			|| kinds[node] == CompiledExpression.VARIABLE;
+	}
+
+	/**
+	 * Counts how many operator nodes reachable from the root use each
+	 * node as an operand. A node that is both operands of one operator is
+	 * counted once, since it is duplicated rather than loaded.
+	 */
+	private int[] countUses(final int root) {
+		final int[] uses = new int[nodeCount];
+		final int[] pending = new int[nodeCount];
+		int top = 0;
+		pending[top++] = root;
+		while (top > 0) {
+			final int node = pending[--top];
+			if (isLeaf(node)) {
+				continue;
+			}
+			if (uses[lefts[node]]++ == 0) {
+				pending[top++] = lefts[node];
+			}
+			if (rights[node] >= 0 && rights[node] != lefts[node] 
+					&& uses[rights[node]]++ == 0) {
+				pending[top++] = rights[node];
+			}
+		}
+		return uses;
+	}
+
+	/**
+	 * Emits the tree in postfix order. An operator node used more than
+	 * once is stored in a scratch slot the first time and loaded after
+	 * that; a node that is both operands of one operator is duplicated.
+	 */
+	private CompiledExpression emit(final int root,
+			final CompiledExpression expression) {
+		final int[] uses = countUses(root);
+		final int[] slots = new int[nodeCount];
+		Arrays.fill(slots, -1);
+		final int[] pool = new int[nodeCount];
+		Arrays.fill(pool, -1);
+		int slotCount = 0;
+		final int[] pending = new int[nodeCount << 1];
+		final byte[] states = new byte[nodeCount << 1];
+		int top = 0;
+		pending[top] = root;
+		states[top++] = 0;
+		while (top > 0) {
+			final int node = pending[--top];
+			final byte state = states[top];
+			if (state == 0) {
+				if (slots[node] >= 0) {
+					emitInstruction(CompiledExpression.LOAD,
+							slots[node], 1);
+				} else if (kinds[node] == CompiledExpression.CONSTANT) {
+					emitConstant(node, pool);
+				} else if (kinds[node] == CompiledExpression.VARIABLE) {
+					emitInstruction(CompiledExpression.VARIABLE,
+							rights[node], 1);
+				} else {
+					pending[top] = node;
+					states[top++] = 1;
+					pending[top] = lefts[node];
+					states[top++] = 0;
+				}
+			} else if (state == 1) {
+				pending[top] = node;
+				states[top++] = 2;
+				if (rights[node] == lefts[node]) {
+					emitInstruction(CompiledExpression.DUPLICATE, 0, 1);
+				} else if (rights[node] >= 0) {
+					pending[top] = rights[node];
+					states[top++] = 0;
+				}
+			} else {
+				emitInstruction(kinds[node], 0, rights[node] < 0 ? 0 : -1);
+				if (uses[node] > 1) {
+					slots[node] = slotCount++;
+					emitInstruction(CompiledExpression.STORE,
+							slots[node], 0);
+				}
+			}
+		}
+		for (int i = 0; i < codeLength; i++) {
+			final int opcode = code[i] & CompiledExpression.OPCODE_MASK;
+			if (opcode == CompiledExpression.STORE
+					|| opcode == CompiledExpression.LOAD) {
+				code[i] += maxDepth << CompiledExpression.OPCODE_BITS;
+			}
+		}
+		return new CompiledExpression(Arrays.copyOf(code, codeLength),
+				Arrays.copyOf(constants, constantCount),
+				maxDepth + slotCount,
+				expression.getVariables().toArray(new String[0]),
+				expression.getSource());
+	}
+
+	/**
+	 * Emits a constant node, adding its value to the pool the first time.
+	 */
+	private void emitConstant(final int node, final int[] pool) {
+		if (pool[node] < 0) {
+			if (constantCount == constants.length) {
+				constants = Arrays.copyOf(constants, 
+						constantCount << 1);
+			}
+			constants[constantCount] = values[node];
+			pool[node] = constantCount++;
+		}
+		emitInstruction(CompiledExpression.CONSTANT, pool[node], 1);
+	}
+
+	/**
+	 * Appends an instruction and tracks the stack depth it leaves behind.
+	 */
+	private void emitInstruction(final int opcode, final int index,
+			final int stackEffect) {
+		if (codeLength == code.length) {
+			code = Arrays.copyOf(code, codeLength << 1);
+		}
+		code[codeLength++] = opcode | index << CompiledExpression.OPCODE_BITS;
+		depth += stackEffect;
+		maxDepth = Math.max(maxDepth, depth);
+	}
+}
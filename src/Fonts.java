@@ -0,0 +1,45 @@
+/*H*****************************************************************************
+ * Filename: Fonts.java
+ * Description: The fonts of the calculator GUI.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.awt.*;
+
+/**
+ * Holds every font of the calculator GUI. Each font is created once and
+ * shared by all the components that use it, rather than created again for
+ * every button, so the font is looked up and its glyphs are measured once
+ * at startup.
+ */
+public final class Fonts {
+
+	/**
+	 * The font of the buttons.
+	 */
+	public static final Font BUTTON = new Font("Gill Sans", Font.BOLD, 20);
+
+	/**
+	 * The font of the equal button.
+	 */
+	public static final Font EQUAL_BUTTON = new Font("Arial", Font.BOLD, 15);
+
+	/**
+	 * The font of the input and the result.
+	 */
+	public static final Font DISPLAY = new Font("Gill Sans", Font.PLAIN, 50);
+
+	/**
+	 * The font of the running result.
+	 */
+	public static final Font PREVIEW = new Font("Gill Sans", Font.PLAIN, 20);
+
+	/**
+	 * The font of the history.
+	 */
+	public static final Font HISTORY = new Font("Gill Sans", Font.PLAIN, 16);
+
+	private Fonts() {
+	}
+}
@@ -0,0 +1,24 @@
+/*H*****************************************************************************
+ * Filename: Formula.java
+ * Description: An expression evaluated by generated bytecode.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+/**
+ * A compiled expression turned into straight line double arithmetic by
+ * {@link FormulaGenerator}. Implementations are hidden classes and are only
+ * reached through {@link CompiledExpression}, which checks the number of
+ * variable values before calling them.
+ */
+public interface Formula {
+
+	/**
+	 * Evaluates the formula.
+	 *
+	 * @param  values  the variable values, indexed like 
+	 * 		   {@link CompiledExpression#getVariables()}.
+	 * @return the result of the formula.
+	 */
+	double evaluate(double[] values);
+}
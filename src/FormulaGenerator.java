@@ -0,0 +1,395 @@
+/*H*****************************************************************************
+ * Filename: FormulaGenerator.java
+ * Description: Generates a hidden class that evaluates a compiled expression
+ * 		as straight line bytecode.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Modulo and functions.
+ * 	     2026-10-18 Negation.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns the postfix instructions of a {@link CompiledExpression} into the
+ * bytecode of a {@link Formula}, defined as a hidden class. Every
+ * instruction becomes one or a few JVM instructions on the operand stack:
+ * constants are loaded from the class's constant pool, variables are read
+ * from the values array, operators become dadd, dsub, dmul, ddiv, drem or
+ * a call to the java.lang.Math method that {@link Operator} applies, and
+ * scratch slots become local variables. There are no
+ * branches, so the JIT compiles the method into the same code it would
+ * produce for the formula written by hand in Java.
+ *
+ * <p>The class file is written directly since the ClassFile API is not
+ * available on Java 17. Expressions whose bytecode would be longer than
+ * {@link #MAX_CODE_LENGTH} are not generated: HotSpot does not JIT compile
+ * methods that large, and an interpreted method would be slower than
+ * {@link CompiledExpression}'s own interpreter. Expressions with an
+ * operator that has no bytecode here stay interpreted too.
+ */
+final class FormulaGenerator {
+
+	/**
+	 * The longest method HotSpot compiles by default (HugeMethodLimit).
+	 */
+	static final int MAX_CODE_LENGTH = 8000;
+
+	/**
+	 * The name of every generated class. The JVM makes each hidden class
+	 * name unique.
+	 */
+	private static final String CLASS_NAME = "GeneratedFormula";
+
+	private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+
+	/**
+	 * Java 17 class files. Without branches no stack map frames are needed.
+	 */
+	private static final int CLASS_FILE_VERSION = 61;
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int LDC2_W = 0x14;
+	private static final int DLOAD = 0x18;
+	private static final int ALOAD_0 = 0x2a;
+	private static final int ALOAD_1 = 0x2b;
+	private static final int DALOAD = 0x31;
+	private static final int DSTORE = 0x39;
+	private static final int DUP2 = 0x5c;
+	private static final int DADD = 0x63;
+	private static final int DSUB = 0x67;
+	private static final int DMUL = 0x6b;
+	private static final int DDIV = 0x6f;
+	private static final int DREM = 0x73;
+	private static final int DNEG = 0x77;
+	private static final int DRETURN = 0xaf;
+	private static final int RETURN = 0xb1;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int INVOKESTATIC = 0xb8;
+	private static final int WIDE = 0xc4;
+
+	/**
+	 * The constant pool being built. Entries are numbered from one.
+	 */
+	private final ByteArrayOutputStream pool;
+
+	private final DataOutputStream poolOut;
+
+	/**
+	 * The pool index of each entry, keyed by its kind and contents.
+	 */
+	private final Map<Object, Integer> poolIndexes;
+
+	private int poolCount;
+
+	private FormulaGenerator() {
+		pool = new ByteArrayOutputStream();
+		poolOut = new DataOutputStream(pool);
+		poolIndexes = new HashMap<>();
+		poolCount = 1;
+	}
+
+	/**
+	 * Generates a formula for the expression.
+	 *
+	 * @param  expression  the expression to be generated.
+	 * @return the formula, or null if the expression is too large or the
+	 * 	   class could not be defined.
+	 */
+	static Formula generate(final CompiledExpression expression) {
+		try {
+			final byte[] classFile =
+				new FormulaGenerator().writeClass(expression);
+			if (classFile == null) {
+				return null;
+			}
+			final MethodHandles.Lookup lookup = MethodHandles.lookup()
+				.defineHiddenClass(classFile, true);
+			return (Formula) lookup.findConstructor(lookup.lookupClass(),
+					MethodType.methodType(void.class)).invoke();
+		} catch (Throwable e) {
+			if (e instanceof Error && !(e instanceof LinkageError)) {
+				throw (Error) e;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the class file, or null if a limit of the class file format
+	 * or of the JIT would be exceeded.
+	 */
+	private byte[] writeClass(final CompiledExpression expression)
+			throws IOException {
+		final int thisClass = classEntry(CLASS_NAME);
+		final int superClass = classEntry("java/lang/Object");
+		final int formula = classEntry("Formula");
+		final int objectInit = methodEntry(superClass, "<init>", "()V");
+		final int init = utf8Entry("<init>");
+		final int initType = utf8Entry("()V");
+		final int evaluate = utf8Entry("evaluate");
+		final int evaluateType = utf8Entry("([D)D");
+		final int codeAttribute = utf8Entry("Code");
+
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		final DataOutputStream code = new DataOutputStream(body);
+		if (!writeEvaluate(expression, code)) {
+			return null;
+		}
+		final int maxStack = 2 * expression.getMaxStackDepth() + 2;
+		final int maxLocals = 2 + 2 * expression.getMaxStackDepth();
+		if (poolCount > 0xFFFF || maxLocals > 0xFFFF) {
+			return null;
+		}
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(CLASS_FILE_MAGIC);
+		out.writeShort(0);
+		out.writeShort(CLASS_FILE_VERSION);
+		out.writeShort(poolCount);
+		pool.writeTo(out);
+		out.writeShort(ACC_FINAL | ACC_SUPER);
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(1);
+		out.writeShort(formula);
+		out.writeShort(0);
+		out.writeShort(2);
+
+		out.writeShort(ACC_PUBLIC);
+		out.writeShort(init);
+		out.writeShort(initType);
+		out.writeShort(1);
+		out.writeShort(codeAttribute);
+		out.writeInt(12 + 5);
+		out.writeShort(1);
+		out.writeShort(1);
+		out.writeInt(5);
+		out.writeByte(ALOAD_0);
+		out.writeByte(INVOKESPECIAL);
+		out.writeShort(objectInit);
+		out.writeByte(RETURN);
+		out.writeShort(0);
+		out.writeShort(0);
+
+		out.writeShort(ACC_PUBLIC | ACC_FINAL);
+		out.writeShort(evaluate);
+		out.writeShort(evaluateType);
+		out.writeShort(1);
+		out.writeShort(codeAttribute);
+		out.writeInt(12 + body.size());
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(body.size());
+		body.writeTo(out);
+		out.writeShort(0);
+		out.writeShort(0);
+
+		out.writeShort(0);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the bytecode of the evaluate method.
+	 *
+	 * @return false if the method would be too long.
+	 */
+	private boolean writeEvaluate(final CompiledExpression expression,
+			final DataOutputStream code) throws IOException {
+		final double[] constants = expression.getConstants();
+		final int[] methods = new int[Operator.values().length];
+		for (final int instruction : expression.getCode()) {
+			final int index = instruction >>> CompiledExpression.OPCODE_BITS;
+			switch (instruction & CompiledExpression.OPCODE_MASK) {
+				case CompiledExpression.CONSTANT:
+					code.writeByte(LDC2_W);
+					code.writeShort(doubleEntry(constants[index]));
+					break;
+				case CompiledExpression.VARIABLE:
+					code.writeByte(ALOAD_1);
+					if (index <= Byte.MAX_VALUE) {
+						code.writeByte(BIPUSH);
+						code.writeByte(index);
+					} else if (index <= Short.MAX_VALUE) {
+						code.writeByte(SIPUSH);
+						code.writeShort(index);
+					} else {
+						return false;
+					}
+					code.writeByte(DALOAD);
+					break;
+				case CompiledExpression.DUPLICATE:
+					code.writeByte(DUP2);
+					break;
+				case CompiledExpression.STORE:
+					code.writeByte(DUP2);
+					writeLocal(code, DSTORE, 2 + 2 * index);
+					break;
+				case CompiledExpression.LOAD:
+					writeLocal(code, DLOAD, 2 + 2 * index);
+					break;
+				case CompiledExpression.ADDITION:
+					code.writeByte(DADD);
+					break;
+				case CompiledExpression.SUBTRACTION:
+					code.writeByte(DSUB);
+					break;
+				case CompiledExpression.MULTIPLICATION:
+					code.writeByte(DMUL);
+					break;
+				case CompiledExpression.DIVISION:
+					code.writeByte(DDIV);
+					break;
+				default:
+					final Operator operator = CompiledExpression.operator(
+						instruction & CompiledExpression.OPCODE_MASK);
+					if (operator == Operator.MODULO) {
+						code.writeByte(DREM);
+						break;
+					}
+					if (operator == Operator.NEGATION) {
+						code.writeByte(DNEG);
+						break;
+					}
+					final String method = mathMethod(operator);
+					if (method == null) {
+						return false;
+					}
+					if (methods[operator.ordinal()] == 0) {
+						methods[operator.ordinal()] = methodEntry(
+							classEntry("java/lang/Math"), method,
+							operator.isUnary() ? "(D)D" : "(DD)D");
+					}
+					code.writeByte(INVOKESTATIC);
+					code.writeShort(methods[operator.ordinal()]);
+					break;
+			}
+			if (code.size() >= MAX_CODE_LENGTH) {
+				return false;
+			}
+		}
+		code.writeByte(DRETURN);
+		return true;
+	}
+
+	/**
+	 * Returns the name of the java.lang.Math method that computes an
+	 * operator, or null if there is none.
+	 */
+	private static String mathMethod(final Operator operator) {
+		switch (operator) {
+			case EXPONENTIATION:
+				return "pow";
+			case SQUARE_ROOT:
+				return "sqrt";
+			case NATURAL_LOGARITHM:
+				return "log";
+			case LOGARITHM:
+				return "log10";
+			case SINE:
+				return "sin";
+			case COSINE:
+				return "cos";
+			case TANGENT:
+				return "tan";
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Writes a load or store of a local variable, widened if needed.
+	 */
+	private static void writeLocal(final DataOutputStream code,
+			final int opcode, final int local) throws IOException {
+		if (local <= 0xFF) {
+			code.writeByte(opcode);
+			code.writeByte(local);
+		} else {
+			code.writeByte(WIDE);
+			code.writeByte(opcode);
+			code.writeShort(local);
+		}
+	}
+
+	private int utf8Entry(final String value) throws IOException {
+		final Integer existing = poolIndexes.get(value);
+		if (existing != null) {
+			return existing;
+		}
+		poolOut.writeByte(CONSTANT_UTF8);
+		poolOut.writeUTF(value);
+		return addEntry(value, 1);
+	}
+
+	private int classEntry(final String name) throws IOException {
+		final String key = "class " + name;
+		final Integer existing = poolIndexes.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		final int nameIndex = utf8Entry(name);
+		poolOut.writeByte(CONSTANT_CLASS);
+		poolOut.writeShort(nameIndex);
+		return addEntry(key, 1);
+	}
+
+	private int methodEntry(final int owner, final String name,
+			final String type) throws IOException {
+		final int nameIndex = utf8Entry(name);
+		final int typeIndex = utf8Entry(type);
+		poolOut.writeByte(CONSTANT_NAME_AND_TYPE);
+		poolOut.writeShort(nameIndex);
+		poolOut.writeShort(typeIndex);
+		final int nameAndType = addEntry(null, 1);
+		poolOut.writeByte(CONSTANT_METHODREF);
+		poolOut.writeShort(owner);
+		poolOut.writeShort(nameAndType);
+		return addEntry(null, 1);
+	}
+
+	/**
+	 * Returns the pool entry of a double, keyed by its bits so that 0 and
+	 * -0 and different NaNs stay apart.
+	 */
+	private int doubleEntry(final double value) throws IOException {
+		final Long bits = Double.doubleToRawLongBits(value);
+		final Integer existing = poolIndexes.get(bits);
+		if (existing != null) {
+			return existing;
+		}
+		poolOut.writeByte(CONSTANT_DOUBLE);
+		poolOut.writeLong(bits);
+		return addEntry(bits, 2);
+	}
+
+	/**
+	 * Numbers the entry just written. Doubles take two pool indexes.
+	 */
+	private int addEntry(final Object key, final int size) {
+		final int index = poolCount;
+		poolCount += size;
+		if (key != null) {
+			poolIndexes.put(key, index);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,168 @@
+/*H*****************************************************************************
+ * Filename: Histogram.java
+ * Description: Lock-free log-linear histogram of non-negative long values.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Error bound corrected in the class documentation.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts values in buckets whose width grows with the value, in the style
+ * of HdrHistogram. Values below {@link #SUB_BUCKET_COUNT} have a bucket
+ * each; above that every power of two is split into half as many equal
+ * buckets. A bucket is a sixteenth of its power of two wide, so any value
+ * is reported within about 6% of itself, and the whole range of a long
+ * fits in under a thousand buckets.
+ *
+ * <p>Recording is one atomic increment of a bucket plus a sum, with no
+ * locks and no allocation, so any number of threads can record at once.
+ * Reads walk the buckets without stopping writers, so a percentile read
+ * during recording may miss the values recorded meanwhile.
+ */
+public final class Histogram {
+
+	/**
+	 * The number of bits of a value that select its bucket.
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/**
+	 * The number of values counted exactly.
+	 */
+	static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private static final int HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+
+	/**
+	 * The number of buckets needed for every non-negative long.
+	 */
+	private static final int BUCKET_COUNT =
+			(66 - SUB_BUCKET_BITS) * HALF_COUNT;
+
+	private final AtomicLongArray counts;
+
+	private final LongAdder sum;
+
+	private final AtomicLong max;
+
+	/**
+	 * Constructs an empty histogram.
+	 */
+	public Histogram() {
+		counts = new AtomicLongArray(BUCKET_COUNT);
+		sum = new LongAdder();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Counts a value. Negative values are counted as zero.
+	 *
+	 * @param  value  the value.
+	 */
+	public void record(final long value) {
+		final long v = Math.max(value, 0);
+		counts.getAndIncrement(indexOf(v));
+		sum.add(v);
+		long current = max.get();
+		while (v > current && !max.compareAndSet(current, v)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * Returns the number of values counted.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the largest value counted, or 0 if there are none.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the mean of the values counted, or 0 if there are none.
+	 */
+	public double getMean() {
+		final long count = getCount();
+		return count == 0 ? 0 : sum.doubleValue() / count;
+	}
+
+	/**
+	 * Returns the value that the provided percentage of values are less
+	 * than or equal to, rounded up to the end of its bucket.
+	 *
+	 * @param  percentile  the percentage, from 0 to 100.
+	 * @return the value at the percentile, or 0 if there are none.
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		final long[] snapshot = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1,
+			(long) Math.ceil(count * Math.min(percentile, 100) / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestValueOf(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Discards every value counted. Values recorded while resetting may be
+	 * partly kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		sum.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Returns the bucket of a non-negative value. Above the exactly
+	 * counted range the bucket is the position of the highest bit, which
+	 * selects the shift, and the next bits below it.
+	 */
+	static int indexOf(final long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		final int shift = 64 - Long.numberOfLeadingZeros(value)
+				- SUB_BUCKET_BITS;
+		return shift * HALF_COUNT + (int) (value >>> shift);
+	}
+
+	/**
+	 * Returns the largest value counted in a bucket.
+	 */
+	static long highestValueOf(final int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		final int shift = index / HALF_COUNT - 1;
+		final long subBucket = index - shift * HALF_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,674 @@
+/*H*****************************************************************************
+ * Filename: HistoryLog.java
+ * Description: A persistent, append only history of evaluated expressions
+ * 		kept in memory mapped files.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Chain heads of uncommitted entries repaired on open.
+ * 	     2026-10-18 Retained entries capped so the count cannot overflow.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records each evaluated expression and its result in a directory of two
+ * memory mapped files, so the history outlives the calculator and takes
+ * heap only for the entries actually read.
+ *
+ * <ul>
+ * <li>The log, history.N.log, holds the records one after another: the
+ *     lengths of the expression and the result, then both in UTF-8. A
+ *     record never spans two mapped segments.</li>
+ * <li>The index, history.idx, starts with a header holding the number of
+ *     entries, the end of the log and the generation N of the log, then a
+ *     table of chain heads, then one slot per entry with the position and
+ *     length of its record and the previous entry whose expression starts
+ *     with the same two bytes. The table and the chains let prefix lookups
+ *     skip entries that cannot match; a one byte prefix walks the chains
+ *     of all its second bytes together.</li>
+ * </ul>
+ *
+ * <p>Opening maps the files and reads the header, so it takes the same time
+ * for ten entries as for ten million. An entry is committed when the count
+ * in the header is written, after its record and slot, so an entry cut
+ * short by a crash is never seen. Its chain head is written just before
+ * the count, so opening also unlinks such an entry from its chain, which
+ * would otherwise be reused by the next entry. Entries are numbered by
+ * recency: entry 0 is the most recent.
+ *
+ * <p>Once the log holds twice the retained number of entries, it is
+ * compacted: the retained most recent entries are copied into the next
+ * generation of the log, a new index pointing at it replaces the old one
+ * in a single atomic move, and the old log is deleted. A crash during
+ * compaction leaves the old files in use.
+ *
+ * <p>The history is locked against other processes while open, through a
+ * history.lock file that compaction leaves in place. Its methods are
+ * synchronized, so it may be shared by threads.
+ */
+public final class HistoryLog implements Closeable {
+
+	/**
+	 * The default number of entries kept by compaction.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1 << 22;
+
+	private static final String INDEX_NAME = "history.idx";
+
+	private static final String LOCK_NAME = "history.lock";
+
+	private static final int INDEX_MAGIC = 0x43484958;
+
+	private static final int LOG_MAGIC = 0x43484C47;
+
+	private static final int VERSION = 1;
+
+	/**
+	 * The files are mapped in segments of this many bytes, which is also
+	 * the largest record.
+	 */
+	private static final int SEGMENT_BITS = 22;
+
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+	private static final int GENERATION_OFFSET = 8;
+
+	private static final int COUNT_OFFSET = 16;
+
+	private static final int END_OFFSET = 24;
+
+	private static final int HEADS_OFFSET = 64;
+
+	/**
+	 * The number of chains, one per pair of leading 7 bit bytes.
+	 */
+	private static final int BUCKETS = 1 << 14;
+
+	private static final int SLOTS_OFFSET = HEADS_OFFSET + 4 * BUCKETS;
+
+	private static final int SLOT_SIZE = 16;
+
+	/**
+	 * The position of the first record in a log.
+	 */
+	private static final int RECORDS_OFFSET = 16;
+
+	private static final int RECORD_HEADER = 8;
+
+	private final Path directory;
+
+	private final int maxEntries;
+
+	/**
+	 * The channel holding the lock on the history.
+	 */
+	private final FileChannel lockChannel;
+
+	private MappedFile index;
+
+	private MappedFile log;
+
+	private long generation;
+
+	private int count;
+
+	private long end;
+
+	private HistoryLog(final Path directory, final int maxEntries,
+			final FileChannel lockChannel, final MappedFile index)
+			throws IOException {
+		this.directory = directory;
+		this.maxEntries = maxEntries;
+		this.lockChannel = lockChannel;
+		this.index = index;
+		final ByteBuffer header = index.segment(0);
+		if (header.getInt(0) == 0) {
+			header.putInt(4, VERSION);
+			header.putLong(GENERATION_OFFSET, 0);
+			header.putLong(COUNT_OFFSET, 0);
+			header.putLong(END_OFFSET, RECORDS_OFFSET);
+			for (int i = 0; i < BUCKETS; i++) {
+				header.putInt(HEADS_OFFSET + 4 * i, -1);
+			}
+			header.putInt(0, INDEX_MAGIC);
+		} else if (header.getInt(0) != INDEX_MAGIC
+				|| header.getInt(4) != VERSION) {
+			throw new IOException("Not a history index: "
+					+ directory.resolve(INDEX_NAME));
+		}
+		generation = header.getLong(GENERATION_OFFSET);
+		count = (int) header.getLong(COUNT_OFFSET);
+		end = header.getLong(END_OFFSET);
+		repairHeads(header);
+		log = openLog(generation);
+		Files.deleteIfExists(logPath(generation + 1));
+	}
+
+	/**
+	 * Replaces every chain head at or past the count, left by a crash
+	 * between publishing the head and the count, with the head it replaced,
+	 * which its slot still holds.
+	 */
+	private void repairHeads(final ByteBuffer header) throws IOException {
+		for (int i = 0; i < BUCKETS; i++) {
+			final int bucket = HEADS_OFFSET + 4 * i;
+			int head = header.getInt(bucket);
+			if (head < count) {
+				continue;
+			}
+			while (head >= count) {
+				final int previous = previousOf(head);
+				if (previous >= head) {
+					throw new IOException("Corrupt history index: "
+							+ directory.resolve(INDEX_NAME));
+				}
+				head = previous;
+			}
+			header.putInt(bucket, head);
+		}
+	}
+
+	/**
+	 * Opens the history in a directory, creating it if there is none,
+	 * keeping {@link #DEFAULT_MAX_ENTRIES} entries.
+	 *
+	 * @param  directory  the directory of the history files.
+	 * @return the history.
+	 * @throws IOException if the files cannot be opened, are not a
+	 * 		       history, or are in use by another process.
+	 */
+	public static HistoryLog open(final Path directory) throws IOException {
+		return open(directory, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * Opens the history in a directory, creating it if there is none.
+	 *
+	 * @param  directory   the directory of the history files.
+	 * @param  maxEntries  the number of most recent entries kept by
+	 * 		       compaction, from 1 to 2^30 - 1, so that twice
+	 * 		       as many still fit in the count.
+	 * @return the history.
+	 * @throws IOException if the files cannot be opened, are not a
+	 * 		       history, or are in use by another process.
+	 */
+	public static HistoryLog open(final Path directory, final int maxEntries)
+			throws IOException {
+		if (maxEntries < 1 || maxEntries >= 1 << 30) {
+			throw new IllegalArgumentException("Retained entries must be "
+					+ "between 1 and 2^30 - 1");
+		}
+		Files.createDirectories(directory);
+		final FileChannel lockChannel = FileChannel.open(
+				directory.resolve(LOCK_NAME), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE);
+		MappedFile index = null;
+		try {
+			final FileLock lock = lockChannel.tryLock();
+			if (lock == null) {
+				throw new IOException("History is in use: " + directory);
+			}
+			index = new MappedFile(FileChannel.open(
+				directory.resolve(INDEX_NAME), StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE));
+			return new HistoryLog(directory, maxEntries, lockChannel,
+					index);
+		} catch (OverlappingFileLockException e) {
+			lockChannel.close();
+			throw new IOException("History is in use: " + directory, e);
+		} catch (IOException | RuntimeException e) {
+			if (index != null) {
+				index.close();
+			}
+			lockChannel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Records an expression and its result, unless they are the same as
+	 * the most recent entry. Compacts the history if it has grown to twice
+	 * the retained number of entries.
+	 *
+	 * @param  expression  the evaluated expression.
+	 * @param  result      the result as displayed.
+	 * @throws IllegalArgumentException if the entry is larger than a
+	 * 				    segment.
+	 * @throws IOException if the files cannot be grown or compacted.
+	 */
+	public synchronized void append(final String expression,
+			final String result) throws IOException {
+		if (count > 0) {
+			final Entry last = get(0);
+			if (last.expression.equals(expression)
+					&& last.result.equals(result)) {
+				return;
+			}
+		}
+		final byte[] expressionBytes = expression.getBytes(
+				StandardCharsets.UTF_8);
+		final byte[] resultBytes = result.getBytes(StandardCharsets.UTF_8);
+		final int length = RECORD_HEADER + expressionBytes.length
+			+ resultBytes.length;
+		if (length > SEGMENT_SIZE - RECORDS_OFFSET) {
+			throw new IllegalArgumentException("History entry too large");
+		}
+		final long position = reserve(end, length);
+		final ByteBuffer record = log.segment(position);
+		int offset = offsetOf(position);
+		record.putInt(offset, expressionBytes.length);
+		record.putInt(offset + 4, resultBytes.length);
+		record.put(offset + RECORD_HEADER, expressionBytes);
+		record.put(offset + RECORD_HEADER + expressionBytes.length,
+				resultBytes);
+
+		final ByteBuffer header = index.segment(0);
+		final int bucket = HEADS_OFFSET + 4 * bucketOf(expressionBytes);
+		writeSlot(index, count, position, length, header.getInt(bucket));
+		header.putInt(bucket, count);
+		end = position + length;
+		header.putLong(END_OFFSET, end);
+		header.putLong(COUNT_OFFSET, ++count);
+		if (count >= 2L * maxEntries) {
+			compact();
+		}
+	}
+
+	/**
+	 * Returns the number of entries.
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * Returns an entry by recency.
+	 *
+	 * @param  recency  0 for the most recent entry, up to size() - 1 for
+	 * 		    the oldest.
+	 * @return the entry.
+	 * @throws IndexOutOfBoundsException if there is no such entry.
+	 */
+	public synchronized Entry get(final int recency) {
+		if (recency < 0 || recency >= count) {
+			throw new IndexOutOfBoundsException(recency);
+		}
+		try {
+			return read(count - 1 - recency);
+		} catch (IOException e) {
+			throw new IllegalStateException("History unreadable", e);
+		}
+	}
+
+	/**
+	 * Returns the most recent entries whose expressions start with a
+	 * prefix, most recent first.
+	 *
+	 * @param  prefix  the start of the expressions.
+	 * @param  limit   the largest number of entries returned.
+	 * @return the matching entries.
+	 */
+	public synchronized List<Entry> find(final String prefix,
+			final int limit) {
+		final byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+		final List<Entry> found = new ArrayList<>();
+		try {
+			if (key.length >= 2) {
+				int entry = index.segment(0).getInt(HEADS_OFFSET
+						+ 4 * bucketOf(key));
+				while (entry >= 0 && found.size() < limit) {
+					if (entry < count && startsWith(entry, key)) {
+						found.add(read(entry));
+					}
+					entry = previousOf(entry);
+				}
+			} else if (key.length == 1) {
+				findByFirstByte(key, limit, found);
+			} else {
+				for (int entry = count - 1;
+						entry >= 0 && found.size() < limit; entry--) {
+					found.add(read(entry));
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("History unreadable", e);
+		}
+		return found;
+	}
+
+	/**
+	 * Finds entries starting with a single byte by walking the chains of
+	 * every second byte at once, taking the most recent entry of any of
+	 * them each time.
+	 */
+	private void findByFirstByte(final byte[] key, final int limit,
+			final List<Entry> found) throws IOException {
+		final ByteBuffer header = index.segment(0);
+		final int first = (key[0] & 0x7F) << 7;
+		final int[] cursors = new int[1 << 7];
+		for (int i = 0; i < cursors.length; i++) {
+			cursors[i] = header.getInt(HEADS_OFFSET + 4 * (first | i));
+		}
+		while (found.size() < limit) {
+			int latest = 0;
+			for (int i = 1; i < cursors.length; i++) {
+				if (cursors[i] > cursors[latest]) {
+					latest = i;
+				}
+			}
+			final int entry = cursors[latest];
+			if (entry < 0) {
+				return;
+			}
+			if (entry < count && startsWith(entry, key)) {
+				found.add(read(entry));
+			}
+			cursors[latest] = previousOf(entry);
+		}
+	}
+
+	/**
+	 * Keeps only the retained number of most recent entries, copying them
+	 * into a new log and index that replace the current ones.
+	 *
+	 * @throws IOException if the new files cannot be written.
+	 */
+	public synchronized void compact() throws IOException {
+		final int first = Math.max(0, count - maxEntries);
+		final long nextGeneration = generation + 1;
+		final Path indexPath = directory.resolve(INDEX_NAME);
+		final Path newIndexPath = directory.resolve(INDEX_NAME + ".tmp");
+		final MappedFile newLog = openLog(nextGeneration);
+		final MappedFile newIndex = new MappedFile(FileChannel.open(
+				newIndexPath, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING));
+		final ByteBuffer header = newIndex.segment(0);
+		try {
+			for (int i = 0; i < BUCKETS; i++) {
+				header.putInt(HEADS_OFFSET + 4 * i, -1);
+			}
+			long position = RECORDS_OFFSET;
+			for (int entry = first; entry < count; entry++) {
+				final long from = positionOf(entry);
+				final int length = lengthOf(entry);
+				position = reserve(position, length);
+				newLog.segment(position).put(offsetOf(position),
+					log.segment(from), offsetOf(from), length);
+				final int bucket = HEADS_OFFSET + 4 * bucketOf(
+						log.segment(from), offsetOf(from));
+				final int copy = entry - first;
+				writeSlot(newIndex, copy, position, length,
+						header.getInt(bucket));
+				header.putInt(bucket, copy);
+				position += length;
+			}
+			header.putInt(4, VERSION);
+			header.putLong(GENERATION_OFFSET, nextGeneration);
+			header.putLong(COUNT_OFFSET, count - first);
+			header.putLong(END_OFFSET, position);
+			header.putInt(0, INDEX_MAGIC);
+			newLog.force();
+			newIndex.force();
+			newIndex.close();
+			Files.move(newIndexPath, indexPath,
+					StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+			count -= first;
+			end = position;
+		} catch (IOException | RuntimeException e) {
+			newLog.close();
+			newIndex.close();
+			Files.deleteIfExists(newIndexPath);
+			Files.deleteIfExists(logPath(nextGeneration));
+			throw e;
+		}
+		final MappedFile oldIndex = index;
+		final MappedFile oldLog = log;
+		index = new MappedFile(FileChannel.open(indexPath,
+				StandardOpenOption.READ, StandardOpenOption.WRITE));
+		log = newLog;
+		generation = nextGeneration;
+		oldLog.close();
+		oldIndex.close();
+		try {
+			Files.deleteIfExists(logPath(nextGeneration - 1));
+		} catch (IOException e) {
+			// Left for the next compaction, as on systems that do not
+			// delete files that are still mapped.
+		}
+	}
+
+	/**
+	 * Writes every change to the files out to the storage device.
+	 *
+	 * @throws IOException if the files cannot be written.
+	 */
+	public synchronized void force() throws IOException {
+		log.force();
+		index.force();
+	}
+
+	/**
+	 * Writes every change out and closes the files. The history must not
+	 * be used afterwards.
+	 *
+	 * @throws IOException if the files cannot be written or closed.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			force();
+		} finally {
+			log.close();
+			index.close();
+			lockChannel.close();
+		}
+	}
+
+	private Path logPath(final long logGeneration) {
+		return directory.resolve("history." + logGeneration + ".log");
+	}
+
+	/**
+	 * Opens a log of a generation, writing its header if it is new.
+	 */
+	private MappedFile openLog(final long logGeneration) throws IOException {
+		final MappedFile file = new MappedFile(FileChannel.open(
+				logPath(logGeneration), StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE));
+		final ByteBuffer header = file.segment(0);
+		if (header.getInt(0) == 0) {
+			header.putInt(4, VERSION);
+			header.putInt(0, LOG_MAGIC);
+		} else if (header.getInt(0) != LOG_MAGIC) {
+			file.close();
+			throw new IOException("Not a history log: "
+					+ logPath(logGeneration));
+		}
+		return file;
+	}
+
+	/**
+	 * Returns where a record of a length is written at or after a
+	 * position, moving it to the next segment if it would span two.
+	 */
+	private static long reserve(final long position, final int length) {
+		if (offsetOf(position) + length > SEGMENT_SIZE) {
+			return (position >>> SEGMENT_BITS) + 1 << SEGMENT_BITS;
+		}
+		return position;
+	}
+
+	private static int offsetOf(final long position) {
+		return (int) position & SEGMENT_SIZE - 1;
+	}
+
+	private static long slotPosition(final int entry) {
+		return SLOTS_OFFSET + (long) SLOT_SIZE * entry;
+	}
+
+	private static void writeSlot(final MappedFile file, final int entry,
+			final long position, final int length, final int previous)
+			throws IOException {
+		final long slot = slotPosition(entry);
+		final ByteBuffer segment = file.segment(slot);
+		final int offset = offsetOf(slot);
+		segment.putLong(offset, position);
+		segment.putInt(offset + 8, length);
+		segment.putInt(offset + 12, previous);
+	}
+
+	private long positionOf(final int entry) throws IOException {
+		final long slot = slotPosition(entry);
+		return index.segment(slot).getLong(offsetOf(slot));
+	}
+
+	private int lengthOf(final int entry) throws IOException {
+		final long slot = slotPosition(entry);
+		return index.segment(slot).getInt(offsetOf(slot) + 8);
+	}
+
+	private int previousOf(final int entry) throws IOException {
+		final long slot = slotPosition(entry);
+		return index.segment(slot).getInt(offsetOf(slot) + 12);
+	}
+
+	/**
+	 * Returns the chain of an expression, from its first two bytes.
+	 */
+	private static int bucketOf(final byte[] expression) {
+		return (expression.length > 0 ? expression[0] & 0x7F : 0) << 7
+			| (expression.length > 1 ? expression[1] & 0x7F : 0);
+	}
+
+	/**
+	 * Returns the chain of the expression of the record at an offset.
+	 */
+	private static int bucketOf(final ByteBuffer segment, final int offset) {
+		final int length = segment.getInt(offset);
+		final int start = offset + RECORD_HEADER;
+		return (length > 0 ? segment.get(start) & 0x7F : 0) << 7
+			| (length > 1 ? segment.get(start + 1) & 0x7F : 0);
+	}
+
+	private boolean startsWith(final int entry, final byte[] key)
+			throws IOException {
+		final long position = positionOf(entry);
+		final ByteBuffer segment = log.segment(position);
+		final int offset = offsetOf(position);
+		if (segment.getInt(offset) < key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (segment.get(offset + RECORD_HEADER + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Entry read(final int entry) throws IOException {
+		final long position = positionOf(entry);
+		final ByteBuffer segment = log.segment(position);
+		final int offset = offsetOf(position);
+		final byte[] expression = new byte[segment.getInt(offset)];
+		final byte[] result = new byte[segment.getInt(offset + 4)];
+		segment.get(offset + RECORD_HEADER, expression);
+		segment.get(offset + RECORD_HEADER + expression.length, result);
+		return new Entry(new String(expression, StandardCharsets.UTF_8),
+				new String(result, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * An expression and its result.
+	 */
+	public static final class Entry {
+
+		private final String expression;
+
+		private final String result;
+
+		Entry(final String expression, final String result) {
+			this.expression = expression;
+			this.result = result;
+		}
+
+		/**
+		 * Returns the evaluated expression.
+		 */
+		public String getExpression() {
+			return expression;
+		}
+
+		/**
+		 * Returns the result as it was displayed.
+		 */
+		public String getResult() {
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return expression + " = " + result;
+		}
+	}
+
+	/**
+	 * A file mapped one segment at a time, as segments are first used.
+	 * Mapping past the end of the file grows it.
+	 */
+	private static final class MappedFile {
+
+		private final FileChannel channel;
+
+		private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+		MappedFile(final FileChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Returns the segment holding a position.
+		 */
+		ByteBuffer segment(final long position) throws IOException {
+			final int segment = (int) (position >>> SEGMENT_BITS);
+			while (segments.size() <= segment) {
+				segments.add(null);
+			}
+			MappedByteBuffer mapped = segments.get(segment);
+			if (mapped == null) {
+				mapped = channel.map(FileChannel.MapMode.READ_WRITE,
+					(long) segment << SEGMENT_BITS, SEGMENT_SIZE);
+				segments.set(segment, mapped);
+			}
+			return mapped;
+		}
+
+		void force() {
+			for (final MappedByteBuffer mapped : segments) {
+				if (mapped != null) {
+					mapped.force();
+				}
+			}
+		}
+
+		void close() throws IOException {
+			segments.clear();
+			channel.close();
+		}
+	}
+}
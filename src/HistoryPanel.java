@@ -0,0 +1,129 @@
+/*H*****************************************************************************
+ * Filename: HistoryPanel.java
+ * Description: Panel that lists past calculations, most recent first.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Shared font.
+ * 	     2026-10-18 Entries compacted away before a refresh are skipped.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.function.Consumer;
+
+/**
+ * Lists the entries of a {@link HistoryLog}, most recent first. The list
+ * reads only the entries on screen from the log, so a history of millions
+ * of entries takes no more memory than a short one. Double clicking an
+ * entry recalls its expression.
+ */
+public class HistoryPanel extends JPanel {
+
+	/**
+	 * The number of entries visible without scrolling.
+	 */
+	private static final int VISIBLE_ROWS = 4;
+
+	/**
+	 * The entries of the history, read from the log as they are shown.
+	 */
+	private final HistoryModel model;
+
+	/**
+	 * Constructs a history panel for a history.
+	 *
+	 * @param  history  the history listed.
+	 * @param  recall   receives the expression of an entry that is double
+	 * 		    clicked.
+	 */
+	public HistoryPanel(final HistoryLog history,
+			final Consumer<String> recall) {
+		model = new HistoryModel(history);
+		final JList<String> list = new JList<>(model);
+		list.setFont(Fonts.HISTORY);
+		list.setBackground(Color.BLACK);
+		list.setForeground(Color.LIGHT_GRAY);
+		list.setPrototypeCellValue("0000000000 = 0000000000");
+		list.setVisibleRowCount(VISIBLE_ROWS);
+		list.setFocusable(false);
+		list.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(final MouseEvent event) {
+				final int index = list.locationToIndex(event.getPoint());
+				final HistoryLog.Entry entry = event.getClickCount() == 2
+					&& index >= 0 ? model.entryAt(index) : null;
+				if (entry != null) {
+					recall.accept(entry.getExpression());
+				}
+			}
+		});
+		setLayout(new BorderLayout());
+		add(new JScrollPane(list), BorderLayout.CENTER);
+		setBackground(Color.BLACK);
+	}
+
+	/**
+	 * Shows the entries recorded since the last call. Must be called on
+	 * the event dispatch thread after each change to the history.
+	 */
+	public void refresh() {
+		model.refresh();
+	}
+
+	/**
+	 * Presents a history as a list model. The size is kept from the last
+	 * refresh, as a list model must not change between its events. The
+	 * history is appended to off the event dispatch thread, so a
+	 * compaction can remove entries before the refresh that reports it.
+	 */
+	private static final class HistoryModel
+			extends AbstractListModel<String> {
+
+		private final HistoryLog history;
+
+		private int size;
+
+		HistoryModel(final HistoryLog history) {
+			this.history = history;
+			size = history.size();
+		}
+
+		void refresh() {
+			final int previous = size;
+			size = history.size();
+			if (size > previous) {
+				fireIntervalAdded(this, 0, size - previous - 1);
+			} else if (size < previous) {
+				// Compacted: the oldest entries are gone, and the rest
+				// moved down for the entry that was added.
+				fireIntervalRemoved(this, size, previous - 1);
+				fireContentsChanged(this, 0, size - 1);
+			}
+		}
+
+		@Override
+		public int getSize() {
+			return size;
+		}
+
+		@Override
+		public String getElementAt(final int index) {
+			final HistoryLog.Entry entry = entryAt(index);
+			return entry != null ? entry.toString() : "";
+		}
+
+		/**
+		 * Returns an entry by recency, or null if it was compacted away
+		 * since the last refresh.
+		 */
+		HistoryLog.Entry entryAt(final int index) {
+			try {
+				return history.get(index);
+			} catch (IndexOutOfBoundsException e) {
+				return null;
+			}
+		}
+	}
+}
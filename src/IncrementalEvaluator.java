@@ -0,0 +1,674 @@
+/*H*****************************************************************************
+ * Filename: IncrementalEvaluator.java
+ * Description: Keeps a running result of an expression while it is typed
+ * 		one character at a time.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Parentheses.
+ * 	     2026-10-18 Modulo and functions.
+ * 	     2026-10-18 Numbers built from their digits as they are typed.
+ * 	     2026-10-18 Negation of groups and functions.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Arrays;
+
+/**
+ * Evaluates an expression as it is typed. The operand and operator stacks
+ * of the single pass evaluator are kept between keystrokes: a digit only
+ * extends the number being typed, and an operator pushes that number and
+ * applies the waiting operators it outranks, exactly as {@link Evaluator}
+ * would. The number being typed is kept as a long holding its digits, the
+ * way {@link Lexer} reads numbers, so a digit updates it in constant time
+ * and only a number longer than a long can hold exactly is parsed from its
+ * text. Every keystroke records how to undo itself in a journal, so 
+ * removing the last character restores the previous state without 
+ * re-reading the expression.
+ *
+ * <p>A left parenthesis waits on the operator stack as a null marker, and
+ * a right parenthesis applies the operators down to its marker and 
+ * removes it, leaving the value of the group as an operand. A function is
+ * typed as its name followed by a left parenthesis, which pushes the
+ * function and opens its group together. A minus sign typed where an
+ * operand is expected starts a negative number, unless a left parenthesis
+ * or a function name follows it, which turns it into
+ * {@link Operator#NEGATION} of what follows.
+ *
+ * <p>The running result folds the waiting operators over the operand 
+ * stack, skipping markers. Within each open group the waiting operators 
+ * increase in precedence, so there are at most as many of them per group as
+ * precedence levels, except for chains of the right associative 
+ * exponentiation. Each keystroke therefore costs amortized constant time 
+ * and each preview time proportional to the nesting depth.
+ *
+ * <p>The evaluator mirrors a character sequence owned by the caller, which
+ * must append or remove the character before calling {@link #append(char)}
+ * or {@link #removeLast()}.
+ */
+public class IncrementalEvaluator {
+
+	/**
+	 * A keystroke that extended or started the number being typed.
+	 */
+	private static final byte NUMBER = 0;
+
+	/**
+	 * A keystroke that pushed an operator.
+	 */
+	private static final byte OPERATOR = 1;
+
+	/**
+	 * A keystroke that made the expression invalid.
+	 */
+	private static final byte INVALID = 2;
+
+	/**
+	 * A keystroke that pushed an operator after a right parenthesis, with
+	 * no number being typed.
+	 */
+	private static final byte GROUP_OPERATOR = 3;
+
+	/**
+	 * A keystroke that opened a group.
+	 */
+	private static final byte OPEN = 4;
+
+	/**
+	 * A keystroke that closed a group after a right parenthesis.
+	 */
+	private static final byte CLOSE = 5;
+
+	/**
+	 * A keystroke that pushed the number being typed and closed a group.
+	 */
+	private static final byte CLOSE_NUMBER = 6;
+
+	/**
+	 * A keystroke that extended or started the name of a function.
+	 */
+	private static final byte NAME = 7;
+
+	/**
+	 * A keystroke that pushed the function just named and opened its
+	 * group.
+	 */
+	private static final byte FUNCTION = 8;
+
+	/**
+	 * A keystroke that turned a minus sign into a negation and opened a
+	 * group.
+	 */
+	private static final byte NEGATE_OPEN = 9;
+
+	/**
+	 * A keystroke that turned a minus sign into a negation and started the
+	 * name of a function.
+	 */
+	private static final byte NEGATE_NAME = 10;
+
+	/**
+	 * The number of longs that hold the state of a pushed number.
+	 */
+	private static final int NUMBER_STATE = 4;
+
+	/**
+	 * The character that separates the integer and fraction digits.
+	 */
+	private static final char DECIMAL = Symbol.DECIMAL.getSymbol().charAt(0);
+
+	/**
+	 * The character that makes a number negative.
+	 */
+	private static final char NEGATIVE = 
+				Symbol.NEGATIVE.getSymbol().charAt(0);
+
+	private static final char LEFT_PARENTHESIS = 
+				Symbol.LEFT_PARENTHESIS.getSymbol().charAt(0);
+
+	private static final char RIGHT_PARENTHESIS = 
+				Symbol.RIGHT_PARENTHESIS.getSymbol().charAt(0);
+
+	/**
+	 * The expression being typed.
+	 */
+	private final CharSequence input;
+
+	/**
+	 * The operand stack.
+	 */
+	private final DoubleStack operands;
+
+	/**
+	 * The waiting operators, with null marking an open left parenthesis.
+	 */
+	private Operator[] operators;
+
+	private int operatorCount;
+
+	/**
+	 * The number of open left parentheses.
+	 */
+	private int openCount;
+
+	/**
+	 * The index in the input of the number being typed, or -1 if the last
+	 * keystroke was not part of a number.
+	 */
+	private int numberStart;
+
+	/**
+	 * True if the number being typed has a decimal point.
+	 */
+	private boolean numberHasDecimal;
+
+	/**
+	 * The significant digits of the number being typed, up to
+	 * {@link Lexer#MAX_EXACT_DIGITS} of them.
+	 */
+	private long numberMantissa;
+
+	/**
+	 * The number of significant digits of the number being typed.
+	 */
+	private int numberDigits;
+
+	/**
+	 * The number of the digits in numberMantissa that follow the decimal
+	 * point.
+	 */
+	private int numberFractionDigits;
+
+	/**
+	 * The number of digits of the number being typed, leading zeros
+	 * included.
+	 */
+	private int numberDigitCount;
+
+	/**
+	 * The state of each number pushed as an operand, as
+	 * {@link #NUMBER_STATE} longs per number, so that removing the
+	 * keystroke that pushed it resumes typing it.
+	 */
+	private long[] pushedNumbers;
+
+	private int pushedNumberLength;
+
+	/**
+	 * The index in the input of the function name being typed, or -1 if
+	 * the last keystroke was not part of a name.
+	 */
+	private int nameStart;
+
+	/**
+	 * The number of invalid keystrokes still in the expression.
+	 */
+	private int invalidCount;
+
+	/**
+	 * The kind of each keystroke, oldest first.
+	 */
+	private byte[] journalKinds;
+
+	/**
+	 * For operator and right parenthesis keystrokes, the number of waiting
+	 * operators it applied; for number keystrokes, the character typed.
+	 */
+	private int[] journalReductions;
+
+	private int journalLength;
+
+	/**
+	 * The operands and operators consumed by applied operators, so they 
+	 * can be restored.
+	 */
+	private final DoubleStack undoOperands;
+
+	private Operator[] undoOperators;
+
+	private int undoOperatorCount;
+
+	/**
+	 * Constructs an evaluator that mirrors the provided input, which must be
+	 * empty.
+	 *
+	 * @param  input  the expression being typed.
+	 */
+	public IncrementalEvaluator(final CharSequence input) {
+		this.input = input;
+		operands = new DoubleStack();
+		undoOperands = new DoubleStack();
+		operators = new Operator[16];
+		undoOperators = new Operator[16];
+		journalKinds = new byte[64];
+		journalReductions = new int[64];
+		pushedNumbers = new long[4 * NUMBER_STATE];
+		numberStart = -1;
+		nameStart = -1;
+	}
+
+	/**
+	 * Updates the state for a character just appended to the input.
+	 *
+	 * @param  c  the appended character.
+	 */
+	public void append(final char c) {
+		if (journalLength == journalKinds.length) {
+			journalKinds = Arrays.copyOf(journalKinds, journalLength << 1);
+			journalReductions = Arrays.copyOf(journalReductions, 
+						journalLength << 1);
+		}
+		final int index = input.length() - 1;
+		final Operator operator = Operator.fromSymbol(c);
+		final boolean numberChar = isDigit(c) 
+				|| (c == DECIMAL && !numberHasDecimal);
+		final boolean hasNumber = numberStart >= 0 && numberDigitCount > 0;
+		if (invalidCount > 0) {
+			record(INVALID, 0);
+		} else if (numberStart >= 0 ? numberChar 
+				: isExpectingOperand() && (numberChar || c == NEGATIVE)) {
+			if (numberStart < 0) {
+				numberStart = index;
+			}
+			appendToNumber(c);
+			record(NUMBER, c);
+		} else if ((c == LEFT_PARENTHESIS || isLetter(c)) 
+				&& isSignOnly(index)) {
+			clearNumber();
+			push(Operator.NEGATION);
+			if (c == LEFT_PARENTHESIS) {
+				push(null);
+				openCount++;
+				record(NEGATE_OPEN, 0);
+			} else {
+				nameStart = index;
+				record(NEGATE_NAME, 0);
+			}
+		} else if (isLetter(c) && (nameStart >= 0 
+				|| isExpectingOperand())) {
+			if (nameStart < 0) {
+				nameStart = index;
+			}
+			record(NAME, 0);
+		} else if (c == LEFT_PARENTHESIS && nameStart >= 0) {
+			final Operator function = 
+				Operator.fromName(input, nameStart, index);
+			if (function != null) {
+				push(function);
+				push(null);
+				openCount++;
+				nameStart = -1;
+				record(FUNCTION, 0);
+			} else {
+				record(INVALID, 0);
+			}
+		} else if (c == LEFT_PARENTHESIS && isExpectingOperand()) {
+			push(null);
+			openCount++;
+			record(OPEN, 0);
+		} else if (c == RIGHT_PARENTHESIS && openCount > 0 
+				&& (hasNumber || isAfterClose())) {
+			if (hasNumber) {
+				pushNumber();
+			}
+			final int reductions = reduce(null);
+			operatorCount--;
+			openCount--;
+			record(hasNumber ? CLOSE_NUMBER : CLOSE, reductions);
+		} else if (operator != null && (hasNumber || isAfterClose())) {
+			if (hasNumber) {
+				pushNumber();
+			}
+			final int reductions = reduce(operator);
+			push(operator);
+			record(hasNumber ? OPERATOR : GROUP_OPERATOR, reductions);
+		} else {
+			record(INVALID, 0);
+		}
+	}
+
+	/**
+	 * Returns true if the number being typed is only the minus sign just
+	 * before the provided index.
+	 */
+	private boolean isSignOnly(final int index) {
+		return numberStart >= 0 && numberStart == index - 1 
+				&& numberDigitCount == 0 && !numberHasDecimal;
+	}
+
+	/**
+	 * Turns a negation back into the minus sign that ends the input.
+	 */
+	private void restoreSign() {
+		clearNumber();
+		numberStart = input.length() - 1;
+	}
+
+	/**
+	 * Returns true if the last keystroke closed a group.
+	 */
+	private boolean isAfterClose() {
+		return journalLength > 0 && invalidCount == 0
+			&& (journalKinds[journalLength - 1] == CLOSE
+				|| journalKinds[journalLength - 1] == CLOSE_NUMBER);
+	}
+
+	/**
+	 * Returns true if no number or name is being typed and a number, 
+	 * function or group may start.
+	 */
+	private boolean isExpectingOperand() {
+		return numberStart < 0 && nameStart < 0 && !isAfterClose();
+	}
+
+	private void record(final byte kind, final int reductions) {
+		if (kind == INVALID) {
+			invalidCount++;
+		}
+		journalKinds[journalLength] = kind;
+		journalReductions[journalLength++] = reductions;
+	}
+
+	/**
+	 * Adds a character to the number being typed.
+	 */
+	private void appendToNumber(final char c) {
+		if (c == DECIMAL) {
+			numberHasDecimal = true;
+		} else if (isDigit(c)) {
+			numberDigitCount++;
+			if (numberMantissa != 0 || c != '0') {
+				numberDigits++;
+			}
+			if (numberDigits <= Lexer.MAX_EXACT_DIGITS) {
+				numberMantissa = numberMantissa * 10 + (c - '0');
+				if (numberHasDecimal) {
+					numberFractionDigits++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes the last character typed off the number being typed, undoing
+	 * {@link #appendToNumber(char)}.
+	 */
+	private void removeFromNumber(final char c) {
+		if (c == DECIMAL) {
+			numberHasDecimal = false;
+		} else if (isDigit(c)) {
+			numberDigitCount--;
+			if (numberDigits > Lexer.MAX_EXACT_DIGITS) {
+				numberDigits--;
+			} else {
+				numberMantissa /= 10;
+				if (numberHasDecimal) {
+					numberFractionDigits--;
+				}
+				if (numberMantissa != 0 || c != '0') {
+					numberDigits--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forgets the number being typed.
+	 */
+	private void clearNumber() {
+		numberStart = -1;
+		numberHasDecimal = false;
+		numberMantissa = 0;
+		numberDigits = 0;
+		numberFractionDigits = 0;
+		numberDigitCount = 0;
+	}
+
+	/**
+	 * Pushes the number being typed, which ends before the last character,
+	 * and saves its state.
+	 */
+	private void pushNumber() {
+		operands.push(numberValue(input.length() - 1));
+		if (pushedNumberLength == pushedNumbers.length) {
+			pushedNumbers = Arrays.copyOf(pushedNumbers, 
+					pushedNumberLength << 1);
+		}
+		final long[] saved = pushedNumbers;
+		final int i = pushedNumberLength;
+		saved[i] = numberMantissa;
+		saved[i + 1] = numberStart;
+		saved[i + 2] = (long) numberDigits << 32 | numberDigitCount;
+		saved[i + 3] = (long) numberFractionDigits << 1 
+				| (numberHasDecimal ? 1 : 0);
+		pushedNumberLength += NUMBER_STATE;
+		clearNumber();
+	}
+
+	/**
+	 * Applies the waiting operators of the innermost open group that bind
+	 * at least as tightly as the provided operator, or all of them if it
+	 * is null.
+	 *
+	 * @return the number of waiting operators applied.
+	 */
+	private int reduce(final Operator operator) {
+		int reductions = 0;
+		while (operatorCount > 0 && operators[operatorCount - 1] != null
+			&& (operator == null 
+				|| operators[operatorCount - 1].appliesBefore(operator))) {
+			final Operator applied = operators[--operatorCount];
+			if (undoOperatorCount == undoOperators.length) {
+				undoOperators = Arrays.copyOf(undoOperators, 
+						undoOperatorCount << 1);
+			}
+			undoOperators[undoOperatorCount++] = applied;
+			if (applied.isUnary()) {
+				final double operand = operands.pop();
+				undoOperands.push(operand);
+				operands.push(applied.apply(operand));
+			} else {
+				final double right = operands.pop();
+				final double left = operands.pop();
+				undoOperands.push(left);
+				undoOperands.push(right);
+				operands.push(applied.apply(left, right));
+			}
+			reductions++;
+		}
+		return reductions;
+	}
+
+	/**
+	 * Pushes an operator, or null for a left parenthesis.
+	 */
+	private void push(final Operator operator) {
+		if (operatorCount == operators.length) {
+			operators = Arrays.copyOf(operators, operatorCount << 1);
+		}
+		operators[operatorCount++] = operator;
+	}
+
+	/**
+	 * Restores the operators applied by a keystroke and their operands.
+	 */
+	private void unreduce(final int reductions) {
+		for (int i = reductions; i > 0; i--) {
+			operands.pop();
+			final Operator restored = undoOperators[--undoOperatorCount];
+			operators[operatorCount++] = restored;
+			if (restored.isUnary()) {
+				operands.push(undoOperands.pop());
+			} else {
+				final double right = undoOperands.pop();
+				operands.push(undoOperands.pop());
+				operands.push(right);
+			}
+		}
+	}
+
+	/**
+	 * Pops the number pushed by a keystroke, so it is being typed again.
+	 */
+	private void popNumber() {
+		operands.pop();
+		pushedNumberLength -= NUMBER_STATE;
+		final long[] saved = pushedNumbers;
+		final int i = pushedNumberLength;
+		numberMantissa = saved[i];
+		numberStart = (int) saved[i + 1];
+		numberDigits = (int) (saved[i + 2] >>> 32);
+		numberDigitCount = (int) saved[i + 2];
+		numberFractionDigits = (int) (saved[i + 3] >>> 1);
+		numberHasDecimal = (saved[i + 3] & 1) != 0;
+	}
+
+	/**
+	 * Updates the state for the last character just removed from the input.
+	 */
+	public void removeLast() {
+		final byte kind = journalKinds[--journalLength];
+		final int reductions = journalReductions[journalLength];
+		switch (kind) {
+			case INVALID:
+				invalidCount--;
+				break;
+			case NUMBER:
+				if (numberStart == input.length()) {
+					clearNumber();
+				} else {
+					removeFromNumber((char) reductions);
+				}
+				break;
+			case NAME:
+				if (nameStart == input.length()) {
+					nameStart = -1;
+				}
+				break;
+			case OPEN:
+				operatorCount--;
+				openCount--;
+				break;
+			case FUNCTION:
+				operatorCount -= 2;
+				openCount--;
+				nameStart = findNameStart(input.length());
+				break;
+			case NEGATE_OPEN:
+				operatorCount -= 2;
+				openCount--;
+				restoreSign();
+				break;
+			case NEGATE_NAME:
+				operatorCount--;
+				nameStart = -1;
+				restoreSign();
+				break;
+			case CLOSE:
+			case CLOSE_NUMBER:
+				push(null);
+				openCount++;
+				unreduce(reductions);
+				if (kind == CLOSE_NUMBER) {
+					popNumber();
+				}
+				break;
+			default:
+				operatorCount--;
+				unreduce(reductions);
+				if (kind == OPERATOR) {
+					popNumber();
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Returns the result of the expression typed so far, as if every open
+	 * group were closed. A trailing operator, and the trailing left
+	 * parentheses, functions and name that follow it, are ignored.
+	 *
+	 * @return the running result, or NaN if nothing has been typed or the
+	 * 	   expression is invalid.
+	 */
+	public double getPreview() {
+		if (invalidCount > 0) {
+			return Double.NaN;
+		}
+		int top = operatorCount - 1;
+		int operand = operands.size() - 1;
+		double result;
+		if (numberStart >= 0 && numberDigitCount > 0) {
+			result = numberValue(input.length());
+		} else {
+			if (!isAfterClose()) {
+				while (top >= 0 && (operators[top] == null 
+						|| operators[top].isUnary())) {
+					top--;
+				}
+				top--;
+			}
+			if (operand < 0) {
+				return Double.NaN;
+			}
+			result = operands.get(operand--);
+		}
+		for (int i = top; i >= 0; i--) {
+			if (operators[i] == null) {
+				continue;
+			}
+			result = operators[i].isUnary() ? operators[i].apply(result)
+				: operators[i].apply(operands.get(operand--), result);
+		}
+		return result;
+	}
+
+	/**
+	 * Discards all state.
+	 */
+	public void clear() {
+		operands.clear();
+		undoOperands.clear();
+		operatorCount = 0;
+		openCount = 0;
+		undoOperatorCount = 0;
+		journalLength = 0;
+		invalidCount = 0;
+		pushedNumberLength = 0;
+		clearNumber();
+		nameStart = -1;
+	}
+
+	/**
+	 * Returns the start of the function name that ends at the provided
+	 * index.
+	 */
+	private int findNameStart(final int end) {
+		int start = end;
+		while (start > 0 && isLetter(input.charAt(start - 1))) {
+			start--;
+		}
+		return start;
+	}
+
+	/**
+	 * Returns the value of the number being typed, which ends at the
+	 * provided index. Only a number with more digits than a long holds
+	 * exactly is parsed from its text.
+	 */
+	private double numberValue(final int end) {
+		final double value = Lexer.exactValue(numberMantissa, numberDigits,
+				numberFractionDigits);
+		if (value != value) {
+			return Double.parseDouble(
+				input.subSequence(numberStart, end).toString());
+		}
+		return input.charAt(numberStart) == NEGATIVE ? -value : value;
+	}
+
+	private static boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isLetter(final char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+}
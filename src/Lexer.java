@@ -0,0 +1,632 @@
+/*H*****************************************************************************
+ * Filename: Lexer.java
+ * Description: Splits an infix expression into operand, variable and
+ * 		operator tokens in a single streaming pass.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Added variables.
+ * 	     2026-10-18 Streams from a CharSequence, Reader or CharBuffer
+ * 	     		and reads negative numbers.
+ * 	     2026-10-18 Reads ASCII bytes from a ByteBuffer and can be reset.
+ * 	     2026-10-18 Parenthesis tokens.
+ * 	     2026-10-18 Any input can be reset.
+ * 	     2026-10-18 Function names.
+ * 	     2026-10-18 Variable name check.
+ * 	     2026-10-18 Whitespace that separates tokens.
+ * 	     2026-10-18 Shared exact conversion of short numbers.
+ * 	     2026-10-18 Negation of groups, functions and variables.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Reads the tokens of an infix expression one at a time. Operands are
+ * decimal numbers, variables are names made of letters, digits and
+ * underscores that do not start with a digit, operators are the symbols of
+ * {@link Operator}, parentheses group subexpressions, and whitespace between
+ * tokens is ignored. A name where an operand is expected that is the name
+ * of a function is that function rather than a variable. A minus sign
+ * where an operand is expected is the sign of the number that follows it
+ * ({@link Symbol#NEGATIVE}) rather than subtraction, or, directly before a
+ * left parenthesis or a name, the {@link Operator#NEGATION} of the group,
+ * function or variable that follows.
+ *
+ * <p>The input is read once, in blocks, into a small window, so a Reader,
+ * CharBuffer or ByteBuffer of any length is tokenized in constant memory.
+ * When a token runs past the end of the window, the token is moved to the
+ * front of the window before the next block is read, so the characters of
+ * the current token are always contiguous and never copied elsewhere.
+ * Bytes are read as ASCII characters straight from the buffer without
+ * decoding. A lexer can be reset onto another input, or another range of
+ * the same buffer, keeping its window, so one lexer serves every line of a
+ * mapped file or every expression of a long running caller.
+ *
+ * <p>The lexer exposes the current token through its accessors instead of
+ * allocating a token object, and numbers of up to 15 significant digits are
+ * converted to doubles directly from their digits without building a 
+ * string.
+ */
+public class Lexer {
+
+	/**
+	 * The number of characters read from the input at a time.
+	 */
+	private static final int WINDOW_SIZE = 4096;
+
+	/**
+	 * The most significant digits a number can have and still be converted
+	 * exactly from a long.
+	 */
+	static final int MAX_EXACT_DIGITS = 15;
+
+	/**
+	 * Powers of ten that are exactly representable as doubles.
+	 */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * The character that separates the integer and fraction digits.
+	 */
+	private static final char DECIMAL = Symbol.DECIMAL.getSymbol().charAt(0);
+
+	/**
+	 * The character that makes a number negative.
+	 */
+	private static final char NEGATIVE = 
+				Symbol.NEGATIVE.getSymbol().charAt(0);
+
+	private static final char LEFT_PARENTHESIS = 
+				Symbol.LEFT_PARENTHESIS.getSymbol().charAt(0);
+
+	private static final char RIGHT_PARENTHESIS = 
+				Symbol.RIGHT_PARENTHESIS.getSymbol().charAt(0);
+
+	/**
+	 * The input when it is a character sequence, otherwise null.
+	 */
+	private CharSequence sequence;
+
+	/**
+	 * The index of the next character to be read from the sequence.
+	 */
+	private int sequencePosition;
+
+	/**
+	 * The input when it is a reader, otherwise null.
+	 */
+	private Reader reader;
+
+	/**
+	 * The input when it is a character buffer, otherwise null.
+	 */
+	private CharBuffer charBuffer;
+
+	/**
+	 * The input when it is a byte buffer, otherwise null.
+	 */
+	private ByteBuffer bytes;
+
+	/**
+	 * The index of the next byte to be read from the byte buffer.
+	 */
+	private int bytesPosition;
+
+	/**
+	 * The index after the last byte to be read from the byte buffer.
+	 */
+	private int bytesLimit;
+
+	/**
+	 * The block of input currently being read, allocated on the first read
+	 * and no larger than a character sequence input unless a token needs
+	 * more room.
+	 */
+	private char[] window;
+
+	/**
+	 * The number of valid characters in the window.
+	 */
+	private int windowLength;
+
+	/**
+	 * The index of the next character to be read from the window.
+	 */
+	private int windowPosition;
+
+	/**
+	 * The index in the input of the first character of the window.
+	 */
+	private long windowStart;
+
+	/**
+	 * The index in the window of the first character of the current token,
+	 * or -1 between tokens.
+	 */
+	private int tokenOffset;
+
+	/**
+	 * True once the input has no more characters to give.
+	 */
+	private boolean exhausted;
+
+	/**
+	 * The characters of the current token, filled on request.
+	 */
+	private final StringBuilder text;
+
+	/**
+	 * True when the next token must be an operand.
+	 */
+	private boolean expectOperand;
+
+	/**
+	 * The kind of the current token.
+	 */
+	private Token.Kind kind;
+
+	/**
+	 * The value of the current operand token.
+	 */
+	private double value;
+
+	/**
+	 * The operator of the current operator token.
+	 */
+	private Operator operator;
+
+	/**
+	 * Constructs a lexer that reads a character sequence.
+	 *
+	 * @param  input  the expression to be read.
+	 */
+	public Lexer(final CharSequence input) {
+		this();
+		sequence = input;
+	}
+
+	/**
+	 * Constructs a lexer that reads from a reader. The reader is not
+	 * closed.
+	 *
+	 * @param  input  the expression to be read.
+	 */
+	public Lexer(final Reader input) {
+		this();
+		reader = input;
+	}
+
+	/**
+	 * Constructs a lexer that reads the remaining characters of a buffer
+	 * and advances its position.
+	 *
+	 * @param  input  the expression to be read.
+	 */
+	public Lexer(final CharBuffer input) {
+		this();
+		charBuffer = input;
+	}
+
+	/**
+	 * Constructs a lexer that reads the remaining bytes of a buffer as
+	 * ASCII characters. The position of the buffer is not changed.
+	 *
+	 * @param  input  the expression to be read.
+	 */
+	public Lexer(final ByteBuffer input) {
+		this();
+		reset(input, input.position(), input.limit());
+	}
+
+	private Lexer() {
+		text = new StringBuilder();
+		tokenOffset = -1;
+		expectOperand = true;
+	}
+
+	/**
+	 * Starts reading a character sequence. The window of this lexer is
+	 * reused.
+	 *
+	 * @param  input  the expression to be read.
+	 */
+	public void reset(final CharSequence input) {
+		clearInput();
+		sequence = input;
+		restart();
+	}
+
+	/**
+	 * Starts reading from a reader. The window of this lexer is reused and
+	 * the reader is not closed.
+	 *
+	 * @param  input  the expression to be read.
+	 */
+	public void reset(final Reader input) {
+		clearInput();
+		reader = input;
+		restart();
+	}
+
+	/**
+	 * Starts reading the remaining characters of a buffer. The window of 
+	 * this lexer is reused.
+	 *
+	 * @param  input  the expression to be read.
+	 */
+	public void reset(final CharBuffer input) {
+		clearInput();
+		charBuffer = input;
+		restart();
+	}
+
+	/**
+	 * Starts reading a range of a byte buffer as ASCII characters. The 
+	 * window of this lexer is reused. The position of the buffer is not
+	 * changed.
+	 *
+	 * @param  input  the buffer holding the expression.
+	 * @param  from   the index of the first byte, inclusive.
+	 * @param  to     the index of the last byte, exclusive.
+	 */
+	public void reset(final ByteBuffer input, final int from, final int to) {
+		clearInput();
+		bytes = input;
+		bytesPosition = from;
+		bytesLimit = to;
+		restart();
+	}
+
+	private void clearInput() {
+		sequence = null;
+		reader = null;
+		charBuffer = null;
+		bytes = null;
+	}
+
+	/**
+	 * Forgets the window contents and token state of the previous input.
+	 */
+	private void restart() {
+		sequencePosition = 0;
+		windowStart = 0;
+		windowLength = 0;
+		windowPosition = 0;
+		tokenOffset = -1;
+		exhausted = false;
+		expectOperand = true;
+	}
+
+	/**
+	 * Advances to the next token.
+	 *
+	 * @return true if a token was read, false at the end of the input.
+	 * @throws IllegalArgumentException if the input contains a character
+	 * 				    that does not start a token.
+	 * @throws UncheckedIOException if reading from a reader fails.
+	 */
+	public boolean next() {
+		tokenOffset = -1;
+		int c = peek();
+		while (isWhitespace(c)) {
+			windowPosition++;
+			c = peek();
+		}
+		if (c < 0) {
+			return false;
+		}
+		tokenOffset = windowPosition;
+		if (expectOperand && c == NEGATIVE) {
+			windowPosition++;
+			c = peek();
+			if (c == LEFT_PARENTHESIS || isNameStart(c)) {
+				operator = Operator.NEGATION;
+				kind = Token.Kind.OPERATOR;
+				return true;
+			}
+			if (!isDigit(c) && c != DECIMAL) {
+				throw new IllegalArgumentException("Expected a number, "
+						+ "group or name after '-' at index " 
+						+ getTokenStart());
+			}
+		}
+		if (isDigit(c) || c == DECIMAL) {
+			readNumber();
+			kind = Token.Kind.OPERAND;
+			expectOperand = false;
+			return true;
+		}
+		if (isNameStart(c)) {
+			do {
+				windowPosition++;
+				c = peek();
+			} while (isNamePart(c));
+			operator = expectOperand ? Operator.fromName(window, 
+					tokenOffset, windowPosition) : null;
+			kind = operator != null ? Token.Kind.OPERATOR 
+					: Token.Kind.VARIABLE;
+			expectOperand = operator != null;
+			return true;
+		}
+		if (c == LEFT_PARENTHESIS || c == RIGHT_PARENTHESIS) {
+			windowPosition++;
+			kind = c == LEFT_PARENTHESIS ? Token.Kind.LEFT_PARENTHESIS
+					: Token.Kind.RIGHT_PARENTHESIS;
+			expectOperand = c == LEFT_PARENTHESIS;
+			return true;
+		}
+		operator = Operator.fromSymbol((char) c);
+		if (operator == null) {
+			throw new IllegalArgumentException("Unexpected '" + (char) c 
+					+ "' at index " + getTokenStart());
+		}
+		windowPosition++;
+		kind = Token.Kind.OPERATOR;
+		expectOperand = true;
+		return true;
+	}
+
+	/**
+	 * Reads a number made of digits and at most one decimal point. The
+	 * digits are accumulated into a long while that stays exact.
+	 */
+	private void readNumber() {
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean decimal = false;
+		for (int c = peek(); ; c = peek()) {
+			if (isDigit(c)) {
+				if (mantissa != 0 || c != '0') {
+					digits++;
+				}
+				if (digits <= MAX_EXACT_DIGITS) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (decimal) {
+						fractionDigits++;
+					}
+				}
+			} else if (c == DECIMAL && !decimal) {
+				decimal = true;
+			} else {
+				break;
+			}
+			windowPosition++;
+		}
+		final boolean negative = window[tokenOffset] == NEGATIVE;
+		final int signLength = negative ? 1 : 0;
+		final int length = windowPosition - tokenOffset - signLength;
+		if (length == 1 && decimal) {
+			throw new IllegalArgumentException("Expected a digit at index "
+					+ getTokenStart());
+		}
+		value = exactValue(mantissa, digits, fractionDigits);
+		if (value != value) {
+			value = Double.parseDouble(new String(window, 
+					tokenOffset + signLength, length));
+		}
+		if (negative) {
+			value = -value;
+		}
+	}
+
+	/**
+	 * Returns the value of a number from its first significant digits
+	 * held in a long, when that value is exact.
+	 *
+	 * @param  mantissa        the first {@link #MAX_EXACT_DIGITS}
+	 * 			   significant digits.
+	 * @param  digits          the number of significant digits.
+	 * @param  fractionDigits  the number of the digits in the mantissa
+	 * 			   that follow the decimal point.
+	 * @return the value, or NaN if the number has too many digits and
+	 * 	   must be parsed from its text.
+	 */
+	static double exactValue(final long mantissa, final int digits,
+			final int fractionDigits) {
+		if (digits <= MAX_EXACT_DIGITS 
+				&& fractionDigits < POWERS_OF_TEN.length) {
+			return mantissa / POWERS_OF_TEN[fractionDigits];
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Returns the next character without consuming it, or -1 at the end
+	 * of the input.
+	 */
+	private int peek() {
+		if (windowPosition == windowLength && !fill()) {
+			return -1;
+		}
+		return window[windowPosition];
+	}
+
+	/**
+	 * Reads the next block of input into the window. The part of the
+	 * current token already in the window is moved to its front first,
+	 * and the window grows if the token fills it.
+	 *
+	 * @return false if the input has no more characters.
+	 */
+	private boolean fill() {
+		if (exhausted) {
+			return false;
+		}
+		final int keepFrom = tokenOffset >= 0 ? tokenOffset : windowLength;
+		final int keep = windowLength - keepFrom;
+		final int size = sequence == null ? WINDOW_SIZE 
+			: Math.max(1, Math.min(WINDOW_SIZE, sequence.length()));
+		if (window == null || (keep == 0 && window.length < size)) {
+			window = new char[size];
+		} else if (keep == window.length) {
+			final char[] larger = new char[window.length << 1];
+			System.arraycopy(window, keepFrom, larger, 0, keep);
+			window = larger;
+		} else if (keep > 0) {
+			System.arraycopy(window, keepFrom, window, 0, keep);
+		}
+		windowStart += keepFrom;
+		if (tokenOffset >= 0) {
+			tokenOffset = 0;
+		}
+		windowPosition = keep;
+		final int read = read(keep, window.length - keep);
+		windowLength = keep + read;
+		exhausted = read == 0;
+		return !exhausted;
+	}
+
+	/**
+	 * Reads characters from the input into the window.
+	 *
+	 * @return the number of characters read, 0 at the end of the input.
+	 */
+	private int read(final int offset, final int length) {
+		if (sequence != null) {
+			final int end = Math.min(sequence.length(), 
+					sequencePosition + length);
+			final int count = end - sequencePosition;
+			if (sequence instanceof String) {
+				((String) sequence).getChars(sequencePosition, end, 
+						window, offset);
+			} else {
+				for (int i = 0; i < count; i++) {
+					window[offset + i] = 
+						sequence.charAt(sequencePosition + i);
+				}
+			}
+			sequencePosition = end;
+			return count;
+		}
+		if (bytes != null) {
+			final int count = Math.min(bytesLimit - bytesPosition, length);
+			for (int i = 0; i < count; i++) {
+				window[offset + i] = 
+					(char) (bytes.get(bytesPosition + i) & 0xFF);
+			}
+			bytesPosition += count;
+			return count;
+		}
+		if (charBuffer != null) {
+			final int count = Math.min(charBuffer.remaining(), length);
+			charBuffer.get(window, offset, count);
+			return count;
+		}
+		try {
+			return Math.max(0, reader.read(window, offset, length));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns true if a text is read as a single variable: a name that is
+	 * not the name of a function.
+	 *
+	 * @param  text  the text to be checked.
+	 * @return true if the text is a variable name.
+	 */
+	static boolean isVariableName(final CharSequence text) {
+		final int length = text.length();
+		if (length == 0 || !isNameStart(text.charAt(0))) {
+			return false;
+		}
+		for (int i = 1; i < length; i++) {
+			if (!isNamePart(text.charAt(i))) {
+				return false;
+			}
+		}
+		return Operator.fromName(text, 0, length) == null;
+	}
+
+	/**
+	 * Returns true if whitespace between two characters changes how they
+	 * are read: removing it would join two numbers or names into one, or
+	 * turn a minus sign and the number, group or name after it into a
+	 * negation.
+	 * Any other whitespace between tokens can be removed without changing
+	 * the tokens.
+	 *
+	 * @param  previous  the character before the whitespace.
+	 * @param  next      the character after the whitespace.
+	 * @return true if the whitespace must be kept.
+	 */
+	static boolean separates(final int previous, final int next) {
+		return (isNamePart(previous) || previous == DECIMAL)
+				&& (isNamePart(next) || next == DECIMAL)
+			|| previous == NEGATIVE && (isNamePart(next) 
+				|| next == DECIMAL || next == LEFT_PARENTHESIS);
+	}
+
+	/**
+	 * Returns true if a character is whitespace between tokens.
+	 */
+	static boolean isWhitespace(final int c) {
+		return c == ' ' || (c >= '\t' && c <= '\r') 
+			|| (c > 127 && Character.isWhitespace(c));
+	}
+
+	private static boolean isDigit(final int c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isNameStart(final int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+
+	private static boolean isNamePart(final int c) {
+		return isNameStart(c) || isDigit(c);
+	}
+
+	/**
+	 * Returns the kind of the current token.
+	 */
+	public Token.Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the value of the current operand token.
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the characters of the current token. The sequence is reused
+	 * by the next token.
+	 */
+	public CharSequence getText() {
+		text.setLength(0);
+		text.append(window, tokenOffset, windowPosition - tokenOffset);
+		return text;
+	}
+
+	/**
+	 * Returns the name of the current variable token.
+	 */
+	public String getName() {
+		return new String(window, tokenOffset, windowPosition - tokenOffset);
+	}
+
+	/**
+	 * Returns the operator of the current operator token.
+	 */
+	public Operator getOperator() {
+		return operator;
+	}
+
+	/**
+	 * Returns the index of the first character of the current token.
+	 */
+	public long getTokenStart() {
+		return windowStart + tokenOffset;
+	}
+}
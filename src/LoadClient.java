@@ -0,0 +1,205 @@
+/*H*****************************************************************************
+ * Filename: LoadClient.java
+ * Description: Generates load against a local ServerMain and reports
+ * 		throughput and latency percentiles.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Load generator for {@link ServerMain}. Each connection has a sender
+ * thread that writes the expression repeatedly, keeping at most the given
+ * number of requests in flight, and a receiver thread that reads the
+ * answers and records the time from sending each request to receiving its
+ * answer. When every connection is done, the total throughput and the
+ * p50, p99 and maximum latencies are printed.
+ *
+ * <p>Usage: java -cp calculator.jar LoadClient [-p port] [-n connections]
+ * 		[-r requests] [-d depth] [expression]
+ */
+public class LoadClient {
+
+	/**
+	 * The expression sent when none is given.
+	 */
+	private static final String DEFAULT_EXPRESSION = "3+4*2/1-5^2";
+
+	/**
+	 * One connection to the server.
+	 */
+	private static final class Connection {
+
+		private final Socket socket;
+
+		/**
+		 * The time each request was sent, by request number. Written by
+		 * the sender and read by the receiver.
+		 */
+		private final AtomicLongArray sent;
+
+		/**
+		 * The latency of each request, by request number.
+		 */
+		private final long[] latencies;
+
+		/**
+		 * Permits for the requests that may still be sent before an
+		 * answer arrives.
+		 */
+		private final Semaphore window;
+
+		private final String expression;
+
+		/**
+		 * The number of answers that were "error".
+		 */
+		private int errors;
+
+		Connection(final int port, final int requests, final int depth,
+				final String expression) throws IOException {
+			socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			socket.setTcpNoDelay(true);
+			sent = new AtomicLongArray(requests);
+			latencies = new long[requests];
+			window = new Semaphore(depth);
+			this.expression = expression;
+		}
+
+		/**
+		 * Sends every request, flushing whenever the window is full.
+		 */
+		void send() {
+			try {
+				final BufferedWriter out = new BufferedWriter(
+					new OutputStreamWriter(socket.getOutputStream(),
+						StandardCharsets.US_ASCII));
+				for (int i = 0; i < sent.length(); i++) {
+					if (!window.tryAcquire()) {
+						out.flush();
+						window.acquire();
+					}
+					sent.set(i, System.nanoTime());
+					out.write(expression);
+					out.write('\n');
+				}
+				out.flush();
+				socket.shutdownOutput();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Receives every answer and records its latency.
+		 */
+		void receive() {
+			try (BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(),
+						StandardCharsets.US_ASCII))) {
+				for (int i = 0; i < latencies.length; i++) {
+					final String answer = in.readLine();
+					if (answer == null) {
+						throw new IOException("Connection closed "
+							+ "after " + i + " answers");
+					}
+					latencies[i] = System.nanoTime() - sent.get(i);
+					if (answer.equals("error")) {
+						errors++;
+					}
+					window.release();
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = ServerMain.DEFAULT_PORT;
+		int connections = 4;
+		int requests = 100_000;
+		int depth = 64;
+		int argument = 0;
+		while (args.length - argument > 1 && args[argument].startsWith("-")) {
+			final int value = Integer.parseInt(args[argument + 1]);
+			if (args[argument].equals("-p")) {
+				port = value;
+			} else if (args[argument].equals("-n")) {
+				connections = value;
+			} else if (args[argument].equals("-r")) {
+				requests = value;
+			} else if (args[argument].equals("-d")) {
+				depth = value;
+			} else {
+				break;
+			}
+			argument += 2;
+		}
+		if (args.length - argument > 1 || connections < 1 || requests < 1
+				|| depth < 1) {
+			System.err.println("Usage: java LoadClient [-p port] "
+				+ "[-n connections] [-r requests] [-d depth] "
+				+ "[expression]");
+			System.exit(1);
+		}
+		final String expression = args.length > argument
+				? args[argument] : DEFAULT_EXPRESSION;
+		final Connection[] clients = new Connection[connections];
+		for (int i = 0; i < connections; i++) {
+			clients[i] = new Connection(port, requests, depth, expression);
+		}
+		final Thread[] threads = new Thread[connections * 2];
+		final long start = System.nanoTime();
+		for (int i = 0; i < connections; i++) {
+			threads[2 * i] = new Thread(clients[i]::send, "send");
+			threads[2 * i + 1] = new Thread(clients[i]::receive,
+						"receive");
+			threads[2 * i].start();
+			threads[2 * i + 1].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		final long[] latencies = new long[connections * requests];
+		int errors = 0;
+		for (int i = 0; i < connections; i++) {
+			System.arraycopy(clients[i].latencies, 0, latencies,
+					i * requests, requests);
+			errors += clients[i].errors;
+			clients[i].socket.close();
+		}
+		Arrays.sort(latencies);
+		System.out.printf("%d requests, %d errors, %d connections, depth "
+				+ "%d in %.2f s (%.0f requests/s)%n",
+				latencies.length, errors, connections, depth,
+				seconds, latencies.length / seconds);
+		System.out.printf("latency p50 %.1f us, p99 %.1f us, max %.1f us%n",
+				percentile(latencies, 0.50) / 1e3,
+				percentile(latencies, 0.99) / 1e3,
+				latencies[latencies.length - 1] / 1e3);
+	}
+
+	/**
+	 * Returns the nearest rank percentile of sorted values.
+	 */
+	private static long percentile(final long[] sorted, final double p) {
+		final int rank = (int) Math.ceil(p * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+}
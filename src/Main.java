@@ -2,17 +2,78 @@
  * Filename: Main.java
  * Description: Starts the GUI.
  * Modified: 2021-05-05	Added header comments.
+ * 	     2026-10-18 Startup timing mode.
  * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
  ****************************************************************************H*/
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import javax.swing.*;
 
 /**
  * Initializes starts the calculator GUI.
  */
 public class Main {
+
+	/**
+	 * The system property that, when true, makes the calculator print
+	 * {@link #FIRST_FRAME} and exit once its first frame is painted, for
+	 * timing startup and for recording a class data sharing archive.
+	 */
+	public static final String EXIT_AFTER_FIRST_FRAME_PROPERTY =
+			"calculator.exitAfterFirstFrame";
+
+	/**
+	 * The line printed once the first frame is painted.
+	 */
+	public static final String FIRST_FRAME = "first frame";
+
 	public static void main(String[] args) {
-		EventQueue.invokeLater(MainFrame::new);
+		if (Boolean.getBoolean(EXIT_AFTER_FIRST_FRAME_PROPERTY)) {
+			EventQueue.invokeLater(Main::paintFirstFrame);
+		} else {
+			EventQueue.invokeLater(MainFrame::new);
+		}
 	}
-}
 
+	/**
+	 * Paints the first frame, then reports it and exits. Without a display
+	 * the calculator is laid out and painted off screen instead, which
+	 * loads and runs the same code but for the window itself.
+	 */
+	private static void paintFirstFrame() {
+		final Runnable exit = () -> {
+			System.out.println(FIRST_FRAME);
+			System.exit(0);
+		};
+		if (!GraphicsEnvironment.isHeadless()) {
+			new MainFrame(exit);
+			return;
+		}
+		final ButtonPanel buttonPanel = new ButtonPanel();
+		final JPanel content = MainFrame.createContent(buttonPanel);
+		final Dimension size = MainFrame.getCalculatorSize(buttonPanel);
+		content.setSize(size);
+		layOut(content);
+		final BufferedImage image = new BufferedImage(size.width,
+				size.height, BufferedImage.TYPE_INT_RGB);
+		final Graphics graphics = image.createGraphics();
+		content.printAll(graphics);
+		graphics.dispose();
+		exit.run();
+	}
+
+	/**
+	 * Lays out a component and everything in it, as validating would for
+	 * a component that is on screen.
+	 */
+	private static void layOut(final Component component) {
+		if (component instanceof Container) {
+			final Container container = (Container) component;
+			container.doLayout();
+			for (Component child : container.getComponents()) {
+				layOut(child);
+			}
+		}
+	}
+}
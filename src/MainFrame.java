@@ -4,6 +4,9 @@
  * 		components.
  * Modified: 2021-05-05	Added header comments.
  *	     2021-06-05	Refactored and added javadoc.
+ * 	     2026-10-18 Taller frame for the parenthesis row.
+ * 	     2026-10-18 History panel under the buttons.
+ * 	     2026-10-18 Shown once built, with a hook for the first paint.
  * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
  ****************************************************************************H*/
 
@@ -23,40 +26,94 @@ public class MainFrame extends JFrame  {
 	/**
 	 * The height of the calculator GUI.
 	 */
-	private static final int CALCULATOR_HEIGHT = 500;
+	private static final int CALCULATOR_HEIGHT = 580;
+
+	/**
+	 * The height added for the history panel.
+	 */
+	private static final int HISTORY_HEIGHT = 110;
+
+	/**
+	 * Runs once the frame is first painted, or null.
+	 */
+	private Runnable firstPaint;
 
 	/**
 	 * Initializes and formats all calculator components.
 	 */
 	public MainFrame() {
+		this(null);
+	}
+
+	/**
+	 * Initializes and formats all calculator components, then runs a task
+	 * on the event dispatch thread once the frame is first painted.
+	 *
+	 * @param  firstPaint  run after the first paint, or null.
+	 */
+	public MainFrame(final Runnable firstPaint) {
+		this.firstPaint = firstPaint;
 		setTitle("Calculator");
-		setVisible(true);
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		setSize(CALCULATOR_WIDTH, CALCULATOR_HEIGHT);
 		setResizable(false);
+		final ButtonPanel buttonPanel = new ButtonPanel();
+		setContentPane(createContent(buttonPanel));
+		setSize(getCalculatorSize(buttonPanel));
 		setPositionOnScreen();
-		setupComponents();
+		// Shown last, so the first paint is of the finished frame rather
+		// than of an empty one that is then resized and filled in.
+		setVisible(true);
+	}
+
+	/**
+	 * Runs the first paint task, if any, after the frame is painted.
+	 *
+	 * @param  graphics  the graphics context to paint in.
+	 */
+	@Override
+	public void paint(final Graphics graphics) {
+		super.paint(graphics);
+		if (firstPaint != null) {
+			EventQueue.invokeLater(firstPaint);
+			firstPaint = null;
+		}
 	}
 
 	/**
 	 * Sets up the initial position of the GUI on the screen.
 	 */
 	private void setPositionOnScreen() {
-		final int screenWidth = Toolkit.getDefaultToolkit().getScreenSize().width;
-		final int screenHeight = Toolkit.getDefaultToolkit().getScreenSize().height;
-		final int xCoordinate = screenWidth/2 - CALCULATOR_WIDTH/2;
-		final int yCoordinate = screenHeight/2 - CALCULATOR_HEIGHT/2;
+		final Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+		final int xCoordinate = screen.width/2 - getWidth()/2;
+		final int yCoordinate = screen.height/2 - getHeight()/2;
 		setLocation(xCoordinate, yCoordinate);
 	}
 
 	/**
 	 * Sets up and positions on Calculator GUI components.
+	 *
+	 * @param  buttonPanel  the buttons of the calculator.
+	 * @return the panel holding all calculator components.
 	 */
-	private void setupComponents() {
-		setLayout(new BorderLayout());
-		ButtonPanel buttonPanel = new ButtonPanel();
+	public static JPanel createContent(final ButtonPanel buttonPanel) {
+		final JPanel content = new JPanel(new BorderLayout());
 		DisplayPanel inputPrompt = buttonPanel.getDisplayPanel();
-		add(inputPrompt, BorderLayout.NORTH);
-		add(buttonPanel, BorderLayout.CENTER);
+		content.add(inputPrompt, BorderLayout.NORTH);
+		content.add(buttonPanel, BorderLayout.CENTER);
+		if (buttonPanel.getHistoryPanel() != null) {
+			content.add(buttonPanel.getHistoryPanel(), BorderLayout.SOUTH);
+		}
+		return content;
+	}
+
+	/**
+	 * Returns the size of the calculator GUI.
+	 *
+	 * @param  buttonPanel  the buttons of the calculator.
+	 * @return the size of the frame.
+	 */
+	public static Dimension getCalculatorSize(final ButtonPanel buttonPanel) {
+		return new Dimension(CALCULATOR_WIDTH, CALCULATOR_HEIGHT
+				+ (buttonPanel.getHistoryPanel() != null ? HISTORY_HEIGHT : 0));
 	}
 }
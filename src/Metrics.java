@@ -0,0 +1,279 @@
+/*H*****************************************************************************
+ * Filename: Metrics.java
+ * Description: Counters and latency histograms of expression evaluation,
+ * 		exposed through JMX and a periodic text dump.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records what the evaluators do: how often each operator is applied, how
+ * many tokens each expression has, how long each evaluation takes, result
+ * cache hits and misses, bytecode promotions and errors.
+ *
+ * <p>Metrics are off unless the {@code calculator.metrics} system property
+ * is true. Every call site is guarded by {@link #ENABLED}, a static final
+ * field that the JIT treats as a constant, so with metrics off the guarded
+ * code, including the clock reads around it, is compiled away. Evaluators
+ * count applied operators in a plain array of their own and add it here
+ * once per expression, so the shared counters are touched a few times per
+ * expression rather than once per token.
+ *
+ * <p>With metrics on, the metrics are registered with the platform MBean
+ * server as {@link #OBJECT_NAME} when this class is first used, and if the
+ * {@code calculator.metrics.dump} property is a number of seconds they are
+ * printed to standard error at that period.
+ */
+public final class Metrics implements MetricsMXBean {
+
+	/**
+	 * True if metrics are recorded.
+	 */
+	public static final boolean ENABLED =
+			Boolean.getBoolean("calculator.metrics");
+
+	/**
+	 * The name the metrics are registered under.
+	 */
+	public static final String OBJECT_NAME = "calculator:type=Metrics";
+
+	/**
+	 * The system property with the dump period in seconds.
+	 */
+	private static final String DUMP_PROPERTY = "calculator.metrics.dump";
+
+	private static final Operator[] OPERATORS = Operator.values();
+
+	private static final LongAdder EVALUATIONS = new LongAdder();
+
+	private static final LongAdder ERRORS = new LongAdder();
+
+	private static final LongAdder CACHE_HITS = new LongAdder();
+
+	private static final LongAdder CACHE_MISSES = new LongAdder();
+
+	private static final LongAdder PROMOTIONS = new LongAdder();
+
+	/**
+	 * The number of times each operator was applied, by ordinal.
+	 */
+	private static final LongAdder[] OPERATOR_COUNTS =
+			new LongAdder[OPERATORS.length];
+
+	private static final Histogram LATENCY = new Histogram();
+
+	private static final Histogram TOKENS = new Histogram();
+
+	static {
+		for (int i = 0; i < OPERATOR_COUNTS.length; i++) {
+			OPERATOR_COUNTS[i] = new LongAdder();
+		}
+		if (ENABLED) {
+			install();
+		}
+	}
+
+	private Metrics() {
+	}
+
+	/**
+	 * Registers the MBean and starts the periodic dump if one is
+	 * configured. Failing to register does not stop recording.
+	 */
+	private static void install() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+				new Metrics(), new ObjectName(OBJECT_NAME));
+		} catch (JMException | SecurityException e) {
+			System.err.println("Metrics not registered: " + e);
+		}
+		final long period = Long.getLong(DUMP_PROPERTY, 0);
+		if (period > 0) {
+			final ScheduledExecutorService dumper =
+				Executors.newSingleThreadScheduledExecutor(task -> {
+					final Thread thread = new Thread(task,
+							"metrics-dump");
+					thread.setDaemon(true);
+					return thread;
+				});
+			dumper.scheduleAtFixedRate(() -> print(System.err),
+					period, period, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Records a successful evaluation.
+	 *
+	 * @param  tokens  the number of tokens in the expression.
+	 * @param  nanos   how long the evaluation took.
+	 */
+	static void recordEvaluation(final int tokens, final long nanos) {
+		EVALUATIONS.increment();
+		TOKENS.record(tokens);
+		LATENCY.record(nanos);
+	}
+
+	/**
+	 * Records an expression that could not be evaluated.
+	 */
+	static void recordError() {
+		ERRORS.increment();
+	}
+
+	/**
+	 * Adds the operators an evaluator applied and clears its counts.
+	 *
+	 * @param  counts  the number of times each operator was applied, by
+	 * 		   ordinal.
+	 */
+	static void recordOperators(final long[] counts) {
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] != 0) {
+				OPERATOR_COUNTS[i].add(counts[i]);
+				counts[i] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Records a result cache lookup.
+	 *
+	 * @param  hit  true if the result was in the cache.
+	 */
+	static void recordCacheLookup(final boolean hit) {
+		(hit ? CACHE_HITS : CACHE_MISSES).increment();
+	}
+
+	/**
+	 * Records a compiled expression promoted to bytecode.
+	 */
+	static void recordPromotion() {
+		PROMOTIONS.increment();
+	}
+
+	/**
+	 * Prints every metric.
+	 *
+	 * @param  out  the stream the metrics are printed to.
+	 */
+	public static void print(final PrintStream out) {
+		out.print(format());
+		out.flush();
+	}
+
+	private static String format() {
+		final StringBuilder text = new StringBuilder();
+		text.append("evaluations ").append(EVALUATIONS.sum())
+			.append(" errors ").append(ERRORS.sum())
+			.append(" cache hits ").append(CACHE_HITS.sum())
+			.append(" misses ").append(CACHE_MISSES.sum())
+			.append(" promotions ").append(PROMOTIONS.sum())
+			.append('\n');
+		text.append("latency ns p50 ")
+			.append(LATENCY.getValueAtPercentile(50))
+			.append(" p99 ").append(LATENCY.getValueAtPercentile(99))
+			.append(" p99.9 ").append(LATENCY.getValueAtPercentile(99.9))
+			.append(" max ").append(LATENCY.getMax()).append('\n');
+		text.append("tokens p50 ").append(TOKENS.getValueAtPercentile(50))
+			.append(" p99 ").append(TOKENS.getValueAtPercentile(99))
+			.append(" max ").append(TOKENS.getMax())
+			.append(String.format(" mean %.1f", TOKENS.getMean()))
+			.append('\n');
+		text.append("operators");
+		for (final Operator operator : OPERATORS) {
+			text.append(' ').append(operator.getOperator()).append(' ')
+				.append(OPERATOR_COUNTS[operator.ordinal()].sum());
+		}
+		return text.append('\n').toString();
+	}
+
+	@Override
+	public long getEvaluationCount() {
+		return EVALUATIONS.sum();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return ERRORS.sum();
+	}
+
+	@Override
+	public long getCacheHitCount() {
+		return CACHE_HITS.sum();
+	}
+
+	@Override
+	public long getCacheMissCount() {
+		return CACHE_MISSES.sum();
+	}
+
+	@Override
+	public long getPromotionCount() {
+		return PROMOTIONS.sum();
+	}
+
+	@Override
+	public Map<String, Long> getOperatorCounts() {
+		final Map<String, Long> counts = new LinkedHashMap<>();
+		for (final Operator operator : OPERATORS) {
+			counts.put(operator.getOperator(),
+				OPERATOR_COUNTS[operator.ordinal()].sum());
+		}
+		return counts;
+	}
+
+	@Override
+	public double getMeanTokens() {
+		return TOKENS.getMean();
+	}
+
+	@Override
+	public long getLatencyP50() {
+		return LATENCY.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getLatencyP99() {
+		return LATENCY.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getLatencyP999() {
+		return LATENCY.getValueAtPercentile(99.9);
+	}
+
+	@Override
+	public long getLatencyMax() {
+		return LATENCY.getMax();
+	}
+
+	@Override
+	public void reset() {
+		EVALUATIONS.reset();
+		ERRORS.reset();
+		CACHE_HITS.reset();
+		CACHE_MISSES.reset();
+		PROMOTIONS.reset();
+		for (final LongAdder count : OPERATOR_COUNTS) {
+			count.reset();
+		}
+		LATENCY.reset();
+		TOKENS.reset();
+	}
+
+	@Override
+	public String dump() {
+		return format();
+	}
+}
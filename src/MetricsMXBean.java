@@ -0,0 +1,82 @@
+/*H*****************************************************************************
+ * Filename: MetricsMXBean.java
+ * Description: Management interface of the evaluation metrics.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Map;
+
+/**
+ * The evaluation metrics as seen through JMX, registered as
+ * {@link Metrics#OBJECT_NAME} when metrics are enabled. Latencies are in
+ * nanoseconds.
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * Returns the number of expressions evaluated successfully.
+	 */
+	long getEvaluationCount();
+
+	/**
+	 * Returns the number of expressions that could not be evaluated.
+	 */
+	long getErrorCount();
+
+	/**
+	 * Returns the number of results found in a result cache.
+	 */
+	long getCacheHitCount();
+
+	/**
+	 * Returns the number of results not found in a result cache.
+	 */
+	long getCacheMissCount();
+
+	/**
+	 * Returns the number of compiled expressions promoted to bytecode.
+	 */
+	long getPromotionCount();
+
+	/**
+	 * Returns the number of times each operator was applied, keyed by its
+	 * symbol.
+	 */
+	Map<String, Long> getOperatorCounts();
+
+	/**
+	 * Returns the mean number of tokens per evaluated expression.
+	 */
+	double getMeanTokens();
+
+	/**
+	 * Returns the median evaluation latency.
+	 */
+	long getLatencyP50();
+
+	/**
+	 * Returns the 99th percentile evaluation latency.
+	 */
+	long getLatencyP99();
+
+	/**
+	 * Returns the 99.9th percentile evaluation latency.
+	 */
+	long getLatencyP999();
+
+	/**
+	 * Returns the longest evaluation latency.
+	 */
+	long getLatencyMax();
+
+	/**
+	 * Discards every metric recorded so far.
+	 */
+	void reset();
+
+	/**
+	 * Returns every metric as text.
+	 */
+	String dump();
+}
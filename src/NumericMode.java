@@ -0,0 +1,48 @@
+/*H*****************************************************************************
+ * Filename: NumericMode.java
+ * Description: The kinds of arithmetic an expression can be evaluated with.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+/**
+ * Selects the arithmetic used to evaluate an expression.
+ */
+public enum NumericMode {
+
+	/**
+	 * Binary floating point through {@link Evaluator}. The fastest mode,
+	 * but decimal fractions such as 0.1 are not represented exactly.
+	 */
+	DOUBLE,
+
+	/**
+	 * Decimal arithmetic through {@link DecimalEvaluator} with
+	 * {@link java.math.BigDecimal} values rounded to a
+	 * {@link java.math.MathContext}.
+	 */
+	BIG_DECIMAL,
+
+	/**
+	 * Decimal arithmetic through {@link DecimalEvaluator} with a fixed
+	 * number of fraction digits. Values are kept as scaled longs and only
+	 * become {@link java.math.BigDecimal} when they no longer fit.
+	 */
+	FIXED_POINT;
+
+	/**
+	 * Returns the mode with the provided name, ignoring case.
+	 *
+	 * @param  name  the name of the mode.
+	 * @return the mode.
+	 * @throws IllegalArgumentException if there is no mode of that name.
+	 */
+	public static NumericMode fromName(final String name) {
+		for (NumericMode mode : values()) {
+			if (mode.name().equalsIgnoreCase(name)) {
+				return mode;
+			}
+		}
+		throw new IllegalArgumentException("Unknown numeric mode " + name);
+	}
+}
@@ -2,20 +2,201 @@
  * Filename: Operator.java
  * Description: Specifies what operators the calculator can accept.
  * Modified: 2021-06-05	File created.
+ * 	     2026-10-18 Added precedence, associativity and evaluation.
+ * 	     2026-10-18 Added lookup by symbol.
+ * 	     2026-10-18 Table of operators with their arity and arithmetic;
+ * 	     		added modulo and functions.
+ * 	     2026-10-18 Negation.
  * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
  ****************************************************************************H*/
 
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * The operators of an expression. Each operator declares its symbol, its
+ * number of operands, how tightly it binds, how a chain of it groups, and
+ * its arithmetic as a primitive function, so the evaluators apply every
+ * operator the same way and an operator is added by adding a constant
+ * here. The ordinal of an operator is its dense index in the tables of
+ * the evaluators, compiled expressions and metrics, so operators are only
+ * ever added at the end.
+ *
+ * <p>Binary operators are written between their operands with a single
+ * character symbol. Unary operators are functions written by name before
+ * their operand, as in sqrt(2) or sqrt 2, and bind more tightly than any
+ * binary operator, so sqrt 4^2 is (sqrt 4)^2.
+ *
+ * <p>{@link #NEGATION} is a minus sign where an operand is expected in
+ * front of a group, function or variable, as in -(2+3) or -x. It binds
+ * like a function, the same as the sign of a number, so -x^2 is (-x)^2
+ * just as -2^2 is 4. It cannot be written by name.
+ */
 public enum Operator {
-	EXPONENTIATION ("^"),
-	MULTIPLICATION ("*"), 
-	DIVISION ("/"),
-	ADDITION ("+"),
-	SUBTRACTION ("-");
+	EXPONENTIATION ("^", 3, true, Math::pow),
+	MULTIPLICATION ("*", 2, false, (left, right) -> left * right), 
+	DIVISION ("/", 2, false, (left, right) -> left / right),
+	ADDITION ("+", 1, false, (left, right) -> left + right),
+	SUBTRACTION ("-", 1, false, (left, right) -> left - right),
+	MODULO ("%", 2, false, (left, right) -> left % right),
+	SQUARE_ROOT ("sqrt", Math::sqrt),
+	NATURAL_LOGARITHM ("ln", Math::log),
+	LOGARITHM ("log", Math::log10),
+	SINE ("sin", Math::sin),
+	COSINE ("cos", Math::cos),
+	TANGENT ("tan", Math::tan),
+	NEGATION ("neg", operand -> -operand);
+
+	/**
+	 * The precedence of every function, above every binary operator.
+	 */
+	private static final int FUNCTION_PRECEDENCE = 4;
+
+	/**
+	 * The binary operators by symbol, for every ASCII character.
+	 */
+	private static final Operator[] BY_SYMBOL = new Operator[128];
+
+	/**
+	 * The functions that can be written by name.
+	 */
+	private static final Operator[] FUNCTIONS;
+
+	static {
+		int functionCount = 0;
+		for (Operator operator : values()) {
+			if (operator.arity == 2) {
+				BY_SYMBOL[operator.operator.charAt(0)] = operator;
+			} else if (operator != NEGATION) {
+				functionCount++;
+			}
+		}
+		FUNCTIONS = new Operator[functionCount];
+		int i = 0;
+		for (Operator operator : values()) {
+			if (operator.arity == 1 && operator != NEGATION) {
+				FUNCTIONS[i++] = operator;
+			}
+		}
+	}
 
 	private final String operator;
 
-	Operator(String operator) {
+	/**
+	 * The number of operands, 1 for functions and 2 for the others.
+	 */
+	private final int arity;
+
+	/**
+	 * The binding strength of the operator, higher binds tighter.
+	 */
+	private final int precedence;
+
+	/**
+	 * True if a chain of this operator groups from the right.
+	 */
+	private final boolean rightAssociative;
+
+	/**
+	 * The arithmetic of a binary operator, null for functions.
+	 */
+	private final DoubleBinaryOperator binary;
+
+	/**
+	 * The arithmetic of a function, null for binary operators.
+	 */
+	private final DoubleUnaryOperator unary;
+
+	Operator(String operator, final int precedence, 
+			final boolean rightAssociative,
+			final DoubleBinaryOperator binary) {
 		this.operator = operator;
+		this.arity = 2;
+		this.precedence = precedence;
+		this.rightAssociative = rightAssociative;
+		this.binary = binary;
+		this.unary = null;
+	}
+
+	Operator(final String name, final DoubleUnaryOperator unary) {
+		this.operator = name;
+		this.arity = 1;
+		this.precedence = FUNCTION_PRECEDENCE;
+		this.rightAssociative = true;
+		this.binary = null;
+		this.unary = unary;
+	}
+
+	/**
+	 * Returns the binary operator with the provided symbol.
+	 *
+	 * @param  symbol  the symbol to be looked up.
+	 * @return the matching operator, or null if there is none.
+	 */
+	protected static Operator fromSymbol(final char symbol) {
+		return symbol < BY_SYMBOL.length ? BY_SYMBOL[symbol] : null;
+	}
+
+	/**
+	 * Returns the function with the name held by a range of characters.
+	 *
+	 * @param  text  the characters holding the name.
+	 * @param  from  the index of the first character, inclusive.
+	 * @param  to    the index of the last character, exclusive.
+	 * @return the matching function, or null if there is none.
+	 */
+	protected static Operator fromName(final CharSequence text,
+			final int from, final int to) {
+		for (Operator function : FUNCTIONS) {
+			if (function.isNamed(text, from, to)) {
+				return function;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the function with the name held by a range of an array.
+	 *
+	 * @param  text  the array holding the name.
+	 * @param  from  the index of the first character, inclusive.
+	 * @param  to    the index of the last character, exclusive.
+	 * @return the matching function, or null if there is none.
+	 */
+	protected static Operator fromName(final char[] text, final int from,
+			final int to) {
+		for (Operator function : FUNCTIONS) {
+			if (function.isNamed(text, from, to)) {
+				return function;
+			}
+		}
+		return null;
+	}
+
+	private boolean isNamed(final char[] text, final int from,
+			final int to) {
+		if (to - from != operator.length()) {
+			return false;
+		}
+		for (int i = from; i < to; i++) {
+			if (text[i] != operator.charAt(i - from)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isNamed(final CharSequence text, final int from,
+			final int to) {
+		if (to - from != operator.length()) {
+			return false;
+		}
+		for (int i = from; i < to; i++) {
+			if (text.charAt(i) != operator.charAt(i - from)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	protected String getOperator() {
@@ -25,4 +206,78 @@ public enum Operator {
 	protected boolean isOperator(final String operator) {
 		return this.operator.equals(operator);
 	}
+
+	/**
+	 * Returns the number of operands, 1 for functions and 2 for the
+	 * others.
+	 */
+	protected int getArity() {
+		return arity;
+	}
+
+	/**
+	 * Returns true if this is a function of one operand.
+	 */
+	protected boolean isUnary() {
+		return arity == 1;
+	}
+
+	protected int getPrecedence() {
+		return precedence;
+	}
+
+	protected boolean isRightAssociative() {
+		return rightAssociative;
+	}
+
+	/**
+	 * Checks if this operator, already waiting on the operator stack, must
+	 * be applied before the incoming operator is pushed. Nothing is applied
+	 * before a function, which comes before its operand.
+	 *
+	 * @param  incoming  the operator that follows this one in the expression.
+	 * @return true if this operator is applied first, false otherwise.
+	 */
+	protected boolean appliesBefore(final Operator incoming) {
+		return incoming.arity == 2 && (precedence > incoming.precedence
+			|| (precedence == incoming.precedence 
+					&& !incoming.rightAssociative));
+	}
+
+	/**
+	 * Applies this binary operator to the provided operands. The first
+	 * five operators are switched on directly, so the JIT compiles their
+	 * arithmetic inline; the call through the table would otherwise see
+	 * every operator's function and could inline none of them.
+	 *
+	 * @param  left   the left hand operand.
+	 * @param  right  the right hand operand.
+	 * @return the result of the operation.
+	 */
+	protected double apply(final double left, final double right) {
+		switch (this) {
+			case EXPONENTIATION:
+				return Math.pow(left, right);
+			case MULTIPLICATION:
+				return left * right;
+			case DIVISION:
+				return left / right;
+			case ADDITION:
+				return left + right;
+			case SUBTRACTION:
+				return left - right;
+			default:
+				return binary.applyAsDouble(left, right);
+		}
+	}
+
+	/**
+	 * Applies this function to the provided operand.
+	 *
+	 * @param  operand  the operand.
+	 * @return the result of the function.
+	 */
+	protected double apply(final double operand) {
+		return unary.applyAsDouble(operand);
+	}
 }
@@ -0,0 +1,363 @@
+/*H*****************************************************************************
+ * Filename: ResultCache.java
+ * Description: A bounded, thread-safe least recently used cache of
+ * 		expression results.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Metrics.
+ * 	     2026-10-18 Keys keep whitespace that separates tokens, and
+ * 	     		lookups allocate nothing.
+ * 	     2026-10-18 Misses evaluated with the caller's context.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the results of expressions so repeated expressions are not
+ * evaluated again. Expressions are keyed on their text with the whitespace
+ * between tokens removed, so "1 + 2" and "1+2" share an entry, while
+ * whitespace that separates two tokens is kept as a single space, so
+ * "1 2" and "sqrt 4" keep their meaning. Two expressions with the same key
+ * therefore have the same tokens. Building the key is a single copy of the
+ * input into a buffer reused by the thread, so a hit skips lexing and
+ * number parsing and allocates nothing; the key is copied only when a
+ * result is stored. On a miss the original expression is evaluated with
+ * the caller's {@link EvaluationContext}, whose lexer is reused.
+ *
+ * <p>The cache is split into segments, each a least recently used map
+ * guarded by its own lock, so threads working on different expressions
+ * rarely contend. A segment is chosen by the high bits of the mixed key
+ * hash so the low bits stay spread within the segment's own table. The 
+ * size bound is divided evenly between the segments. Hit, miss and 
+ * eviction counts are kept in striped counters.
+ */
+public class ResultCache {
+
+	/**
+	 * The largest number of segments.
+	 */
+	private static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * A key buffer for each thread, used to look results up.
+	 */
+	private static final ThreadLocal<Key> KEY = 
+				ThreadLocal.withInitial(Key::new);
+
+	/**
+	 * The segments, a power of two in number.
+	 */
+	private final Segment[] segments;
+
+	/**
+	 * The shift that selects a segment from the high bits of a mixed hash,
+	 * leaving the low bits to the segment's own table.
+	 */
+	private final int segmentShift;
+
+	/**
+	 * The maximum number of cached results.
+	 */
+	private final int maximumSize;
+
+	private final LongAdder hits;
+
+	private final LongAdder misses;
+
+	private final LongAdder evictions;
+
+	/**
+	 * Constructs a cache that holds at most the provided number of results.
+	 *
+	 * @param  maximumSize  the maximum number of cached results.
+	 */
+	public ResultCache(final int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Cache size must be "
+					+ "positive");
+		}
+		this.maximumSize = maximumSize;
+		int segmentCount = 1;
+		while (segmentCount < MAX_SEGMENTS 
+				&& segmentCount * 2 * 64 <= maximumSize) {
+			segmentCount <<= 1;
+		}
+		segments = new Segment[segmentCount];
+		segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+		final int segmentSize = (maximumSize + segmentCount - 1) 
+				/ segmentCount;
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment(segmentSize);
+		}
+		hits = new LongAdder();
+		misses = new LongAdder();
+		evictions = new LongAdder();
+	}
+
+	/**
+	 * Returns the result of the expression, from the cache if it is there,
+	 * otherwise by evaluating it and caching the result.
+	 *
+	 * @param  expression  the infix expression.
+	 * @param  context     evaluates the expression on a miss.
+	 * @return the result of the expression.
+	 * @throws IllegalArgumentException if the expression has a variable or
+	 * 				    an unexpected character.
+	 * @throws IllegalStateException if the expression is malformed.
+	 */
+	public double evaluate(final CharSequence expression, 
+			final EvaluationContext context) {
+		final Key key = KEY.get();
+		key.clear();
+		for (int i = 0; i < expression.length(); i++) {
+			key.append(expression.charAt(i));
+		}
+		final Double cached = lookup(key);
+		if (cached != null) {
+			return cached;
+		}
+		return store(key, context.evaluate(expression));
+	}
+
+	/**
+	 * Returns the result of the expression held as ASCII in a range of a
+	 * byte buffer, from the cache if it is there, otherwise by evaluating
+	 * it and caching the result.
+	 *
+	 * @param  input      the buffer holding the expression.
+	 * @param  from       the index of the first byte, inclusive.
+	 * @param  to         the index of the last byte, exclusive.
+	 * @param  context    evaluates the expression on a miss.
+	 * @return the result of the expression.
+	 * @throws IllegalArgumentException if the expression has a variable or
+	 * 				    an unexpected character.
+	 * @throws IllegalStateException if the expression is malformed.
+	 */
+	public double evaluate(final ByteBuffer input, final int from, 
+			final int to, final EvaluationContext context) {
+		final Key key = KEY.get();
+		key.clear();
+		for (int i = from; i < to; i++) {
+			key.append((char) (input.get(i) & 0xFF));
+		}
+		final Double cached = lookup(key);
+		if (cached != null) {
+			return cached;
+		}
+		return store(key, context.evaluate(input, from, to));
+	}
+
+	/**
+	 * Returns the cached result for the key, or null on a miss.
+	 */
+	private Double lookup(final Key key) {
+		final Segment segment = segmentFor(key);
+		final Double cached;
+		synchronized (segment) {
+			cached = segment.get(key);
+		}
+		if (Metrics.ENABLED) {
+			Metrics.recordCacheLookup(cached != null);
+		}
+		if (cached != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+		return cached;
+	}
+
+	/**
+	 * Caches a result under a copy of the key and returns the result.
+	 */
+	private double store(final Key key, final double result) {
+		final Segment segment = segmentFor(key);
+		final Key stored = key.copy();
+		synchronized (segment) {
+			segment.put(stored, result);
+		}
+		return result;
+	}
+
+	private Segment segmentFor(final Key key) {
+		if (segments.length == 1) {
+			return segments[0];
+		}
+		return segments[key.hashCode() * 0x9E3779B9 >>> segmentShift];
+	}
+
+	/**
+	 * Removes every cached result. The counters are kept.
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of cached results.
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the maximum number of cached results.
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * Returns the number of lookups that found a cached result.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that had to evaluate.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of results removed to respect the size bound.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "ResultCache[size=" + size() + "/" + maximumSize 
+			+ ", hits=" + getHitCount() + ", misses=" + getMissCount()
+			+ ", evictions=" + getEvictionCount() + "]";
+	}
+
+	/**
+	 * A least recently used map that evicts its eldest entry once full.
+	 */
+	private final class Segment extends LinkedHashMap<Key, Double> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment(final int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(
+				final Map.Entry<Key, Double> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The characters of an expression with the whitespace between tokens
+	 * removed. A key is built in place, character by character, and
+	 * compared by content, so the buffer of a thread can probe the cache
+	 * and only a stored key needs its own array.
+	 */
+	private static final class Key {
+
+		private char[] chars;
+
+		private int length;
+
+		private int hash;
+
+		/**
+		 * The last character appended that is not whitespace, or -1.
+		 */
+		private int previous;
+
+		/**
+		 * True if whitespace was skipped since the last character.
+		 */
+		private boolean space;
+
+		Key() {
+			chars = new char[64];
+			previous = -1;
+		}
+
+		private Key(final char[] chars, final int hash) {
+			this.chars = chars;
+			this.length = chars.length;
+			this.hash = hash;
+		}
+
+		void clear() {
+			length = 0;
+			hash = 0;
+			previous = -1;
+			space = false;
+		}
+
+		/**
+		 * Appends a character of the expression, dropping whitespace
+		 * unless it separates the tokens on either side.
+		 */
+		void append(final char c) {
+			if (Lexer.isWhitespace(c)) {
+				space = previous >= 0;
+				return;
+			}
+			if (space && Lexer.separates(previous, c)) {
+				put(' ');
+			}
+			space = false;
+			previous = c;
+			put(c);
+		}
+
+		private void put(final char c) {
+			if (length == chars.length) {
+				chars = Arrays.copyOf(chars, length << 1);
+			}
+			chars[length++] = c;
+			hash = 31 * hash + c;
+		}
+
+		Key copy() {
+			return new Key(Arrays.copyOf(chars, length), hash);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			final Key key = (Key) other;
+			return hash == key.hash && Arrays.equals(chars, 0, length,
+					key.chars, 0, key.length);
+		}
+	}
+}
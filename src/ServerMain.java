@@ -0,0 +1,257 @@
+/*H*****************************************************************************
+ * Filename: ServerMain.java
+ * Description: Serves expression evaluation over a line based TCP protocol
+ * 		on localhost without starting the GUI.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Pooled evaluation contexts.
+ * 	     2026-10-18 Results formatted like batch mode.
+ * 	     2026-10-18 A failed writer no longer strands the reader.
+ * 	     2026-10-18 A failed answer also drains the queue.
+ * 	     2026-10-18 Cache misses evaluated with the pooled context.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless server mode. Clients connect to the loopback address and send
+ * one expression per line; the server answers each line with one line in
+ * the same format as {@link BatchMain}: the result, "error" for a malformed
+ * expression, or an empty line for an empty one.
+ *
+ * <p>Every request runs on its own virtual thread with an
+ * {@link EvaluationContext} taken from the shared pool for the length of
+ * the request, so no evaluator state is shared between concurrent
+ * requests and none is allocated per request.
+ * Requests may be pipelined: a connection's reader submits each line as
+ * soon as it arrives and its writer sends the answers in request order,
+ * flushing only when no further answer is ready. At most
+ * {@link #PIPELINE_DEPTH} requests per connection are in flight; beyond
+ * that the reader stops reading until answers have been sent. On a runtime
+ * without virtual threads, requests run on a cached pool of daemon
+ * threads instead. With -c, results are looked up in a
+ * {@link ResultCache} of the given size shared by all connections.
+ *
+ * <p>Usage: java -cp calculator.jar ServerMain [-p port] [-c cacheSize]
+ */
+public class ServerMain {
+
+	/**
+	 * The port listened on when none is given.
+	 */
+	static final int DEFAULT_PORT = 7070;
+
+	/**
+	 * The most requests of one connection that are evaluated or waiting to
+	 * be answered at a time.
+	 */
+	private static final int PIPELINE_DEPTH = 1024;
+
+	/**
+	 * The answer to a malformed expression.
+	 */
+	private static final String ERROR = "error";
+
+	/**
+	 * Marks the end of a connection's requests in its answer queue.
+	 */
+	private static final CompletableFuture<String> END =
+				CompletableFuture.completedFuture(null);
+
+	/**
+	 * Runs connections and requests.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * The shared result cache, or null for none.
+	 */
+	private final ResultCache cache;
+
+	private ServerMain(final ResultCache cache) {
+		this.cache = cache;
+		executor = newExecutor();
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT;
+		int cacheSize = 0;
+		for (int argument = 0; argument < args.length; argument += 2) {
+			if (argument + 1 == args.length) {
+				port = -1;
+			} else if (args[argument].equals("-p")) {
+				port = Integer.parseInt(args[argument + 1]);
+			} else if (args[argument].equals("-c")) {
+				cacheSize = Integer.parseInt(args[argument + 1]);
+			} else {
+				port = -1;
+			}
+		}
+		if (port < 0 || port > 0xFFFF || cacheSize < 0) {
+			System.err.println("Usage: java ServerMain [-p port] "
+					+ "[-c cacheSize]");
+			System.exit(1);
+		}
+		final ServerMain server = new ServerMain(cacheSize > 0
+				? new ResultCache(cacheSize) : null);
+		try (ServerSocket socket = new ServerSocket(port, 128,
+					InetAddress.getLoopbackAddress())) {
+			System.err.println("Listening on "
+					+ socket.getLocalSocketAddress());
+			server.serve(socket);
+		}
+	}
+
+	/**
+	 * Accepts connections until the server socket is closed.
+	 */
+	private void serve(final ServerSocket socket) throws IOException {
+		while (!socket.isClosed()) {
+			final Socket connection = socket.accept();
+			connection.setTcpNoDelay(true);
+			executor.execute(() -> handle(connection));
+		}
+	}
+
+	/**
+	 * Reads the requests of one connection and submits each for
+	 * evaluation. The answers are written by a second task.
+	 */
+	private void handle(final Socket connection) {
+		final BlockingQueue<CompletableFuture<String>> answers =
+				new ArrayBlockingQueue<>(PIPELINE_DEPTH);
+		try {
+			final BufferedReader in = new BufferedReader(
+				new InputStreamReader(connection.getInputStream(),
+					StandardCharsets.US_ASCII));
+			executor.execute(() -> write(connection, answers));
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					final String request = line;
+					answers.put(CompletableFuture.supplyAsync(
+						() -> evaluate(request), executor));
+				}
+			} finally {
+				answers.put(END);
+			}
+		} catch (IOException e) {
+			close(connection);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close(connection);
+		}
+	}
+
+	/**
+	 * Writes the answers of one connection in request order, then closes
+	 * the connection. If writing fails, or an answer failed to evaluate
+	 * with an unexpected exception, the connection is closed at once and
+	 * the remaining answers are discarded until the reader ends them.
+	 */
+	private static void write(final Socket connection,
+			final BlockingQueue<CompletableFuture<String>> answers) {
+		try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+				connection.getOutputStream(),
+				StandardCharsets.US_ASCII))) {
+			String answer;
+			while ((answer = answers.take().join()) != null) {
+				out.write(answer);
+				out.write('\n');
+				if (answers.isEmpty() || !answers.peek().isDone()) {
+					out.flush();
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// The client went away, or evaluation failed in a way that
+			// has no answer line, such as a rejected task during
+			// shutdown; the remaining answers are dropped.
+			close(connection);
+			discard(answers);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			close(connection);
+		}
+	}
+
+	/**
+	 * Takes and cancels the answers of a closed connection until the end
+	 * marker. The reader fails on the closed connection and puts the
+	 * marker, and taking every answer before it keeps room in the queue,
+	 * so the reader never waits forever to put a request or the marker.
+	 */
+	private static void discard(
+			final BlockingQueue<CompletableFuture<String>> answers) {
+		try {
+			CompletableFuture<String> answer;
+			while ((answer = answers.take()) != END) {
+				answer.cancel(false);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Evaluates one request with a pooled evaluation context.
+	 *
+	 * @param  request  the expression text.
+	 * @return the answer line, without the line terminator.
+	 */
+	private String evaluate(final String request) {
+		if (request.isBlank()) {
+			return "";
+		}
+		try (EvaluationContext context = EvaluationContext.acquire()) {
+			return DoubleFormatter.SHORTEST.toString(cache == null
+				? context.evaluate(request)
+				: cache.evaluate(request, context));
+		} catch (IllegalArgumentException | IllegalStateException
+				| UncheckedIOException e) {
+			return ERROR;
+		}
+	}
+
+	private static void close(final Socket connection) {
+		try {
+			connection.close();
+		} catch (IOException e) {
+			// Already closed.
+		}
+	}
+
+	/**
+	 * Returns an executor that starts a virtual thread per task, or a
+	 * cached pool of daemon threads on a runtime without virtual threads.
+	 * The virtual thread executor is looked up reflectively so the server
+	 * still builds for and runs on older runtimes.
+	 */
+	static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class
+				.getMethod("newVirtualThreadPerTaskExecutor")
+				.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(runnable -> {
+				final Thread thread = new Thread(runnable, "server");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+}
@@ -2,6 +2,7 @@
  * Filename: Symbol.java
  * Description: Specifies what symbols the operator can accept.
  * Modified: 2021-06-05	File created.
+ * 	     2026-10-18 Added parentheses.
  * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
  ****************************************************************************H*/
 
@@ -10,7 +11,9 @@ public enum Symbol {
 	NEGATIVE ("-"),
 	EQUAL ("="),
 	DELETE ("delete"),
-	CLEAR ("clear");
+	CLEAR ("clear"),
+	LEFT_PARENTHESIS ("("),
+	RIGHT_PARENTHESIS (")");
 
 	private final String symbol;
 
@@ -0,0 +1,143 @@
+/*H*****************************************************************************
+ * Filename: Token.java
+ * Description: A typed element of an expression, either an operand or an
+ * 		operator.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Parenthesis tokens.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+/**
+ * An element of an infix expression. An operand token carries its value as
+ * a raw double so it is parsed once and never formatted back into a string.
+ * Operator and parenthesis tokens are shared.
+ */
+public final class Token {
+
+	/**
+	 * The kinds of token.
+	 */
+	public enum Kind {
+		OPERAND,
+		OPERATOR,
+		/** A named input, only meaningful to compiled expressions. */
+		VARIABLE,
+		/** Opens a group that is evaluated before the operators around it. */
+		LEFT_PARENTHESIS,
+		/** Closes the innermost open group. */
+		RIGHT_PARENTHESIS
+	}
+
+	/**
+	 * The shared operator tokens, indexed by operator ordinal.
+	 */
+	private static final Token[] OPERATOR_TOKENS = 
+				new Token[Operator.values().length];
+
+	static {
+		for (Operator operator : Operator.values()) {
+			OPERATOR_TOKENS[operator.ordinal()] = 
+				new Token(Kind.OPERATOR, 0, operator);
+		}
+	}
+
+	private static final Token LEFT_PARENTHESIS_TOKEN = 
+				new Token(Kind.LEFT_PARENTHESIS, 0, null);
+
+	private static final Token RIGHT_PARENTHESIS_TOKEN = 
+				new Token(Kind.RIGHT_PARENTHESIS, 0, null);
+
+	/**
+	 * The kind of this token.
+	 */
+	private final Kind kind;
+
+	/**
+	 * The value of an operand token.
+	 */
+	private final double value;
+
+	/**
+	 * The operator of an operator token, null for operands.
+	 */
+	private final Operator operator;
+
+	private Token(final Kind kind, final double value, 
+			final Operator operator) {
+		this.kind = kind;
+		this.value = value;
+		this.operator = operator;
+	}
+
+	/**
+	 * Returns an operand token with the provided value.
+	 *
+	 * @param  value  the value of the operand.
+	 * @return a new operand token.
+	 */
+	public static Token operand(final double value) {
+		return new Token(Kind.OPERAND, value, null);
+	}
+
+	/**
+	 * Returns the shared token for the provided operator.
+	 *
+	 * @param  operator  the operator.
+	 * @return the operator token.
+	 */
+	public static Token operator(final Operator operator) {
+		return OPERATOR_TOKENS[operator.ordinal()];
+	}
+
+	/**
+	 * Returns the shared left parenthesis token.
+	 */
+	public static Token leftParenthesis() {
+		return LEFT_PARENTHESIS_TOKEN;
+	}
+
+	/**
+	 * Returns the shared right parenthesis token.
+	 */
+	public static Token rightParenthesis() {
+		return RIGHT_PARENTHESIS_TOKEN;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public boolean isOperand() {
+		return kind == Kind.OPERAND;
+	}
+
+	/**
+	 * Returns the value of an operand token.
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the operator of an operator token, null for other tokens.
+	 */
+	public Operator getOperator() {
+		return operator;
+	}
+
+	@Override
+	public String toString() {
+		switch (kind) {
+			case OPERAND:
+				return Double.toString(value);
+			case OPERATOR:
+				return operator.getOperator();
+			case LEFT_PARENTHESIS:
+				return Symbol.LEFT_PARENTHESIS.getSymbol();
+			case RIGHT_PARENTHESIS:
+				return Symbol.RIGHT_PARENTHESIS.getSymbol();
+			default:
+				return "variable";
+		}
+	}
+}
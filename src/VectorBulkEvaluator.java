@@ -0,0 +1,233 @@
+/*H*****************************************************************************
+ * Filename: VectorBulkEvaluator.java
+ * Description: Evaluates a compiled expression over columns of input values
+ * 		with SIMD instructions through the Vector API.
+ * Modified: 2026-10-18	File created.
+ * 	     2026-10-18 Modulo and functions.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.Arrays;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link BulkEvaluator} whose per chunk loops use the widest double
+ * vectors the processor supports. Addition, subtraction, multiplication and
+ * division work on whole vectors, with a scalar loop for the rows left over
+ * at the end of a chunk; exponentiation stays scalar Math.pow so results
+ * are the same as the scalar evaluator's bit for bit, as do the other
+ * operators of {@link Operator}.
+ *
+ * <p>An operator whose right operand is a constant or a variable is fused
+ * with it: the constant is broadcast into a vector and the variable is read
+ * straight from its column, instead of first being copied into a stack
+ * chunk. That halves the memory traffic of most formulas.
+ *
+ * <p>The Vector API is an incubator module on Java 17 and is only present
+ * when the JVM runs with --add-modules jdk.incubator.vector. Use
+ * {@link BulkEvaluator#create()}, which falls back to the scalar evaluator
+ * when it is missing.
+ */
+final class VectorBulkEvaluator extends BulkEvaluator {
+
+	/**
+	 * The widest double vectors the processor supports.
+	 */
+	private static final VectorSpecies<Double> SPECIES = 
+				DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * The number of doubles in one vector.
+	 */
+	private static final int LANES = SPECIES.length();
+
+	/**
+	 * Returns true if the processor has double vectors of more than one
+	 * lane.
+	 *
+	 * @throws LinkageError if the Vector API module is not present.
+	 */
+	static boolean isSupported() {
+		return LANES > 1;
+	}
+
+	@Override
+	void evaluateChunk(final int[] code, final double[] constants,
+			final double[][] columns, final int base, final int length) {
+		int top = 0;
+		for (int pc = 0; pc < code.length; pc++) {
+			final int instruction = code[pc];
+			final int opcode = instruction & CompiledExpression.OPCODE_MASK;
+			final int index = instruction >>> CompiledExpression.OPCODE_BITS;
+			if ((opcode == CompiledExpression.CONSTANT 
+					|| opcode == CompiledExpression.VARIABLE)
+					&& pc + 1 < code.length 
+					&& isOperator(code[pc + 1])) {
+				final int operator = 
+					code[++pc] & CompiledExpression.OPCODE_MASK;
+				if (opcode == CompiledExpression.CONSTANT) {
+					apply(operator, stack[top - 1], constants[index],
+							length);
+				} else {
+					apply(operator, stack[top - 1], columns[index],
+							base, length);
+				}
+				continue;
+			}
+			switch (opcode) {
+				case CompiledExpression.CONSTANT:
+					Arrays.fill(stack[top++], 0, length, 
+							constants[index]);
+					break;
+				case CompiledExpression.VARIABLE:
+					System.arraycopy(columns[index], base, 
+							stack[top++], 0, length);
+					break;
+				case CompiledExpression.DUPLICATE:
+					System.arraycopy(stack[top - 1], 0, stack[top++],
+							0, length);
+					break;
+				case CompiledExpression.STORE:
+					System.arraycopy(stack[top - 1], 0, stack[index],
+							0, length);
+					break;
+				case CompiledExpression.LOAD:
+					System.arraycopy(stack[index], 0, stack[top++], 
+							0, length);
+					break;
+				default:
+					if (opcode 
+						>= CompiledExpression.FIRST_EXTENDED_OPERATOR) {
+						top = apply(CompiledExpression.operator(opcode),
+								top, length);
+						break;
+					}
+					top--;
+					apply(opcode, stack[top - 1], stack[top], 0, 
+							length);
+					break;
+			}
+		}
+	}
+
+	private static boolean isOperator(final int instruction) {
+		return (instruction & CompiledExpression.OPCODE_MASK) 
+				<= CompiledExpression.SUBTRACTION;
+	}
+
+	/**
+	 * Applies an operator to each row of the left chunk with the rows of
+	 * the right array starting at the provided offset.
+	 */
+	private static void apply(final int opcode, final double[] left,
+			final double[] right, final int offset, final int length) {
+		final int bound = SPECIES.loopBound(length);
+		int i = 0;
+		switch (opcode) {
+			case CompiledExpression.ADDITION:
+				for (; i < bound; i += LANES) {
+					DoubleVector.fromArray(SPECIES, left, i)
+						.add(DoubleVector.fromArray(SPECIES, 
+							right, offset + i))
+						.intoArray(left, i);
+				}
+				for (; i < length; i++) {
+					left[i] += right[offset + i];
+				}
+				break;
+			case CompiledExpression.SUBTRACTION:
+				for (; i < bound; i += LANES) {
+					DoubleVector.fromArray(SPECIES, left, i)
+						.sub(DoubleVector.fromArray(SPECIES, 
+							right, offset + i))
+						.intoArray(left, i);
+				}
+				for (; i < length; i++) {
+					left[i] -= right[offset + i];
+				}
+				break;
+			case CompiledExpression.MULTIPLICATION:
+				for (; i < bound; i += LANES) {
+					DoubleVector.fromArray(SPECIES, left, i)
+						.mul(DoubleVector.fromArray(SPECIES, 
+							right, offset + i))
+						.intoArray(left, i);
+				}
+				for (; i < length; i++) {
+					left[i] *= right[offset + i];
+				}
+				break;
+			case CompiledExpression.DIVISION:
+				for (; i < bound; i += LANES) {
+					DoubleVector.fromArray(SPECIES, left, i)
+						.div(DoubleVector.fromArray(SPECIES, 
+							right, offset + i))
+						.intoArray(left, i);
+				}
+				for (; i < length; i++) {
+					left[i] /= right[offset + i];
+				}
+				break;
+			default:
+				for (; i < length; i++) {
+					left[i] = Math.pow(left[i], right[offset + i]);
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Applies an operator to each row of the left chunk with a constant
+	 * right operand.
+	 */
+	private static void apply(final int opcode, final double[] left,
+			final double constant, final int length) {
+		final DoubleVector right = DoubleVector.broadcast(SPECIES, constant);
+		final int bound = SPECIES.loopBound(length);
+		int i = 0;
+		switch (opcode) {
+			case CompiledExpression.ADDITION:
+				for (; i < bound; i += LANES) {
+					DoubleVector.fromArray(SPECIES, left, i).add(right)
+						.intoArray(left, i);
+				}
+				for (; i < length; i++) {
+					left[i] += constant;
+				}
+				break;
+			case CompiledExpression.SUBTRACTION:
+				for (; i < bound; i += LANES) {
+					DoubleVector.fromArray(SPECIES, left, i).sub(right)
+						.intoArray(left, i);
+				}
+				for (; i < length; i++) {
+					left[i] -= constant;
+				}
+				break;
+			case CompiledExpression.MULTIPLICATION:
+				for (; i < bound; i += LANES) {
+					DoubleVector.fromArray(SPECIES, left, i).mul(right)
+						.intoArray(left, i);
+				}
+				for (; i < length; i++) {
+					left[i] *= constant;
+				}
+				break;
+			case CompiledExpression.DIVISION:
+				for (; i < bound; i += LANES) {
+					DoubleVector.fromArray(SPECIES, left, i).div(right)
+						.intoArray(left, i);
+				}
+				for (; i < length; i++) {
+					left[i] /= constant;
+				}
+				break;
+			default:
+				for (; i < length; i++) {
+					left[i] = Math.pow(left[i], constant);
+				}
+				break;
+		}
+	}
+}
@@ -0,0 +1,548 @@
+/*H*****************************************************************************
+ * Filename: Workspace.java
+ * Description: Named cells whose expressions reference other cells, kept
+ * 		up to date by recalculating only what a change affects.
+ * Modified: 2026-10-18	File created.
+ * Author: Elijah Freeman (elijah@elijahfreeman.com, elijahfreeman.com)
+ ****************************************************************************H*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A set of named cells, like the cells of a spreadsheet. A cell holds
+ * either a value or an expression whose variables are the names of other
+ * cells, as in price*1.2 + shipping. A cell that is referenced but not yet
+ * set holds NaN.
+ *
+ * <p>Cells are numbered in the order they are first named, and the
+ * references between them form a graph kept as two arrays per cell: the
+ * cells its expression reads, and the cells that read it. Setting a cell
+ * collects everything downstream of it in one breadth first search, which
+ * also rejects a reference that would close a cycle before anything is
+ * changed, so the graph always has a topological order. Only the cells
+ * found are recalculated, in topological order one level at a time: a
+ * level holds the cells whose precedents are all up to date, so the cells
+ * of a level lie on independent branches and a large level is split
+ * across a fork/join pool. A change costs time in proportion to the cells
+ * that depend on it, not to the size of the workspace.
+ *
+ * <p>A workspace is not thread-safe. It owns its pool and should be closed
+ * when no longer needed.
+ */
+public class Workspace implements AutoCloseable {
+
+	/**
+	 * The largest number of cells of a level evaluated by one task.
+	 */
+	private static final int CELLS_PER_TASK = 256;
+
+	/**
+	 * The initial capacity of the cell arrays.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The references of a cell that reads no other cell.
+	 */
+	private static final int[] NONE = {};
+
+	/**
+	 * The values of the cells read by an expression, for each worker
+	 * thread.
+	 */
+	private static final ThreadLocal<double[]> ARGUMENTS =
+			ThreadLocal.withInitial(
+					() -> new double[INITIAL_CAPACITY]);
+
+	/**
+	 * The pool that evaluates large levels.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The number of each cell by name.
+	 */
+	private final Map<String, Integer> cells = new HashMap<>();
+
+	/**
+	 * The name of each cell.
+	 */
+	private String[] names;
+
+	/**
+	 * The expression of each cell, or null for a cell that holds a value.
+	 */
+	private CompiledExpression[] formulas;
+
+	/**
+	 * The value of each cell.
+	 */
+	private double[] values;
+
+	/**
+	 * The cells read by each cell's expression, indexed like its
+	 * variables.
+	 */
+	private int[][] references;
+
+	/**
+	 * The cells that read each cell, in the first dependentCounts
+	 * elements.
+	 */
+	private int[][] dependents;
+
+	/**
+	 * The number of cells that read each cell.
+	 */
+	private int[] dependentCounts;
+
+	/**
+	 * The search that last reached each cell.
+	 */
+	private int[] marks;
+
+	/**
+	 * The cell each cell was reached from in the last search.
+	 */
+	private int[] parents;
+
+	/**
+	 * The number of each cell's references not yet recalculated.
+	 */
+	private int[] pending;
+
+	/**
+	 * The cells reached by the last search, in the order reached.
+	 */
+	private int[] reached;
+
+	/**
+	 * The cells reached by the last search, in topological order.
+	 */
+	private int[] sorted;
+
+	/**
+	 * The number of the last search.
+	 */
+	private int search;
+
+	/**
+	 * The number of cells.
+	 */
+	private int size;
+
+	/**
+	 * The number of cells brought up to date by the last change.
+	 */
+	private int recalculated;
+
+	/**
+	 * Constructs an empty workspace that uses every available processor.
+	 */
+	public Workspace() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs an empty workspace with the provided number of workers.
+	 *
+	 * @param  parallelism  the number of worker threads.
+	 */
+	public Workspace(final int parallelism) {
+		pool = new ForkJoinPool(parallelism);
+		names = new String[INITIAL_CAPACITY];
+		formulas = new CompiledExpression[INITIAL_CAPACITY];
+		values = new double[INITIAL_CAPACITY];
+		references = new int[INITIAL_CAPACITY][];
+		dependents = new int[INITIAL_CAPACITY][];
+		dependentCounts = new int[INITIAL_CAPACITY];
+		marks = new int[INITIAL_CAPACITY];
+		parents = new int[INITIAL_CAPACITY];
+		pending = new int[INITIAL_CAPACITY];
+		reached = new int[INITIAL_CAPACITY];
+		sorted = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Sets a cell to an expression and recalculates every cell that
+	 * depends on it.
+	 *
+	 * @param  name        the name of the cell.
+	 * @param  expression  the infix expression; its variables are the
+	 * 		       names of the cells it reads.
+	 * @throws IllegalArgumentException if the name is not a variable name,
+	 * 				    the expression is malformed, or
+	 * 				    the expression would make the
+	 * 				    cell depend on itself.
+	 */
+	public void set(final String name, final CharSequence expression) {
+		checkName(name);
+		final CompiledExpression formula =
+				CompiledExpression.compile(expression).optimize();
+		final List<String> variables = formula.getVariables();
+		if (variables.contains(name)) {
+			throw new IllegalArgumentException("Circular reference: "
+					+ name + " -> " + name);
+		}
+		final int cell = cell(name);
+		final int count = collect(cell);
+		for (final String variable : variables) {
+			final Integer reference = cells.get(variable);
+			if (reference != null && marks[reference] == search) {
+				throw new IllegalArgumentException(
+						"Circular reference: "
+						+ cycle(cell, reference));
+			}
+		}
+		final int[] read = new int[variables.size()];
+		for (int i = 0; i < read.length; i++) {
+			read[i] = cell(variables.get(i));
+		}
+		unlink(cell);
+		formulas[cell] = formula;
+		references[cell] = read;
+		for (final int reference : read) {
+			addDependent(reference, cell);
+		}
+		recalculated = sort(count, true);
+	}
+
+	/**
+	 * Sets a cell to a value and recalculates every cell that depends on
+	 * it.
+	 *
+	 * @param  name   the name of the cell.
+	 * @param  value  the value.
+	 * @throws IllegalArgumentException if the name is not a variable name.
+	 */
+	public void setValue(final String name, final double value) {
+		checkName(name);
+		final int cell = cell(name);
+		final int count = collect(cell);
+		unlink(cell);
+		formulas[cell] = null;
+		references[cell] = NONE;
+		values[cell] = value;
+		recalculated = sort(count, true);
+	}
+
+	/**
+	 * Returns the value of a cell.
+	 *
+	 * @param  name  the name of the cell.
+	 * @return the value, or NaN if the cell is referenced but not set.
+	 * @throws IllegalArgumentException if there is no such cell.
+	 */
+	public double get(final String name) {
+		return values[checkCell(name)];
+	}
+
+	/**
+	 * Returns the expression of a cell.
+	 *
+	 * @param  name  the name of the cell.
+	 * @return the expression, or null if the cell holds a value.
+	 * @throws IllegalArgumentException if there is no such cell.
+	 */
+	public String getExpression(final String name) {
+		final CompiledExpression formula = formulas[checkCell(name)];
+		return formula == null ? null : formula.getSource();
+	}
+
+	/**
+	 * Returns the number of cells, including those referenced but not set.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of cells brought up to date by the last change,
+	 * including the cell changed, which is every cell after
+	 * {@link #recalculate()}.
+	 */
+	public int getRecalculatedCount() {
+		return recalculated;
+	}
+
+	/**
+	 * Returns the names of every cell in topological order: each cell
+	 * comes after every cell it reads.
+	 */
+	public List<String> getCellsInOrder() {
+		final int count = sort(collectAll(), false);
+		final List<String> order = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			order.add(names[sorted[i]]);
+		}
+		return order;
+	}
+
+	/**
+	 * Recalculates every cell.
+	 */
+	public void recalculate() {
+		recalculated = sort(collectAll(), true);
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Returns the number of a cell, adding an unset cell if there is none
+	 * with the name.
+	 */
+	private int cell(final String name) {
+		final Integer existing = cells.get(name);
+		if (existing != null) {
+			return existing;
+		}
+		if (size == names.length) {
+			grow();
+		}
+		final int cell = size++;
+		names[cell] = name;
+		values[cell] = Double.NaN;
+		references[cell] = NONE;
+		dependents[cell] = NONE;
+		cells.put(name, cell);
+		return cell;
+	}
+
+	private int checkCell(final String name) {
+		final Integer cell = cells.get(name);
+		if (cell == null) {
+			throw new IllegalArgumentException("Unknown cell: " + name);
+		}
+		return cell;
+	}
+
+	private static void checkName(final String name) {
+		if (!Lexer.isVariableName(name)) {
+			throw new IllegalArgumentException("Not a cell name: " + name);
+		}
+	}
+
+	private void grow() {
+		final int capacity = names.length << 1;
+		names = Arrays.copyOf(names, capacity);
+		formulas = Arrays.copyOf(formulas, capacity);
+		values = Arrays.copyOf(values, capacity);
+		references = Arrays.copyOf(references, capacity);
+		dependents = Arrays.copyOf(dependents, capacity);
+		dependentCounts = Arrays.copyOf(dependentCounts, capacity);
+		marks = Arrays.copyOf(marks, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		pending = Arrays.copyOf(pending, capacity);
+		reached = Arrays.copyOf(reached, capacity);
+		sorted = Arrays.copyOf(sorted, capacity);
+	}
+
+	/**
+	 * Starts a new search, so that no cell is marked as reached.
+	 */
+	private int nextSearch() {
+		if (search == Integer.MAX_VALUE) {
+			Arrays.fill(marks, 0);
+			search = 0;
+		}
+		return ++search;
+	}
+
+	/**
+	 * Marks a cell and every cell downstream of it as reached, recording
+	 * in parents the cell each was reached from.
+	 *
+	 * @return the number of cells reached.
+	 */
+	private int collect(final int cell) {
+		final int mark = nextSearch();
+		marks[cell] = mark;
+		parents[cell] = -1;
+		reached[0] = cell;
+		int count = 1;
+		for (int i = 0; i < count; i++) {
+			final int current = reached[i];
+			final int[] readers = dependents[current];
+			for (int j = dependentCounts[current] - 1; j >= 0; j--) {
+				final int reader = readers[j];
+				if (marks[reader] != mark) {
+					marks[reader] = mark;
+					parents[reader] = current;
+					reached[count++] = reader;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Marks every cell as reached.
+	 *
+	 * @return the number of cells.
+	 */
+	private int collectAll() {
+		final int mark = nextSearch();
+		for (int cell = 0; cell < size; cell++) {
+			marks[cell] = mark;
+			reached[cell] = cell;
+		}
+		return size;
+	}
+
+	/**
+	 * Orders the cells reached by the last search topologically, one level
+	 * at a time, and evaluates each level before the next is found if
+	 * asked to.
+	 *
+	 * @param  count     the number of cells reached.
+	 * @param  evaluate  true to evaluate the cells.
+	 * @return the number of cells ordered.
+	 */
+	private int sort(final int count, final boolean evaluate) {
+		final int mark = search;
+		int end = 0;
+		for (int i = 0; i < count; i++) {
+			final int cell = reached[i];
+			int waiting = 0;
+			for (final int reference : references[cell]) {
+				if (marks[reference] == mark) {
+					waiting++;
+				}
+			}
+			pending[cell] = waiting;
+			if (waiting == 0) {
+				sorted[end++] = cell;
+			}
+		}
+		int start = 0;
+		while (start < end) {
+			if (evaluate) {
+				evaluate(start, end);
+			}
+			final int level = end;
+			for (int i = start; i < level; i++) {
+				final int cell = sorted[i];
+				final int[] readers = dependents[cell];
+				for (int j = dependentCounts[cell] - 1; j >= 0; j--) {
+					final int reader = readers[j];
+					if (marks[reader] == mark
+							&& --pending[reader] == 0) {
+						sorted[end++] = reader;
+					}
+				}
+			}
+			start = level;
+		}
+		return end;
+	}
+
+	/**
+	 * Evaluates a level of sorted cells, in parallel if it is large.
+	 */
+	private void evaluate(final int from, final int to) {
+		if (to - from <= CELLS_PER_TASK || pool.getParallelism() == 1) {
+			for (int i = from; i < to; i++) {
+				evaluate(sorted[i]);
+			}
+		} else {
+			pool.invoke(new LevelTask(from, to));
+		}
+	}
+
+	/**
+	 * Evaluates the expression of a cell from the values of the cells it
+	 * reads. A cell that holds a value is left as it is.
+	 */
+	private void evaluate(final int cell) {
+		final CompiledExpression formula = formulas[cell];
+		if (formula == null) {
+			return;
+		}
+		final int[] read = references[cell];
+		double[] arguments = ARGUMENTS.get();
+		if (arguments.length < read.length) {
+			arguments = new double[read.length];
+			ARGUMENTS.set(arguments);
+		}
+		for (int i = 0; i < read.length; i++) {
+			arguments[i] = values[read[i]];
+		}
+		values[cell] = formula.evaluate(arguments);
+	}
+
+	/**
+	 * Returns the references from a cell around the cycle that reading
+	 * a cell downstream of it would close, as in a -> c -> b -> a.
+	 */
+	private String cycle(final int cell, final int reference) {
+		final StringBuilder path = new StringBuilder(names[cell]);
+		for (int current = reference; current != -1;
+				current = parents[current]) {
+			path.append(" -> ").append(names[current]);
+		}
+		return path.toString();
+	}
+
+	/**
+	 * Removes a cell from the readers of every cell it reads.
+	 */
+	private void unlink(final int cell) {
+		for (final int reference : references[cell]) {
+			final int[] readers = dependents[reference];
+			final int last = --dependentCounts[reference];
+			for (int i = 0; i <= last; i++) {
+				if (readers[i] == cell) {
+					readers[i] = readers[last];
+					break;
+				}
+			}
+		}
+	}
+
+	private void addDependent(final int cell, final int reader) {
+		final int count = dependentCounts[cell];
+		if (count == dependents[cell].length) {
+			dependents[cell] = Arrays.copyOf(dependents[cell],
+					Math.max(4, count << 1));
+		}
+		dependents[cell][count] = reader;
+		dependentCounts[cell] = count + 1;
+	}
+
+	/**
+	 * Evaluates a range of a level of sorted cells.
+	 */
+	private final class LevelTask extends RecursiveAction {
+
+		private final int from;
+
+		private final int to;
+
+		LevelTask(final int from, final int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= CELLS_PER_TASK) {
+				for (int i = from; i < to; i++) {
+					evaluate(sorted[i]);
+				}
+			} else {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new LevelTask(from, middle),
+					new LevelTask(middle, to));
+			}
+		}
+	}
+}